@@ -0,0 +1,108 @@
+package com.example.text2sql;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试输入数据
+ * 尽量贴近真实负载：带 Markdown 注释的长模型输出、上百张表的 Schema、中文问题和上千行的查询结果
+ */
+public final class BenchmarkInputs {
+
+    /**
+     * 典型的多表关联查询，新旧两种安全校验都判定为安全，保证两者都完整扫描
+     */
+    public static final String JOIN_SQL = """
+            SELECT d.name AS department_name, e.name, e.position, e.salary, p.name AS project_name,
+                   pm.role, e.hire_date
+            FROM employees e
+            JOIN departments d ON e.department_id = d.id
+            LEFT JOIN project_members pm ON pm.employee_id = e.id
+            LEFT JOIN projects p ON pm.project_id = p.id
+            WHERE d.name = '技术部' AND e.status = 'ACTIVE' AND e.hire_date >= '2024-01-01'
+              AND p.name NOT LIKE '%测试%'
+            ORDER BY e.salary DESC, e.name
+            LIMIT 100""";
+
+    /**
+     * 步骤4的典型模型输出：SQL 代码块加上较长的 SQL 智能注释
+     */
+    public static final String MODEL_RESPONSE = buildModelResponse();
+
+    /**
+     * 中文问题
+     */
+    public static final List<String> CHINESE_QUERIES = List.of(
+            "查询技术部今年入职的员工姓名和工资，按工资从高到低排序",
+            "统计每个部门的平均薪资和员工人数",
+            "最近30天参与项目最多的前10名员工",
+            "列出所有进行中的项目及其负责人和成员数量",
+            "上个月各部门的工资总额是多少");
+
+    private BenchmarkInputs() {
+    }
+
+    /**
+     * 生成指定数量的表结构查询结果行，列与 DatabaseTool 的 TABLES_SQL 一致
+     */
+    public static List<Map<String, Object>> tableRows(int tableCount, int columnsPerTable) {
+        List<Map<String, Object>> rows = new ArrayList<>(tableCount);
+        for (int t = 0; t < tableCount; t++) {
+            String tableName = "table_" + t;
+            StringBuilder columns = new StringBuilder("  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '主键'");
+            for (int c = 0; c < columnsPerTable; c++) {
+                columns.append(",\n  `column_").append(c).append("` varchar(255) DEFAULT NULL COMMENT '业务字段")
+                        .append(c).append("'");
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("TABLE_NAME", tableName);
+            row.put("TABLE_COMMENT", "业务表" + t);
+            row.put("TABLE_TYPE", "BASE TABLE");
+            row.put("ENGINE", "InnoDB");
+            row.put("TABLE_COLLATION", "utf8mb4_0900_ai_ci");
+            row.put("COLUMN_DEFINITIONS", columns.toString());
+            row.put("PRIMARY_KEYS", "  PRIMARY KEY (`id`)");
+            row.put("UNIQUE_KEYS", "  UNIQUE KEY `uk_" + tableName + "` (`column_0`)");
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * 生成指定行数的查询结果，列类型与员工表查询相近
+     */
+    public static List<Map<String, Object>> resultRows(int rowCount) {
+        List<Map<String, Object>> rows = new ArrayList<>(rowCount);
+        LocalDate hireDate = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < rowCount; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", (long) i);
+            row.put("name", "员工" + i);
+            row.put("department_name", i % 2 == 0 ? "技术部" : "市场部");
+            row.put("position", "工程师");
+            row.put("salary", BigDecimal.valueOf(10000 + i * 13L, 2));
+            row.put("hire_date", hireDate.plusDays(i % 1000));
+            row.put("email", "employee" + i + "@example.com");
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static String buildModelResponse() {
+        StringBuilder response = new StringBuilder();
+        response.append("查询SQL生成，生成SQL查询语句为：\n\n```sql\n").append(JOIN_SQL).append("\n```\n\n");
+        response.append("**SQL智能注释**\n");
+        String[] items = {"查询目的", "字段说明", "表关联", "条件筛选", "分组聚合", "排序逻辑", "性能优化", "业务价值"};
+        for (int i = 0; i < items.length; i++) {
+            response.append("> ").append(i + 1).append(". **").append(items[i]).append("**: ");
+            response.append("该部分说明查询在业务上的含义，结合员工、部门和项目成员之间的关联关系，")
+                    .append("解释筛选条件、排序规则以及对管理决策的帮助。".repeat(4))
+                    .append('\n');
+        }
+        return response.toString();
+    }
+}
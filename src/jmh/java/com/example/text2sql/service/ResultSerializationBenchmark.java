@@ -0,0 +1,70 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.BenchmarkInputs;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询结果序列化基准测试：/api/query 的 JSON 响应和步骤5的 Markdown 表格
+ * columnar* 方法对比列式格式，加上 -prof gc 可以比较每次操作的内存分配量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResultSerializationBenchmark {
+
+    @Param({"1000", "100000"})
+    private int rowCount;
+
+    private List<Map<String, Object>> rows;
+
+    private Text2SqlResult result;
+
+    private Text2SqlResult columnarResult;
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        rows = BenchmarkInputs.resultRows(rowCount);
+        result = Text2SqlResult.success(BenchmarkInputs.JOIN_SQL, rows).withTimings(1200, 35);
+        columnarResult = result.toColumnar();
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    }
+
+    @Benchmark
+    public byte[] serializeJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(result);
+    }
+
+    @Benchmark
+    public byte[] serializeColumnarJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(columnarResult);
+    }
+
+    /**
+     * 按行结果转换为列式结果的开销，直接从 ResultSet 读取时没有这一步
+     */
+    @Benchmark
+    public ColumnarResult toColumnar() {
+        return ColumnarResult.fromRows(rows);
+    }
+
+    @Benchmark
+    public String renderMarkdownTable() {
+        return StepBasedText2SqlService.renderExecutionResult(rows);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.BenchmarkInputs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schema DDL 拼接基准测试，对应构建快照时为每张表渲染 CREATE TABLE 语句
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SchemaRenderingBenchmark {
+
+    @Param({"20", "200"})
+    private int tableCount;
+
+    @Param({"30"})
+    private int columnsPerTable;
+
+    private List<Map<String, Object>> tableRows;
+
+    @Setup
+    public void setUp() {
+        tableRows = BenchmarkInputs.tableRows(tableCount, columnsPerTable);
+    }
+
+    @Benchmark
+    public String renderDatabaseDdl() {
+        StringBuilder databaseDdl = new StringBuilder();
+        for (Map<String, Object> row : tableRows) {
+            databaseDdl.append(DatabaseTool.renderTableDdl(row));
+        }
+        return databaseDdl.toString();
+    }
+}
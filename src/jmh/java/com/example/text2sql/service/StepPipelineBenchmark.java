@@ -0,0 +1,48 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.BenchmarkInputs;
+import com.example.text2sql.config.Text2SqlProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 步骤化流水线中本地计算部分的基准测试：业务规则推理和 SQL 提取
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StepPipelineBenchmark {
+
+    @Param({"0", "1", "2", "3", "4"})
+    private int queryIndex;
+
+    private String query;
+
+    private StepBasedText2SqlService service;
+
+    @Setup
+    public void setUp() {
+        query = BenchmarkInputs.CHINESE_QUERIES.get(queryIndex);
+        // 只用到业务规则服务，模型、数据库等依赖不参与
+        service = new StepBasedText2SqlService(null, null, new BusinessRuleService(), null,
+                new Text2SqlProperties(), null, null, null, null, null, null, null, null);
+    }
+
+    @Benchmark
+    public String generateBusinessRules() {
+        return service.generateBusinessRules(query, "employees, departments");
+    }
+
+    @Benchmark
+    public String extractSqlFromContent() {
+        return StepBasedText2SqlService.extractSqlFromContent(BenchmarkInputs.MODEL_RESPONSE);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.text2sql.util;
+
+import com.example.text2sql.BenchmarkInputs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL 清理和安全校验基准测试
+ * legacy* 方法为替换前的子串扫描实现，用于对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SqlUtilsBenchmark {
+
+    private final String sql = BenchmarkInputs.JOIN_SQL;
+
+    private final String modelResponse = BenchmarkInputs.MODEL_RESPONSE;
+
+    @Benchmark
+    public String cleanSql() {
+        return SqlUtils.cleanSql(modelResponse);
+    }
+
+    @Benchmark
+    public boolean isSqlSafe() {
+        return SqlUtils.isSqlSafe(sql);
+    }
+
+    @Benchmark
+    public boolean legacyIsSqlSafe() {
+        return LegacySqlSafety.isSqlSafe(sql);
+    }
+
+    /**
+     * 判断是否安全并给出原因，旧实现需要扫描两遍
+     */
+    @Benchmark
+    public String validateWithReason() {
+        SqlSafetyValidator.Verdict verdict = SqlSafetyValidator.validate(sql);
+        return verdict.isSafe() ? sql : verdict.getReason();
+    }
+
+    @Benchmark
+    public String legacyValidateWithReason() {
+        return LegacySqlSafety.isSqlSafe(sql) ? sql : LegacySqlSafety.getSecurityError(sql);
+    }
+}
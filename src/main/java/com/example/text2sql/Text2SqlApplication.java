@@ -2,6 +2,7 @@ package com.example.text2sql;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Spring AI Text2SQL 应用主类
@@ -11,6 +12,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * - 执行 SQL 查询并返回结果
  * - 提供 Web 界面进行交互
  */
+@EnableScheduling
 @SpringBootApplication
 public class Text2SqlApplication {
 
@@ -1,29 +1,149 @@
 package com.example.text2sql.config;
 
+import com.example.text2sql.service.BusinessRuleService;
 import com.example.text2sql.service.DatabaseTool;
+import com.example.text2sql.service.GeneratedSqlCache;
+import com.example.text2sql.service.LlmCaller;
+import com.example.text2sql.service.LlmLimiterAdvisor;
+import com.example.text2sql.service.LlmOverloadedException;
+import com.example.text2sql.service.LocalTableSelector;
+import com.example.text2sql.service.RoutingChatModel;
+import com.example.text2sql.service.Text2SqlMetrics;
+import com.example.text2sql.service.Text2SqlResult;
+import com.example.text2sql.service.Text2SqlStepResult;
+import com.example.text2sql.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
-import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.List;
 
 /**
  * 应用配置类
  */
 @Configuration
+@EnableConfigurationProperties(Text2SqlProperties.class)
 public class AppConfig {
     /**
-     * 配置 ChatClient Bean
+     * 配置 ChatClient Bean，启用多端点路由时使用路由模型
      */
     @Bean
-    public ChatClient chatClient(OpenAiChatModel chatModel) {
-        return ChatClient.builder(chatModel).defaultAdvisors(new SimpleLoggerAdvisor()).build();
+    public ChatClient chatClient(ChatModel chatModel, LlmLimiterAdvisor llmLimiterAdvisor) {
+        return ChatClient.builder(chatModel).defaultAdvisors(llmLimiterAdvisor, new SimpleLoggerAdvisor()).build();
+    }
+
+    /**
+     * 多端点路由模型，作为主 ChatModel 同时供 chatClient 和自动配置的 ChatClient.Builder 使用
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "text2sql.routing", name = "enabled", havingValue = "true")
+    public RoutingChatModel routingChatModel(Text2SqlProperties properties, ToolCallingManager toolCallingManager,
+                                             Text2SqlMetrics metrics) {
+        List<RoutingChatModel.Endpoint> endpoints = properties.getRouting().getEndpoints().stream()
+                .map(endpoint -> new RoutingChatModel.Endpoint(endpoint.getName(),
+                        RoutingChatModel.openAiModel(endpoint, toolCallingManager)))
+                .toList();
+        return new RoutingChatModel(endpoints, properties.getRouting(), metrics);
     }
 
     @Bean("mcpChatClient")
-    public ChatClient mcpChatClient(ChatClient.Builder chatClientBuilder, DatabaseTool databaseTool) {
+    public ChatClient mcpChatClient(ChatClient.Builder chatClientBuilder, DatabaseTool databaseTool,
+                                    LlmLimiterAdvisor llmLimiterAdvisor) {
         return chatClientBuilder
+                .defaultAdvisors(llmLimiterAdvisor)
                 .defaultTools(databaseTool)
                 .build();
     }
+
+    /**
+     * 把请求线程的大模型调用方带到 applicationTaskExecutor 执行的任务中，例如 SSE 和流式响应
+     */
+    @Bean
+    public TaskDecorator llmCallerTaskDecorator() {
+        return LlmCaller::wrap;
+    }
+
+    /**
+     * 问题到 SQL 的缓存
+     */
+    @Bean
+    public GeneratedSqlCache<String> generatedSqlCache(Text2SqlProperties properties,
+                                                       BusinessRuleService businessRuleService,
+                                                       DatabaseTool databaseTool) {
+        return new GeneratedSqlCache<>("sql", properties.getCache(), businessRuleService, databaseTool);
+    }
+
+    /**
+     * 问题到步骤1-4结果的缓存
+     */
+    @Bean
+    public GeneratedSqlCache<List<Text2SqlStepResult.StepResult>> stepResultCache(Text2SqlProperties properties,
+                                                                                  BusinessRuleService businessRuleService,
+                                                                                  DatabaseTool databaseTool) {
+        return new GeneratedSqlCache<>("steps", properties.getCache(), businessRuleService, databaseTool);
+    }
+
+    /**
+     * /api/query 的相同问题请求合并
+     * 限流拒绝只针对执行计算的调用方，不传给其他等待的请求
+     */
+    @Bean
+    public SingleFlight<Text2SqlResult> queryCoalescer(Text2SqlProperties properties) {
+        return new SingleFlight<>("query", properties.getCache().getCoalesceWait(),
+                LlmOverloadedException.class::isInstance);
+    }
+
+    /**
+     * 步骤化查询的相同问题请求合并
+     */
+    @Bean
+    public SingleFlight<Text2SqlStepResult> stepQueryCoalescer(Text2SqlProperties properties) {
+        return new SingleFlight<>("steps", properties.getCache().getCoalesceWait(),
+                LlmOverloadedException.class::isInstance);
+    }
+
+    /**
+     * 将缓存、请求合并和本地选表的已有统计注册为监控指标，读取时直接取当前计数，不增加请求路径开销
+     */
+    @Bean
+    public MeterBinder text2sqlMeterBinder(List<GeneratedSqlCache<?>> caches, List<SingleFlight<?>> coalescers,
+                                           LocalTableSelector localTableSelector) {
+        return registry -> {
+            for (GeneratedSqlCache<?> cache : caches) {
+                FunctionCounter.builder("text2sql.cache.requests", cache, GeneratedSqlCache::getHits)
+                        .tags("cache", cache.getName(), "result", "hit").register(registry);
+                FunctionCounter.builder("text2sql.cache.requests", cache, GeneratedSqlCache::getMisses)
+                        .tags("cache", cache.getName(), "result", "miss").register(registry);
+                FunctionCounter.builder("text2sql.cache.evictions", cache, GeneratedSqlCache::getEvictions)
+                        .tags("cache", cache.getName()).register(registry);
+                Gauge.builder("text2sql.cache.size", cache, GeneratedSqlCache::size)
+                        .tags("cache", cache.getName()).register(registry);
+            }
+            for (SingleFlight<?> coalescer : coalescers) {
+                FunctionCounter.builder("text2sql.coalescing.requests", coalescer, SingleFlight::getExecutions)
+                        .tags("name", coalescer.getName(), "result", "executed").register(registry);
+                FunctionCounter.builder("text2sql.coalescing.requests", coalescer, SingleFlight::getCoalesced)
+                        .tags("name", coalescer.getName(), "result", "coalesced").register(registry);
+                Gauge.builder("text2sql.coalescing.in.flight", coalescer, SingleFlight::getInFlight)
+                        .tags("name", coalescer.getName()).register(registry);
+            }
+            FunctionCounter.builder("text2sql.table.selection", localTableSelector,
+                            LocalTableSelector::getLocalSelections)
+                    .tags("source", "local").register(registry);
+            FunctionCounter.builder("text2sql.table.selection", localTableSelector,
+                            LocalTableSelector::getModelFallbacks)
+                    .tags("source", "model").register(registry);
+        };
+    }
 }
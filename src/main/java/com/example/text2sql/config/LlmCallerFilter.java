@@ -0,0 +1,53 @@
+package com.example.text2sql.config;
+
+import com.example.text2sql.service.LlmCaller;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * 识别大模型调用方，请求处理期间设置在当前线程上
+ * <p>
+ * 调用方请求头可以由客户端任意设置，只有来自可信网关（完成认证后转发）的请求才采用，
+ * 否则客户端轮换请求头就能不断获得新的 token 预算。其余请求按客户端地址区分。
+ */
+@Component
+public class LlmCallerFilter extends OncePerRequestFilter {
+
+    // 调用方标识的最大长度，过长的请求头会被截断
+    private static final int MAX_ID_LENGTH = 64;
+
+    private final Text2SqlProperties properties;
+
+    public LlmCallerFilter(Text2SqlProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        LlmCaller previous = LlmCaller.set(new LlmCaller(callerId(request), LlmCaller.Priority.INTERACTIVE));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            LlmCaller.restore(previous);
+        }
+    }
+
+    private String callerId(HttpServletRequest request) {
+        Text2SqlProperties.Limiter config = properties.getLimiter();
+        String header = config.getTrustedProxies().contains(request.getRemoteAddr())
+                ? request.getHeader(config.getCallerHeader())
+                : null;
+        if (header == null || header.isBlank()) {
+            return "ip:" + request.getRemoteAddr();
+        }
+        String id = header.trim();
+        return id.length() > MAX_ID_LENGTH ? id.substring(0, MAX_ID_LENGTH) : id;
+    }
+}
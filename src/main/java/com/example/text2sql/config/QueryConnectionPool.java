@@ -0,0 +1,74 @@
+package com.example.text2sql.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * 执行生成 SQL 的独立只读连接池
+ * <p>
+ * 生成的 SQL 可能是耗时的分析查询，与 Schema 加载、JPA 共用应用的连接池时，几条慢查询就能占满连接，
+ * 其他请求随之阻塞。这里为生成的 SQL 单独创建一个大小独立的只读 Hikari 连接池，可以指向只读副本；
+ * 连接用尽时请求最多等待 connection-timeout，超时立即失败，不会占用主连接池。
+ * <p>
+ * 连接池不注册为 DataSource Bean，以免替换 Spring Boot 自动配置的主数据源。未启用时使用主连接池。
+ */
+@Slf4j
+@Component
+public class QueryConnectionPool implements DisposableBean {
+
+    public static final String POOL_NAME = "text2sql-query";
+
+    private final HikariDataSource dataSource;
+
+    /**
+     * 执行生成 SQL 使用的 JdbcTemplate
+     */
+    @Getter
+    private final JdbcTemplate jdbcTemplate;
+
+    public QueryConnectionPool(Text2SqlProperties properties, DataSourceProperties dataSourceProperties,
+                               JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        Text2SqlProperties.QueryPool config = properties.getQueryPool();
+        if (!config.isEnabled()) {
+            this.dataSource = null;
+            this.jdbcTemplate = jdbcTemplate;
+            return;
+        }
+
+        // 未配置只读副本时连接主库，账号同样可以单独配置为只读账号
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName(POOL_NAME);
+        hikari.setJdbcUrl(StringUtils.hasText(config.getUrl()) ? config.getUrl() : dataSourceProperties.determineUrl());
+        hikari.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        hikari.setUsername(StringUtils.hasText(config.getUsername())
+                ? config.getUsername() : dataSourceProperties.determineUsername());
+        hikari.setPassword(config.getPassword() != null ? config.getPassword() : dataSourceProperties.determinePassword());
+        hikari.setMaximumPoolSize(config.getMaximumPoolSize());
+        hikari.setMinimumIdle(config.getMinimumIdle());
+        hikari.setConnectionTimeout(config.getConnectionTimeout().toMillis());
+        hikari.setReadOnly(true);
+        // 副本不可用时不影响应用启动，首次查询时再建立连接
+        hikari.setInitializationFailTimeout(-1);
+        hikari.setMetricRegistry(meterRegistry);
+
+        this.dataSource = new HikariDataSource(hikari);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        log.info("生成 SQL 使用独立只读连接池 {}，最大连接数 {}，{}", POOL_NAME, config.getMaximumPoolSize(),
+                StringUtils.hasText(config.getUrl()) ? "连接只读副本" : "连接主库");
+    }
+
+    @Override
+    public void destroy() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package com.example.text2sql.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text2SQL 自定义配置项
+ * 对应 application.yml 中的 text2sql.* 配置
+ */
+@Data
+@ConfigurationProperties(prefix = "text2sql")
+public class Text2SqlProperties {
+
+    /**
+     * Schema 快照配置
+     */
+    private Schema schema = new Schema();
+
+    /**
+     * SQL 执行配置
+     */
+    private Execution execution = new Execution();
+
+    /**
+     * 生成 SQL 缓存配置
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * 流式查询配置
+     */
+    private Stream stream = new Stream();
+
+    /**
+     * 步骤化查询配置
+     */
+    private Pipeline pipeline = new Pipeline();
+
+    /**
+     * Schema 检索裁剪配置
+     */
+    private Retrieval retrieval = new Retrieval();
+
+    /**
+     * 本地选表配置
+     */
+    private TableSelection tableSelection = new TableSelection();
+
+    /**
+     * 业务词典配置
+     */
+    private Dictionary dictionary = new Dictionary();
+
+    /**
+     * 结果会话配置
+     */
+    private Session session = new Session();
+
+    /**
+     * 执行计划代价检查配置
+     */
+    private CostGate costGate = new CostGate();
+
+    /**
+     * 执行生成 SQL 的独立连接池配置
+     */
+    private QueryPool queryPool = new QueryPool();
+
+    /**
+     * 批量查询配置
+     */
+    private Batch batch = new Batch();
+
+    /**
+     * 异步任务配置
+     */
+    private Jobs jobs = new Jobs();
+
+    /**
+     * 多端点大模型路由配置
+     */
+    private Routing routing = new Routing();
+
+    /**
+     * 大模型调用限流配置
+     */
+    private Limiter limiter = new Limiter();
+
+    @Data
+    public static class Schema {
+        /**
+         * 检查 Schema 指纹是否变化的间隔，变化后重建快照
+         */
+        private Duration checkInterval = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Execution {
+        /**
+         * 生成的 SQL 的执行方式
+         */
+        private ExecutionMode mode = ExecutionMode.DIRECT;
+
+        /**
+         * 查询结果的默认返回格式，可被单次请求的 format 参数覆盖
+         */
+        private ResultFormat resultFormat = ResultFormat.ROWS;
+
+        /**
+         * 单次查询最多返回的行数，没有顶层 LIMIT 或 LIMIT 更大时改写为该值，同时作为 Statement 的 maxRows
+         */
+        private int maxRows = 1000;
+
+        /**
+         * 单次查询的超时时间，超时后由 JDBC 驱动取消查询
+         */
+        private Duration queryTimeout = Duration.ofSeconds(30);
+
+        /**
+         * 非流式查询的 JDBC fetch size，MySQL 驱动需在连接参数中开启 useCursorFetch 才会分批读取
+         */
+        private int fetchSize = 500;
+
+        /**
+         * 单次非流式查询结果的内存预算，按读取到的值估算，超出后中止读取
+         */
+        private DataSize maxResultSize = DataSize.ofMegabytes(32);
+    }
+
+    @Data
+    public static class Cache {
+        /**
+         * 是否启用生成 SQL 缓存
+         */
+        private boolean enabled = true;
+
+        /**
+         * 最多缓存的问题数量，超出后淘汰最久未使用的条目
+         */
+        private int maxSize = 1000;
+
+        /**
+         * 缓存条目的有效期
+         */
+        private Duration ttl = Duration.ofHours(1);
+
+        /**
+         * 相同问题的并发请求等待正在进行的计算的最长时间，超时后自行计算
+         */
+        private Duration coalesceWait = Duration.ofMinutes(2);
+    }
+
+    @Data
+    public static class Stream {
+        /**
+         * JDBC fetch size，MySQL 驱动下 Integer.MIN_VALUE 表示逐行流式读取
+         */
+        private int fetchSize = Integer.MIN_VALUE;
+
+        /**
+         * 每写出多少行刷新一次响应
+         */
+        private int flushRows = 100;
+    }
+
+    @Data
+    public static class Pipeline {
+        /**
+         * 默认处理模式，可被单次请求的 mode 参数覆盖
+         */
+        private PipelineMode mode = PipelineMode.STEPS;
+
+        /**
+         * 执行步骤的线程数
+         */
+        private int threads = 8;
+
+        /**
+         * 等待执行的步骤队列长度，队满时由提交线程直接执行
+         */
+        private int queueCapacity = 100;
+
+        /**
+         * 是否在步骤1完成前基于原始问题推测执行步骤2，步骤1拒绝查询时取消
+         * 开启后步骤2的输入由改写后的问题变为原始问题
+         */
+        private boolean speculativeTableSelection = false;
+    }
+
+    @Data
+    public static class Retrieval {
+        /**
+         * 每个问题最多检索的相关表数量
+         */
+        private int topK = 5;
+
+        /**
+         * 是否补充检索结果通过外键引用的表
+         */
+        private boolean foreignKeyExpansion = true;
+    }
+
+    @Data
+    public static class TableSelection {
+        /**
+         * 是否先在本地选表，置信度不足时再调用大模型
+         */
+        private boolean localEnabled = true;
+
+        /**
+         * 本地选表结果被直接采用所需的最低置信度（0-1）
+         */
+        private double minConfidence = 0.6;
+
+        /**
+         * 得分不低于最高分的该比例的表都会被选中
+         */
+        private double relativeThreshold = 0.6;
+    }
+
+    @Data
+    public static class Dictionary {
+        /**
+         * 业务词典位置，支持 classpath: 和 file: 前缀
+         */
+        private String location = "classpath:business-dictionary.json";
+
+        /**
+         * 检查词典文件修改时间的间隔，修改后自动重新加载
+         */
+        private Duration checkInterval = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Session {
+        /**
+         * 是否为成功的查询创建结果会话，用于不经过大模型的翻页
+         */
+        private boolean enabled = true;
+
+        /**
+         * 最多保留的会话数量，超出后淘汰最久未访问的会话
+         */
+        private int maxSessions = 1000;
+
+        /**
+         * 会话闲置多久后过期，每次翻页都会重新计时
+         */
+        private Duration ttl = Duration.ofMinutes(30);
+
+        /**
+         * 每页行数
+         */
+        private int pageSize = 100;
+    }
+
+    @Data
+    public static class CostGate {
+        /**
+         * 执行前是否通过 EXPLAIN FORMAT=JSON 估算 SQL 的代价
+         */
+        private boolean enabled = true;
+
+        /**
+         * 优化器估算的查询代价（query_cost）上限
+         */
+        private double maxCost = 100_000;
+
+        /**
+         * 估算的扫描行数和连接结果行数上限
+         */
+        private long maxRows = 1_000_000;
+
+        /**
+         * 超出阈值时的处理方式
+         */
+        private CostGateAction action = CostGateAction.REGENERATE;
+
+        /**
+         * 带着执行计划重新生成 SQL 的最大次数，仍超出阈值时拒绝执行
+         */
+        private int maxRegenerations = 1;
+    }
+
+    @Data
+    public static class QueryPool {
+        /**
+         * 是否为生成的 SQL 使用独立的只读连接池，关闭时与应用共用主连接池
+         */
+        private boolean enabled = true;
+
+        /**
+         * 只读副本的 JDBC 地址，为空时连接 spring.datasource.url
+         */
+        private String url;
+
+        /**
+         * 连接账号，为空时使用 spring.datasource 的账号
+         */
+        private String username;
+
+        private String password;
+
+        /**
+         * 最大连接数，即同时执行的生成 SQL 数量上限
+         */
+        private int maximumPoolSize = 4;
+
+        private int minimumIdle = 1;
+
+        /**
+         * 连接用尽时等待空闲连接的最长时间，超时后查询失败
+         */
+        private Duration connectionTimeout = Duration.ofSeconds(3);
+    }
+
+    @Data
+    public static class Batch {
+        /**
+         * 单个批量请求最多包含的问题数量
+         */
+        private int maxQuestions = 500;
+
+        /**
+         * 所有批量请求合计同时生成 SQL 的问题数，即并发的大模型调用数
+         */
+        private int llmConcurrency = 8;
+
+        /**
+         * 所有批量请求合计同时执行 SQL 的问题数，不应超过独立连接池的大小
+         */
+        private int dbConcurrency = 4;
+    }
+
+    @Data
+    public static class Jobs {
+        /**
+         * 同时执行的任务数
+         */
+        private int workers = 8;
+
+        /**
+         * 等待执行的任务数上限，队列已满时提交返回 429
+         */
+        private int queueCapacity = 100;
+
+        /**
+         * 任务结束后保留结果的时间，过期后无法再查询
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+
+        /**
+         * 清理过期任务的间隔
+         */
+        private Duration cleanupInterval = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Routing {
+        /**
+         * 是否启用多端点路由，未启用时只使用 spring.ai.openai 配置的单个模型
+         */
+        private boolean enabled = false;
+
+        /**
+         * OpenAI 兼容的端点列表，同一个服务的不同模型也可以作为不同端点
+         */
+        private List<RoutingEndpoint> endpoints = new ArrayList<>();
+
+        /**
+         * 延迟和错误率指数加权移动平均的权重，越大越偏向最近的调用
+         */
+        private double ewmaAlpha = 0.2;
+
+        /**
+         * 错误率达到该值时端点视为不健康，不再作为首选
+         */
+        private double errorRateThreshold = 0.5;
+
+        /**
+         * 不健康的端点距最近一次失败超过该时间后重新参与路由
+         */
+        private Duration cooldown = Duration.ofSeconds(30);
+
+        /**
+         * 不对冲时单次调用最多尝试的端点数，首选端点失败后依次换下一个
+         */
+        private int maxAttempts = 2;
+
+        /**
+         * 是否在首选端点超过 p95 延迟仍未返回时向次选端点发出对冲请求
+         */
+        private boolean hedgeEnabled = false;
+
+        /**
+         * 对冲等待时间的下限，首选端点的 p95 延迟低于该值时按该值等待
+         */
+        private Duration hedgeMinDelay = Duration.ofSeconds(1);
+
+        /**
+         * 对冲等待时间的上限，首选端点还没有延迟样本时按该值等待
+         */
+        private Duration hedgeMaxDelay = Duration.ofSeconds(20);
+    }
+
+    @Data
+    public static class Limiter {
+        /**
+         * 是否启用自适应并发限制和调用方 token 预算
+         */
+        private boolean enabled = true;
+
+        /**
+         * 并发上限的初始值，之后按调用结果自适应调整
+         */
+        private int initialLimit = 8;
+
+        private int minLimit = 2;
+
+        private int maxLimit = 64;
+
+        /**
+         * 出现限流、超时或延迟明显升高时，并发上限乘以该系数
+         */
+        private double backoffRatio = 0.9;
+
+        /**
+         * 最近延迟超过长期平均延迟的倍数，超过时视为模型服务开始排队
+         */
+        private double latencyTolerance = 2.0;
+
+        /**
+         * 批量请求最多占用并发上限的比例，其余留给交互请求
+         */
+        private double batchShare = 0.5;
+
+        /**
+         * 批量请求在并发或预算不足时等待的最长时间，超时后才拒绝；交互请求不等待
+         */
+        private Duration batchMaxWait = Duration.ofMinutes(5);
+
+        /**
+         * 识别调用方的请求头，只有来自 trustedProxies 的请求才采用，其余按客户端地址区分
+         */
+        private String callerHeader = "X-Caller-Id";
+
+        /**
+         * 可信网关的地址，例如完成认证后转发请求的 API 网关；为空时忽略调用方请求头
+         */
+        private List<String> trustedProxies = new ArrayList<>();
+
+        /**
+         * 每个调用方每分钟可消耗的 token 数，同时也是可累积的上限，0 表示不限制
+         */
+        private long tokensPerMinute = 200_000;
+
+        /**
+         * 同时保留 token 预算的调用方数量上限
+         */
+        private int maxCallers = 10_000;
+    }
+
+    @Data
+    public static class RoutingEndpoint {
+        /**
+         * 端点名称，用于日志和监控标签
+         */
+        private String name;
+
+        private String baseUrl;
+
+        private String apiKey;
+
+        private String model;
+
+        private Double temperature;
+    }
+
+    /**
+     * SQL 执行方式
+     */
+    public enum ExecutionMode {
+        /**
+         * 校验通过后直接通过 JDBC 执行，大模型只负责生成 SQL
+         */
+        DIRECT,
+
+        /**
+         * 让大模型调用 executeQuery 工具执行，并以 JSON 形式返回结果
+         */
+        TOOL
+    }
+
+    /**
+     * 查询结果的返回格式
+     */
+    public enum ResultFormat {
+        /**
+         * 每行一个对象，列名随每行重复
+         */
+        ROWS,
+
+        /**
+         * 列信息只返回一次，之后按列返回值数组
+         */
+        COLUMNAR
+    }
+
+    /**
+     * 步骤化查询的处理模式
+     */
+    public enum PipelineMode {
+        /**
+         * 每个步骤单独调用一次模型
+         */
+        STEPS,
+
+        /**
+         * 一次结构化输出得到步骤1-4的结果
+         */
+        SINGLE_CALL
+    }
+
+    /**
+     * 执行计划代价超出阈值时的处理方式
+     */
+    public enum CostGateAction {
+        /**
+         * 直接拒绝执行，返回执行计划摘要
+         */
+        REJECT,
+
+        /**
+         * 把执行计划摘要反馈给大模型重新生成 SQL
+         */
+        REGENERATE
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.text2sql.controller;
+
+import com.example.text2sql.service.LlmOverloadedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 所有 API 共用的异常处理
+ */
+@ControllerAdvice
+public class ApiExceptionHandler {
+
+    // 限流拒绝后建议客户端等待的秒数
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    /**
+     * 大模型调用被限流拒绝时返回 429，客户端稍后重试
+     */
+    @ExceptionHandler(LlmOverloadedException.class)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> handleOverloaded(LlmOverloadedException e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("error", e.getMessage());
+        response.put("reason", e.getReason());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.text2sql.controller;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import com.example.text2sql.service.QueryJob;
+import com.example.text2sql.service.QueryJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 异步查询任务 API
+ * 提交后立即返回任务 id，通过轮询获取状态和部分结果，耗时较长的查询不再占用请求线程
+ */
+@Controller
+@RequestMapping("/api/jobs")
+@RequiredArgsConstructor
+public class QueryJobController {
+
+    // 队列已满时建议客户端等待的秒数
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final QueryJobService queryJobService;
+
+    private final Text2SqlProperties properties;
+
+    /**
+     * 提交任务
+     * 请求体：query，type（query 或 steps，默认 query），mode 和 format 与同步接口相同
+     */
+    @PostMapping
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> submit(@RequestBody Map<String, String> request) {
+        String query = request.get("query");
+        if (query == null || query.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(errorBody("查询内容不能为空"));
+        }
+
+        QueryJob job;
+        try {
+            QueryJob.Type type = resolve(QueryJob.Type.class, request.get("type"), QueryJob.Type.QUERY);
+            Text2SqlProperties.ResultFormat format = resolve(Text2SqlProperties.ResultFormat.class,
+                    request.get("format"), properties.getExecution().getResultFormat());
+            job = type == QueryJob.Type.STEPS
+                    ? queryJobService.submitSteps(query, resolve(Text2SqlProperties.PipelineMode.class,
+                    request.get("mode"), properties.getPipeline().getMode()), format)
+                    : queryJobService.submitQuery(query, format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(errorBody(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .body(errorBody("任务队列已满，请稍后重试"));
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("jobId", job.getId());
+        response.put("status", job.getStatus());
+        return ResponseEntity.accepted()
+                .header(HttpHeaders.LOCATION, "/api/jobs/" + job.getId())
+                .body(response);
+    }
+
+    /**
+     * 查询任务状态和结果，步骤化任务运行中返回已完成的步骤
+     */
+    @GetMapping("/{jobId}")
+    @ResponseBody
+    public ResponseEntity<QueryJob> get(@PathVariable String jobId) {
+        QueryJob job = queryJobService.get(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 取消任务，已结束的任务原样返回
+     */
+    @DeleteMapping("/{jobId}")
+    @ResponseBody
+    public ResponseEntity<QueryJob> cancel(@PathVariable String jobId) {
+        QueryJob job = queryJobService.cancel(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 任务队列统计
+     */
+    @GetMapping("/stats")
+    @ResponseBody
+    public Map<String, Object> stats() {
+        return queryJobService.stats();
+    }
+
+    private static <E extends Enum<E>> E resolve(Class<E> type, String value, E defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("不支持的参数值: " + value);
+        }
+    }
+
+    private static Map<String, Object> errorBody(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("error", message);
+        return response;
+    }
+}
@@ -1,12 +1,21 @@
 package com.example.text2sql.controller;
 
+import com.example.text2sql.config.Text2SqlProperties;
+import com.example.text2sql.service.LlmOverloadedException;
+import com.example.text2sql.service.LocalTableSelector;
 import com.example.text2sql.service.StepBasedText2SqlService;
+import com.example.text2sql.service.Text2SqlStepListener;
 import com.example.text2sql.service.Text2SqlStepResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -18,8 +27,17 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class StepBasedText2SqlController {
 
+    private static final long SSE_TIMEOUT_MILLIS = 180_000;
+
     private final StepBasedText2SqlService stepBasedText2SqlService;
 
+    private final LocalTableSelector localTableSelector;
+
+    private final Text2SqlProperties properties;
+
+    @Qualifier("applicationTaskExecutor")
+    private final AsyncTaskExecutor applicationTaskExecutor;
+
     /**
      * 显示步骤化 Text2SQL 页面
      *
@@ -46,10 +64,141 @@ public class StepBasedText2SqlController {
         }
 
         try {
-            return stepBasedText2SqlService.processQueryWithSteps(query);
+            return stepBasedText2SqlService.processQueryWithSteps(query, resolveMode(request.get("mode")),
+                    resolveFormat(request.get("format")), Text2SqlStepListener.NONE);
+        } catch (LlmOverloadedException e) {
+            // 保留限流拒绝异常，由统一异常处理返回 429
+            throw e;
         } catch (Exception e) {
             log.error("步骤化 Text2SQL 查询处理失败", e);
             throw new RuntimeException("查询处理失败" + e.getMessage());
         }
     }
+
+    /**
+     * 分别以5次调用和单次调用模式处理同一查询，对比耗时和 token 消耗
+     *
+     * @param request 查询请求
+     * @return 按模式区分的查询结果
+     */
+    @PostMapping("/api/steps/compare")
+    @ResponseBody
+    public Map<String, Text2SqlStepResult> compareModes(@RequestBody Map<String, String> request) {
+        String query = request.get("query");
+
+        if (query == null || query.trim().isEmpty()) {
+            throw new RuntimeException("查询内容不能为空");
+        }
+
+        Map<String, Text2SqlStepResult> results = stepBasedText2SqlService.compareModes(query);
+        results.values().forEach(Text2SqlStepResult::throwIfOverloaded);
+        return results;
+    }
+
+    /**
+     * 获取本地选表统计信息，包括回退到大模型的比例
+     *
+     * @return 本地选表次数、回退次数和回退率
+     */
+    @GetMapping("/api/steps/table-selection/stats")
+    @ResponseBody
+    public Map<String, Object> tableSelectionStats() {
+        return localTableSelector.stats();
+    }
+
+    /**
+     * 以 Server-Sent Events 推送步骤化查询进度
+     * <p>
+     * 事件类型：token（模型输出片段）、step（单个步骤完成）、complete（包含完整结果的终止事件）、error
+     *
+     * @param query 查询内容
+     * @return SSE 事件流
+     */
+    @GetMapping(value = "/api/steps/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter streamWithSteps(@RequestParam String query, @RequestParam(required = false) String mode,
+                                      @RequestParam(required = false) String format) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new RuntimeException("查询内容不能为空");
+        }
+
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MILLIS);
+        applicationTaskExecutor.execute(() -> {
+            try {
+                Text2SqlStepResult result = stepBasedText2SqlService.processQueryWithSteps(query,
+                        resolveMode(mode), resolveFormat(format), new SseStepListener(emitter));
+                emitter.send(SseEmitter.event().name("complete").data(result, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception e) {
+                log.error("步骤化 Text2SQL 流式查询处理失败", e);
+                try {
+                    emitter.send(SseEmitter.event().name("error").data("查询处理失败" + e.getMessage()));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException ex) {
+                    emitter.completeWithError(ex);
+                }
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * 解析请求中的处理模式，未指定时使用配置的默认模式
+     */
+    private Text2SqlProperties.PipelineMode resolveMode(String mode) {
+        if (mode == null || mode.trim().isEmpty()) {
+            return properties.getPipeline().getMode();
+        }
+        try {
+            return Text2SqlProperties.PipelineMode.valueOf(mode.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("不支持的处理模式: " + mode);
+        }
+    }
+
+    /**
+     * 解析请求中的结果格式 (rows, columnar)，未指定时使用配置的默认格式
+     */
+    private Text2SqlProperties.ResultFormat resolveFormat(String format) {
+        if (format == null || format.trim().isEmpty()) {
+            return properties.getExecution().getResultFormat();
+        }
+        try {
+            return Text2SqlProperties.ResultFormat.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("不支持的结果格式: " + format);
+        }
+    }
+
+    /**
+     * 把步骤进度转换为 SSE 事件的监听器
+     */
+    @RequiredArgsConstructor
+    private static class SseStepListener implements Text2SqlStepListener {
+        private final SseEmitter emitter;
+
+        @Override
+        public boolean isTokenStreaming() {
+            return true;
+        }
+
+        @Override
+        public void onToken(int stepNumber, String token) {
+            send("token", Map.of("step", stepNumber, "token", token));
+        }
+
+        @Override
+        public void onStepCompleted(int stepNumber, Text2SqlStepResult.StepResult result) {
+            send("step", Map.of("step", stepNumber, "result", result));
+        }
+
+        private void send(String name, Object data) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                // 客户端已断开，终止后续步骤
+                throw new IllegalStateException("SSE 连接已断开", e);
+            }
+        }
+    }
 }
@@ -1,15 +1,31 @@
 package com.example.text2sql.controller;
 
+import com.example.text2sql.config.Text2SqlProperties;
+import com.example.text2sql.service.BatchQueryService;
+import com.example.text2sql.service.BusinessDictionary;
+import com.example.text2sql.service.BusinessDictionaryLoader;
 import com.example.text2sql.service.DatabaseTool;
+import com.example.text2sql.service.GeneratedSqlCache;
+import com.example.text2sql.service.QueryResultStreamer;
+import com.example.text2sql.service.ResultPage;
+import com.example.text2sql.service.ResultSessionService;
+import com.example.text2sql.service.SchemaSnapshot;
 import com.example.text2sql.service.Text2SqlResult;
 import com.example.text2sql.service.Text2SqlService;
+import com.example.text2sql.service.Text2SqlStepResult;
+import com.example.text2sql.util.SingleFlight;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,6 +36,15 @@ import java.util.Map;
 public class Text2SqlController {
     private final Text2SqlService text2SqlService;
     private final DatabaseTool databaseTool;
+    private final GeneratedSqlCache<String> generatedSqlCache;
+    private final GeneratedSqlCache<List<Text2SqlStepResult.StepResult>> stepResultCache;
+    private final QueryResultStreamer queryResultStreamer;
+    private final BusinessDictionaryLoader businessDictionaryLoader;
+    private final SingleFlight<Text2SqlResult> queryCoalescer;
+    private final SingleFlight<Text2SqlStepResult> stepQueryCoalescer;
+    private final ResultSessionService resultSessionService;
+    private final BatchQueryService batchQueryService;
+    private final Text2SqlProperties properties;
 
     /**
      * 主页
@@ -45,23 +70,128 @@ public class Text2SqlController {
             return ResponseEntity.badRequest().body(response);
         }
 
+        Text2SqlProperties.ResultFormat format;
+        try {
+            format = resolveFormat(request.get("format"));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "不支持的结果格式: " + request.get("format"));
+            return ResponseEntity.badRequest().body(response);
+        }
+
         // 处理查询
-        Text2SqlResult result = text2SqlService.processQuery(query);
+        Text2SqlResult result = text2SqlService.processQuery(query, format);
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", result.isSuccess());
 
         if (result.isSuccess()) {
             response.put("sql", result.getSql());
-            response.put("data", result.getData());
-            response.put("count", result.getData().size());
+            // 列式格式下 data 为 {columns, rowCount, values}
+            response.put("format", format.name().toLowerCase());
+            response.put("data", result.getColumnar() != null ? result.getColumnar() : result.getData());
+            response.put("count", result.rowCount());
+            response.put("generationMillis", result.getGenerationMillis());
+            response.put("executionMillis", result.getExecutionMillis());
+            response.put("sessionId", result.getSessionId());
         } else {
             response.put("error", result.getError());
+            if (result.getPlan() != null) {
+                response.put("plan", result.getPlan());
+            }
         }
 
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 以 NDJSON 流式返回查询结果的 API
+     * 每行一条记录，最后一行 trailer 包含 SQL、记录数和错误信息
+     */
+    @PostMapping(value = "/api/query/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<StreamingResponseBody> streamQuery(@RequestBody Map<String, String> request) {
+        String query = request.get("query");
+
+        if (query == null || query.trim().isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(out -> queryResultStreamer.streamError("查询内容不能为空", out));
+        }
+
+        String sql;
+        try {
+            sql = text2SqlService.prepareSql(query);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.ok().body(out -> queryResultStreamer.streamError(e.getMessage(), out));
+        }
+
+        return ResponseEntity.ok().body(out -> queryResultStreamer.streamRows(sql, out));
+    }
+
+    /**
+     * 批量查询 API，以 NDJSON 按完成顺序逐个返回每个问题的结果
+     * 每行包含问题序号、结果和耗时，最后一行 trailer 包含吞吐量和延迟分位数
+     */
+    @PostMapping(value = "/api/query/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<StreamingResponseBody> batchQuery(@RequestBody Map<String, Object> request) {
+        if (!(request.get("questions") instanceof List<?> items) || items.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(out -> queryResultStreamer.streamError("问题列表不能为空", out));
+        }
+        int maxQuestions = properties.getBatch().getMaxQuestions();
+        if (items.size() > maxQuestions) {
+            return ResponseEntity.badRequest()
+                    .body(out -> queryResultStreamer.streamError("单批最多 " + maxQuestions + " 个问题", out));
+        }
+        List<String> questions = new ArrayList<>(items.size());
+        for (Object item : items) {
+            if (!(item instanceof String question)) {
+                return ResponseEntity.badRequest()
+                        .body(out -> queryResultStreamer.streamError("问题必须是字符串", out));
+            }
+            questions.add(question);
+        }
+
+        Object formatValue = request.get("format");
+        Text2SqlProperties.ResultFormat format;
+        try {
+            format = resolveFormat(formatValue == null ? null : formatValue.toString());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(out -> queryResultStreamer.streamError("不支持的结果格式: " + formatValue, out));
+        }
+
+        return ResponseEntity.ok().body(out -> batchQueryService.stream(questions, format, out));
+    }
+
+    /**
+     * 结果会话翻页的 API，直接改写已校验的 SQL 通过 JDBC 查询，不调用大模型
+     *
+     * @param page 页码，从 1 开始
+     */
+    @GetMapping("/api/sessions/{sessionId}/pages/{page}")
+    @ResponseBody
+    public ResponseEntity<ResultPage> getResultPage(@PathVariable String sessionId, @PathVariable int page) {
+        ResultPage resultPage = resultSessionService.getPage(sessionId, page);
+        if (resultPage == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ResultPage.error(page, 0, "结果会话不存在或已过期，请重新查询"));
+        }
+        return ResponseEntity.ok(resultPage);
+    }
+
+    /**
+     * 关闭结果会话的 API
+     */
+    @DeleteMapping("/api/sessions/{sessionId}")
+    @ResponseBody
+    public ResponseEntity<Void> closeResultSession(@PathVariable String sessionId) {
+        resultSessionService.close(sessionId);
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * 获取数据库结构信息的 API
      */
@@ -72,4 +202,62 @@ public class Text2SqlController {
         response.put("schema", databaseTool.getDatabaseSchema());
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * 强制刷新数据库结构快照的 API
+     */
+    @PostMapping("/api/schema/refresh")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> refreshSchema() {
+        SchemaSnapshot snapshot = databaseTool.refreshSchema();
+        Map<String, Object> response = new HashMap<>();
+        response.put("version", snapshot.getVersion());
+        response.put("fingerprint", snapshot.getFingerprint());
+        response.put("tables", snapshot.getTables().keySet());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 重新加载业务词典的 API
+     */
+    @PostMapping("/api/dictionary/reload")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> reloadDictionary() {
+        BusinessDictionary dictionary = businessDictionaryLoader.reload();
+        Map<String, Object> response = new HashMap<>();
+        response.put("version", dictionary.getVersion());
+        response.put("terms", dictionary.getTerms().size());
+        response.put("synonyms", dictionary.getSynonyms().size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取生成 SQL 缓存统计信息的 API
+     */
+    @GetMapping("/api/cache/stats")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> getCacheStats() {
+        return ResponseEntity.ok(List.of(generatedSqlCache.stats(), stepResultCache.stats()));
+    }
+
+    /**
+     * 获取相同问题请求合并统计信息的 API
+     */
+    @GetMapping("/api/coalescing/stats")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> getCoalescingStats() {
+        return ResponseEntity.ok(List.of(queryCoalescer.stats(), stepQueryCoalescer.stats()));
+    }
+
+    /**
+     * 解析结果格式 (rows, columnar)，未指定时使用配置的默认格式
+     *
+     * @throws IllegalArgumentException 格式不受支持时抛出
+     */
+    private Text2SqlProperties.ResultFormat resolveFormat(String format) {
+        if (format == null || format.trim().isEmpty()) {
+            return properties.getExecution().getResultFormat();
+        }
+        return Text2SqlProperties.ResultFormat.valueOf(format.trim().toUpperCase());
+    }
 }
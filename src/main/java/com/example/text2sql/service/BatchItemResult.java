@@ -0,0 +1,32 @@
+package com.example.text2sql.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量查询中单个问题的结果
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchItemResult {
+    /**
+     * 问题在请求中的下标，从 0 开始，结果按完成顺序返回
+     */
+    private int index;
+
+    private String question;
+
+    private Text2SqlResult result;
+
+    /**
+     * 从开始处理到完成的耗时（毫秒），包含等待并发许可的时间
+     */
+    private long latencyMillis;
+
+    /**
+     * 等待大模型和数据库并发许可的时间（毫秒）
+     */
+    private long waitMillis;
+}
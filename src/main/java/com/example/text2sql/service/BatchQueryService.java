@@ -0,0 +1,225 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 批量查询服务
+ * <p>
+ * 一个批次中的问题并发处理，每个问题分两个阶段：生成 SQL 占用一个大模型许可，执行 SQL 占用一个数据库许可。
+ * 两种许可在所有批次之间共享，生成 SQL 的并发可以按模型配额设置得较高，但不超过限流器分给批量请求的份额，
+ * 执行 SQL 的并发不超过连接池大小。限流器并发或预算不足时批量调用排队等待，而不是直接失败。
+ * 同一批次的问题都基于开始时的 Schema 快照生成 SQL，结果按完成顺序逐个返回。
+ */
+@Slf4j
+@Service
+public class BatchQueryService implements DisposableBean {
+
+    private final Text2SqlService text2SqlService;
+
+    private final DatabaseTool databaseTool;
+
+    private final Text2SqlMetrics metrics;
+
+    private final ObjectMapper objectMapper;
+
+    private final Text2SqlProperties.Batch config;
+
+    private final Semaphore llmPermits;
+
+    private final Semaphore dbPermits;
+
+    private final ThreadPoolExecutor pool;
+
+    public BatchQueryService(Text2SqlService text2SqlService, DatabaseTool databaseTool, Text2SqlMetrics metrics,
+                             ObjectMapper objectMapper, LlmConcurrencyLimiter limiter, Text2SqlProperties properties) {
+        this.text2SqlService = text2SqlService;
+        this.databaseTool = databaseTool;
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
+        this.config = properties.getBatch();
+        // 超出限流器批量份额的许可只会在限流器中排队
+        int llmConcurrency = Math.min(config.getLlmConcurrency(), limiter.getInitialBatchCapacity());
+        this.llmPermits = new Semaphore(llmConcurrency, true);
+        this.dbPermits = new Semaphore(config.getDbConcurrency(), true);
+        // 每个线程同一时间最多持有一种许可，线程数为两者之和时许可不会因线程不足而闲置
+        int threads = llmConcurrency + config.getDbConcurrency();
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("batch-query-"));
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 并发处理一批问题，每完成一个问题在调用线程中回调一次，全部完成后返回汇总统计
+     *
+     * @throws IllegalArgumentException 问题列表为空或超过单批上限时抛出
+     */
+    public BatchSummary process(List<String> questions, Text2SqlProperties.ResultFormat format,
+                                Consumer<BatchItemResult> onItem) {
+        if (questions == null || questions.isEmpty()) {
+            throw new IllegalArgumentException("问题列表不能为空");
+        }
+        if (questions.size() > config.getMaxQuestions()) {
+            throw new IllegalArgumentException("单批最多 " + config.getMaxQuestions() + " 个问题");
+        }
+
+        long start = System.nanoTime();
+        SchemaSnapshot snapshot = databaseTool.getSnapshot();
+        BlockingQueue<BatchItemResult> completed = new LinkedBlockingQueue<>();
+        // 批量请求的大模型调用优先级低于交互请求
+        LlmCaller caller = LlmCaller.current().asBatch();
+        List<Future<?>> futures = new ArrayList<>(questions.size());
+        for (int i = 0; i < questions.size(); i++) {
+            int index = i;
+            futures.add(pool.submit(caller.bind(
+                    () -> completed.add(processItem(index, questions.get(index), format, snapshot)))));
+        }
+
+        int succeeded = 0;
+        List<Long> latencies = new ArrayList<>(questions.size());
+        try {
+            for (int i = 0; i < questions.size(); i++) {
+                BatchItemResult item = completed.take();
+                if (item.getResult().isSuccess()) {
+                    succeeded++;
+                }
+                latencies.add(item.getLatencyMillis());
+                onItem.accept(item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("批量查询被中断", e);
+        } catch (RuntimeException e) {
+            // 客户端断开等情况下取消尚未完成的问题
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        latencies.sort(null);
+        BatchSummary summary = new BatchSummary(questions.size(), succeeded, questions.size() - succeeded,
+                elapsedMillis, questions.size() * 1000.0 / Math.max(1, elapsedMillis),
+                percentile(latencies, 0.5), percentile(latencies, 0.95), latencies.get(latencies.size() - 1),
+                snapshot.getVersion());
+        log.info("批量查询完成，{} 个问题，成功 {}，耗时 {}ms，吞吐 {}/s", summary.getTotal(), summary.getSucceeded(),
+                elapsedMillis, String.format("%.2f", summary.getQuestionsPerSecond()));
+        return summary;
+    }
+
+    /**
+     * 以 NDJSON 格式逐个写出每个问题的结果，最后一行为包含汇总统计的 trailer
+     */
+    public void stream(List<String> questions, Text2SqlProperties.ResultFormat format,
+                       OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+            generator.setRootValueSeparator(null);
+            try {
+                BatchSummary summary = process(questions, format, item -> writeLine(generator, item));
+                generator.writeStartObject();
+                generator.writePOJOField("trailer", summary);
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch (UncheckedIOException e) {
+                log.warn("批量查询输出中断，已取消剩余问题");
+                throw e.getCause();
+            }
+        }
+    }
+
+    private void writeLine(JsonGenerator generator, BatchItemResult item) {
+        try {
+            generator.writeObject(item);
+            generator.writeRaw('\n');
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private BatchItemResult processItem(int index, String question, Text2SqlProperties.ResultFormat format,
+                                        SchemaSnapshot snapshot) {
+        long start = System.nanoTime();
+        long waitNanos = 0;
+        Text2SqlResult result;
+        try {
+            if (question == null || question.trim().isEmpty()) {
+                throw new IllegalArgumentException("查询不能为空");
+            }
+
+            long waitStart = System.nanoTime();
+            llmPermits.acquire();
+            long generationStart = System.nanoTime();
+            waitNanos += generationStart - waitStart;
+            String sql;
+            try {
+                sql = databaseTool.withSnapshot(snapshot, () -> text2SqlService.prepareSql(question));
+            } finally {
+                llmPermits.release();
+            }
+            long generationMillis = (System.nanoTime() - generationStart) / 1_000_000;
+
+            waitStart = System.nanoTime();
+            dbPermits.acquire();
+            long executionStart = System.nanoTime();
+            waitNanos += executionStart - waitStart;
+            try {
+                result = text2SqlService.executeSql(sql, format);
+            } finally {
+                dbPermits.release();
+            }
+            result.withTimings(generationMillis, (System.nanoTime() - executionStart) / 1_000_000);
+        } catch (IllegalArgumentException e) {
+            result = Text2SqlResult.error(e.getMessage());
+            if (e instanceof QueryCostExceededException costExceeded) {
+                result.setPlan(costExceeded.getPlan());
+            }
+        } catch (LlmOverloadedException e) {
+            // 排队超过 batchMaxWait 仍未获得许可
+            result = Text2SqlResult.error(e.getMessage());
+        } catch (InterruptedException | CancellationException e) {
+            Thread.currentThread().interrupt();
+            result = Text2SqlResult.error("批量查询已取消");
+        } catch (Exception e) {
+            log.error("批量查询第 {} 个问题处理失败", index, e);
+            result = Text2SqlResult.error("处理查询时发生错误: " + e.getMessage());
+        }
+
+        long nanos = System.nanoTime() - start;
+        metrics.recordRequest("batch", nanos, result.isSuccess());
+        return new BatchItemResult(index, question, result, nanos / 1_000_000, waitNanos / 1_000_000);
+    }
+
+    /**
+     * 取已排序列表的分位数，采用最近秩法
+     */
+    static long percentile(List<Long> sorted, double quantile) {
+        int rank = (int) Math.ceil(quantile * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    @Override
+    public void destroy() {
+        log.info("关闭批量查询线程池");
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.text2sql.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量查询的汇总统计
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchSummary {
+    private int total;
+
+    private int succeeded;
+
+    private int failed;
+
+    /**
+     * 整个批次的耗时（毫秒）
+     */
+    private long elapsedMillis;
+
+    /**
+     * 吞吐量，每秒完成的问题数
+     */
+    private double questionsPerSecond;
+
+    /**
+     * 单个问题耗时的中位数、p95 和最大值（毫秒）
+     */
+    private long p50LatencyMillis;
+
+    private long p95LatencyMillis;
+
+    private long maxLatencyMillis;
+
+    /**
+     * 整个批次使用的 Schema 快照版本
+     */
+    private long schemaVersion;
+}
@@ -0,0 +1,240 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.util.AhoCorasickMatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 业务词典快照
+ * 由词典定义编译而成，不可变；重新加载时整体替换，读取方只需读取一次引用，无需加锁
+ */
+@Getter
+public class BusinessDictionary {
+
+    /**
+     * 随应用打包的默认词典
+     */
+    public static final String DEFAULT_LOCATION = "business-dictionary.json";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * 词典版本号，每次加载递增
+     */
+    private final long version;
+
+    /**
+     * 业务术语及其解释
+     */
+    private final Map<String, String> terms;
+
+    /**
+     * 同义词到标准术语的映射
+     */
+    private final Map<String, String> synonyms;
+
+    /**
+     * 触发时间推理的关键字
+     */
+    private final List<String> timeTriggers;
+
+    private final List<LogicRule> logicRules;
+
+    private final List<AggregationRule> aggregationRules;
+
+    private final List<FieldRule> fieldRules;
+
+    private final List<JoinRule> joinRules;
+
+    /**
+     * 术语、同义词和所有触发词构成的自动机
+     */
+    private final AhoCorasickMatcher matcher;
+
+    private BusinessDictionary(Definition definition, long version, Collection<String> builtinKeywords) {
+        this.version = version;
+        this.terms = Map.copyOf(definition.getTerms());
+        this.synonyms = Map.copyOf(definition.getSynonyms());
+        this.timeTriggers = List.copyOf(definition.getTimeTriggers());
+        this.logicRules = definition.getLogicRules().stream().map(LogicRule::new).toList();
+        this.aggregationRules = definition.getAggregationRules().stream().map(AggregationRule::new).toList();
+        this.fieldRules = definition.getFieldRules().stream().map(FieldRule::new).toList();
+        this.joinRules = definition.getJoinRules().stream().map(JoinRule::new).toList();
+
+        Set<String> keywords = new HashSet<>(builtinKeywords);
+        keywords.addAll(terms.keySet());
+        keywords.addAll(synonyms.keySet());
+        keywords.addAll(timeTriggers);
+        logicRules.forEach(rule -> rule.triggers.forEach(keywords::addAll));
+        aggregationRules.forEach(rule -> keywords.addAll(rule.triggers));
+        fieldRules.forEach(rule -> keywords.addAll(rule.triggers));
+        this.matcher = AhoCorasickMatcher.of(keywords);
+    }
+
+    /**
+     * 编译词典定义，builtinKeywords 为代码中使用、不在词典文件里的关键字
+     */
+    public static BusinessDictionary compile(Definition definition, long version, Collection<String> builtinKeywords) {
+        return new BusinessDictionary(definition, version, builtinKeywords);
+    }
+
+    /**
+     * 读取 JSON 格式的词典定义
+     */
+    public static Definition read(InputStream inputStream) throws IOException {
+        return OBJECT_MAPPER.readValue(inputStream, Definition.class);
+    }
+
+    /**
+     * 读取随应用打包的默认词典定义
+     */
+    public static Definition readDefault() {
+        try (InputStream inputStream = BusinessDictionary.class.getClassLoader().getResourceAsStream(DEFAULT_LOCATION)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("找不到默认业务词典: " + DEFAULT_LOCATION);
+            }
+            return read(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取默认业务词典失败", e);
+        }
+    }
+
+    /**
+     * 词典定义，与词典文件结构一一对应
+     */
+    @Data
+    public static class Definition {
+        private Map<String, String> terms = new LinkedHashMap<>();
+        private Map<String, String> synonyms = new LinkedHashMap<>();
+        private List<String> timeTriggers = new ArrayList<>();
+        private List<LogicRuleDefinition> logicRules = new ArrayList<>();
+        private List<AggregationRuleDefinition> aggregationRules = new ArrayList<>();
+        private List<FieldRuleDefinition> fieldRules = new ArrayList<>();
+        private List<JoinRuleDefinition> joinRules = new ArrayList<>();
+    }
+
+    /**
+     * 业务逻辑规则定义：每组触发词都至少命中一个时输出推理结果
+     */
+    @Data
+    public static class LogicRuleDefinition {
+        private List<List<String>> triggers = new ArrayList<>();
+        private String logic;
+    }
+
+    /**
+     * 聚合规则定义：指标命中任一触发词时输出聚合建议
+     */
+    @Data
+    public static class AggregationRuleDefinition {
+        private List<String> triggers = new ArrayList<>();
+        private String rule;
+    }
+
+    /**
+     * 字段需求规则定义：表名包含 table 且问题命中任一触发词时输出字段需求
+     */
+    @Data
+    public static class FieldRuleDefinition {
+        private String table;
+        private List<String> triggers = new ArrayList<>();
+        private String requirement;
+    }
+
+    /**
+     * 表关联规则定义：两张表的表名分别包含 tables 中的两个关键字时输出关联方式，与顺序无关
+     */
+    @Data
+    public static class JoinRuleDefinition {
+        private List<String> tables = new ArrayList<>();
+        private String rule;
+    }
+
+    @Getter
+    public static class LogicRule {
+        private final List<List<String>> triggers;
+        private final String logic;
+
+        private LogicRule(LogicRuleDefinition definition) {
+            this.triggers = definition.getTriggers().stream().map(List::copyOf).toList();
+            this.logic = definition.getLogic();
+        }
+
+        public boolean matches(Set<String> keywords) {
+            return triggers.stream().allMatch(group -> containsAny(keywords, group));
+        }
+    }
+
+    @Getter
+    public static class AggregationRule {
+        private final List<String> triggers;
+        private final String rule;
+
+        private AggregationRule(AggregationRuleDefinition definition) {
+            this.triggers = List.copyOf(definition.getTriggers());
+            this.rule = definition.getRule();
+        }
+
+        public boolean matches(Set<String> keywords) {
+            return containsAny(keywords, triggers);
+        }
+    }
+
+    @Getter
+    public static class FieldRule {
+        private final String table;
+        private final List<String> triggers;
+        private final String requirement;
+
+        private FieldRule(FieldRuleDefinition definition) {
+            this.table = definition.getTable();
+            this.triggers = List.copyOf(definition.getTriggers());
+            this.requirement = definition.getRequirement();
+        }
+
+        public boolean matches(String tableLower, Set<String> keywords) {
+            return tableLower.contains(table) && containsAny(keywords, triggers);
+        }
+    }
+
+    @Getter
+    public static class JoinRule {
+        private final String table1;
+        private final String table2;
+        private final String rule;
+
+        private JoinRule(JoinRuleDefinition definition) {
+            if (definition.getTables().size() != 2) {
+                throw new IllegalArgumentException("表关联规则必须指定两张表: " + definition.getTables());
+            }
+            this.table1 = definition.getTables().get(0);
+            this.table2 = definition.getTables().get(1);
+            this.rule = definition.getRule();
+        }
+
+        public boolean matches(String t1, String t2) {
+            return (t1.contains(table1) && t2.contains(table2)) || (t1.contains(table2) && t2.contains(table1));
+        }
+    }
+
+    private static boolean containsAny(Set<String> keywords, List<String> triggers) {
+        for (String trigger : triggers) {
+            if (keywords.contains(trigger)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * 业务词典加载器
+ * 启动时从配置的位置加载词典，之后定时检查文件修改时间，变化时重新加载；加载失败时继续使用旧词典
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BusinessDictionaryLoader implements InitializingBean {
+
+    private final BusinessRuleService businessRuleService;
+
+    private final ResourceLoader resourceLoader;
+
+    private final Text2SqlProperties properties;
+
+    private long lastModified = -1;
+
+    @Override
+    public void afterPropertiesSet() {
+        reload();
+    }
+
+    /**
+     * 重新加载词典，成功后原子替换业务规则服务使用的快照
+     */
+    public synchronized BusinessDictionary reload() {
+        String location = properties.getDictionary().getLocation();
+        Resource resource = resourceLoader.getResource(location);
+        long modified = lastModified(resource);
+        try (InputStream inputStream = resource.getInputStream()) {
+            BusinessDictionary dictionary = businessRuleService.updateDictionary(BusinessDictionary.read(inputStream));
+            lastModified = modified;
+            log.info("已从 {} 加载业务词典，版本: {}", location, dictionary.getVersion());
+            return dictionary;
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载业务词典失败: " + location, e);
+        }
+    }
+
+    /**
+     * 定时检查词典文件修改时间，变化时重新加载
+     */
+    @Scheduled(fixedDelayString = "${text2sql.dictionary.check-interval:PT30S}",
+            initialDelayString = "${text2sql.dictionary.check-interval:PT30S}")
+    public void checkForChanges() {
+        Resource resource = resourceLoader.getResource(properties.getDictionary().getLocation());
+        long modified = lastModified(resource);
+        synchronized (this) {
+            if (modified <= 0 || modified == lastModified) {
+                return;
+            }
+        }
+        try {
+            log.info("检测到业务词典变化，重新加载: {}", resource);
+            reload();
+        } catch (Exception e) {
+            log.warn("重新加载业务词典失败，继续使用版本 {} 的词典",
+                    businessRuleService.getDictionary().getVersion(), e);
+        }
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -1,63 +1,191 @@
 package com.example.text2sql.service;
 
+import com.example.text2sql.util.AhoCorasickMatcher;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.text.Normalizer;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * 业务规则服务
  * 提供业务术语解释、时间推理、聚合规则等智能推理功能
+ * <p>
+ * 业务术语、同义词和规则来自可热加载的业务词典，触发词统一编译进一个 Aho-Corasick 自动机，
+ * 每次推理只扫描一遍问题，耗时与词典大小无关。每次推理只读取一次词典快照引用，重新加载不会阻塞推理。
  */
+@Slf4j
 @Service
 public class BusinessRuleService {
 
-    private static final Map<String, String> BUSINESS_TERMS = new HashMap<>();
-    private static final Map<String, String> SYNONYMS = new HashMap<>();
-    
-    static {
-        // 业务术语解释
-        BUSINESS_TERMS.put("员工", "employees表中的员工记录");
-        BUSINESS_TERMS.put("部门", "department字段，表示员工所属部门");
-        BUSINESS_TERMS.put("工资", "salary字段，使用decimal(10,2)类型存储");
-        BUSINESS_TERMS.put("入职日期", "hire_date字段，记录员工入职时间");
-        BUSINESS_TERMS.put("邮箱", "email字段，具有唯一性约束");
-        BUSINESS_TERMS.put("职位", "position字段，存储员工职位信息");
-        BUSINESS_TERMS.put("项目", "projects表中的项目记录");
-        BUSINESS_TERMS.put("项目成员", "project_members表中的项目参与记录");
-        BUSINESS_TERMS.put("状态", "status字段，表示记录的状态信息");
-        
-        // 同义词映射
-        SYNONYMS.put("薪水", "工资");
-        SYNONYMS.put("薪资", "工资");
-        SYNONYMS.put("收入", "工资");
-        SYNONYMS.put("入职时间", "入职日期");
-        SYNONYMS.put("工作日期", "入职日期");
-        SYNONYMS.put("邮箱地址", "邮箱");
-        SYNONYMS.put("电子邮箱", "邮箱");
-        SYNONYMS.put("工作部门", "部门");
-        SYNONYMS.put("所属部门", "部门");
-        SYNONYMS.put("工作岗位", "职位");
-        SYNONYMS.put("职务", "职位");
+    // 问题标准化时需要去除的句读标点；比较符号、正负号和小数点会改变问题含义，需要保留
+    private static final Pattern PUNCTUATION_PATTERN = Pattern.compile("[,?!;:，。？！、；：\"'“”‘’]+");
+
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+
+    // 引号括起的取值（姓名、编号等），标准化时原样保留
+    private static final Pattern QUOTED_PATTERN = Pattern.compile(
+            "\"[^\"]*\"|'[^']*'|“[^”]*”|‘[^’]*’|＂[^＂]*＂|＇[^＇]*＇");
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    // "近X年"、"过去X个月"等相对时间表达式的前缀，"最近"包含"近"，无需单独列出
+    private static final List<String> RELATIVE_TIME_PREFIXES = List.of("近", "过去");
+
+    // 时间推理在代码中使用、不在词典文件里的关键字
+    private static final List<String> TIME_KEYWORDS = List.of("近", "过去", "今年", "去年");
+
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    // 当前词典快照，重新加载时整体替换
+    private volatile BusinessDictionary dictionary;
+
+    /**
+     * 使用随应用打包的默认词典创建服务，配置的词典由 {@link BusinessDictionaryLoader} 在启动时加载
+     */
+    public BusinessRuleService() {
+        this.dictionary = BusinessDictionary.compile(BusinessDictionary.readDefault(),
+                versionSequence.incrementAndGet(), TIME_KEYWORDS);
+    }
+
+    /**
+     * 获取当前词典快照
+     */
+    public BusinessDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * 编译词典定义并原子替换当前快照，正在执行的推理继续使用旧快照
+     */
+    public BusinessDictionary updateDictionary(BusinessDictionary.Definition definition) {
+        BusinessDictionary compiled = BusinessDictionary.compile(definition, versionSequence.incrementAndGet(),
+                TIME_KEYWORDS);
+        dictionary = compiled;
+        log.info("业务词典已更新，版本: {}，术语: {}，同义词: {}", compiled.getVersion(),
+                compiled.getTerms().size(), compiled.getSynonyms().size());
+        return compiled;
     }
 
     /**
      * 获取业务术语解释
      */
     public String getBusinessTermExplanation(String term) {
-        String normalizedTerm = normalizeTerm(term);
-        return BUSINESS_TERMS.getOrDefault(normalizedTerm, "未定义的业务术语: " + term);
+        BusinessDictionary current = dictionary;
+        String explanation = term == null ? null : current.getTerms().get(current.getSynonyms().getOrDefault(term, term));
+        return explanation != null ? explanation : "未定义的业务术语: " + term;
     }
 
     /**
-     * 标准化术语（处理同义词）
+     * 标准化用户问题，用于缓存等需要判断"同一个问题"的场景
+     * 统一全角/半角、大小写，去除标点，并将同义词替换为标准术语；空白只在两个单词之间保留一个，
+     * 引号括起的取值只统一引号样式，内容原样保留，避免"Li Na"和"Lina"、"张 三"和"张三"被当作同一个问题
      */
-    private String normalizeTerm(String term) {
-        return SYNONYMS.getOrDefault(term, term);
+    public String normalizeQuestion(String question) {
+        if (question == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(question.length());
+        Matcher matcher = QUOTED_PATTERN.matcher(question);
+        int last = 0;
+        while (matcher.find()) {
+            normalized.append(normalizeText(question.substring(last, matcher.start())));
+            String literal = matcher.group();
+            normalized.append('"').append(literal, 1, literal.length() - 1).append('"');
+            last = matcher.end();
+        }
+        normalized.append(normalizeText(question.substring(last)));
+        return normalized.toString();
+    }
+
+    /**
+     * 标准化引号之外的文本
+     */
+    private String normalizeText(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = PUNCTUATION_PATTERN.matcher(normalized).replaceAll(" ").trim();
+
+        // 空白两侧都是字母或数字的单词时保留一个空格，靠近汉字或符号的空白不影响含义，直接去除
+        StringBuilder collapsed = new StringBuilder(normalized.length());
+        Matcher matcher = WHITESPACE_PATTERN.matcher(normalized);
+        int last = 0;
+        while (matcher.find()) {
+            collapsed.append(normalized, last, matcher.start());
+            if (isWordChar(normalized.charAt(matcher.start() - 1)) && isWordChar(normalized.charAt(matcher.end()))) {
+                collapsed.append(' ');
+            }
+            last = matcher.end();
+        }
+        collapsed.append(normalized, last, normalized.length());
+        return replaceSynonyms(collapsed.toString());
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) && !Character.isIdeographic(c);
+    }
+
+    /**
+     * 将文本中的同义词替换为标准术语
+     * 重叠的同义词取最靠左、最长的一个，保证"邮箱地址"先于"邮箱"被替换
+     */
+    public String replaceSynonyms(String text) {
+        if (text == null) {
+            return "";
+        }
+        BusinessDictionary current = dictionary;
+        Map<String, String> synonymMap = current.getSynonyms();
+        List<AhoCorasickMatcher.Match> synonyms = new ArrayList<>();
+        current.getMatcher().scan(text, (start, end, keyword) -> {
+            if (synonymMap.containsKey(keyword)) {
+                synonyms.add(new AhoCorasickMatcher.Match(start, end, keyword));
+            }
+        });
+        if (synonyms.isEmpty()) {
+            return text;
+        }
+
+        synonyms.sort(Comparator.comparingInt(AhoCorasickMatcher.Match::getStart)
+                .thenComparing(match -> -match.getKeyword().length()));
+        StringBuilder replaced = new StringBuilder(text.length());
+        int position = 0;
+        for (AhoCorasickMatcher.Match match : synonyms) {
+            if (match.getStart() >= position) {
+                replaced.append(text, position, match.getStart()).append(synonymMap.get(match.getKeyword()));
+                position = match.getEnd();
+            }
+        }
+        return replaced.append(text, position, text.length()).toString();
+    }
+
+    /**
+     * 查找文本中出现的业务术语（包括以同义词形式出现的），按出现顺序返回对应的解释（包含表名、字段名）
+     */
+    public List<String> findBusinessTermExplanations(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        BusinessDictionary current = dictionary;
+        Set<String> explanations = new LinkedHashSet<>();
+        current.getMatcher().scan(text, (start, end, keyword) -> {
+            String explanation = current.getTerms().get(current.getSynonyms().getOrDefault(keyword, keyword));
+            if (explanation != null) {
+                explanations.add(explanation);
+            }
+        });
+        return List.copyOf(explanations);
     }
 
     /**
@@ -68,33 +196,29 @@ public class BusinessRuleService {
             return null;
         }
 
-        String expression = timeExpression.trim().toLowerCase();
+        List<AhoCorasickMatcher.Match> matches = dictionary.getMatcher().findAll(timeExpression);
         LocalDate now = LocalDate.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
         // 处理"近X年"、"过去X年"等表达式
-        Pattern yearPattern = Pattern.compile("(近|过去|最近)(\\d+)年");
-        Matcher yearMatcher = yearPattern.matcher(expression);
-        if (yearMatcher.find()) {
-            int years = Integer.parseInt(yearMatcher.group(2));
+        Integer years = findRelativeAmount(timeExpression, matches, "年");
+        if (years != null) {
             LocalDate startDate = now.minusYears(years);
-            return String.format("时间范围: %s 至 %s", startDate.format(formatter), now.format(formatter));
+            return String.format("时间范围: %s 至 %s", startDate.format(DATE_FORMATTER), now.format(DATE_FORMATTER));
         }
 
         // 处理"近X个月"、"过去X个月"等表达式
-        Pattern monthPattern = Pattern.compile("(近|过去|最近)(\\d+)个月");
-        Matcher monthMatcher = monthPattern.matcher(expression);
-        if (monthMatcher.find()) {
-            int months = Integer.parseInt(monthMatcher.group(2));
+        Integer months = findRelativeAmount(timeExpression, matches, "个月");
+        if (months != null) {
             LocalDate startDate = now.minusMonths(months);
-            return String.format("时间范围: %s 至 %s", startDate.format(formatter), now.format(formatter));
+            return String.format("时间范围: %s 至 %s", startDate.format(DATE_FORMATTER), now.format(DATE_FORMATTER));
         }
 
         // 处理"今年"、"去年"等表达式
-        if (expression.contains("今年")) {
-            return String.format("时间范围: %s-01-01 至 %s", now.getYear(), now.format(formatter));
+        Set<String> keywords = keywordsOf(matches);
+        if (keywords.contains("今年")) {
+            return String.format("时间范围: %s-01-01 至 %s", now.getYear(), now.format(DATE_FORMATTER));
         }
-        if (expression.contains("去年")) {
+        if (keywords.contains("去年")) {
             int lastYear = now.getYear() - 1;
             return String.format("时间范围: %d-01-01 至 %d-12-31", lastYear, lastYear);
         }
@@ -102,6 +226,25 @@ public class BusinessRuleService {
         return "无法解析的时间表达式: " + timeExpression;
     }
 
+    /**
+     * 查找第一个"前缀 + 数字 + 单位"形式的相对时间，例如"近3年"中的 3，没有时返回 null
+     */
+    private static Integer findRelativeAmount(String text, List<AhoCorasickMatcher.Match> matches, String unit) {
+        for (AhoCorasickMatcher.Match match : matches) {
+            if (!RELATIVE_TIME_PREFIXES.contains(match.getKeyword())) {
+                continue;
+            }
+            int end = match.getEnd();
+            while (end < text.length() && text.charAt(end) >= '0' && text.charAt(end) <= '9') {
+                end++;
+            }
+            if (end > match.getEnd() && text.startsWith(unit, end)) {
+                return Integer.parseInt(text.substring(match.getEnd(), end));
+            }
+        }
+        return null;
+    }
+
     /**
      * 聚合规则推理
      */
@@ -110,24 +253,12 @@ public class BusinessRuleService {
             return "未指定指标，无法确定聚合规则";
         }
 
-        String metricLower = metric.toLowerCase();
-        
-        // 数值型指标通常需要SUM
-        if (metricLower.contains("数量") || metricLower.contains("总数") || 
-            metricLower.contains("销量") || metricLower.contains("金额") ||
-            metricLower.contains("工资") || metricLower.contains("薪水")) {
-            return "数值型指标，建议使用SUM聚合函数";
-        }
-        
-        // 计数类指标使用COUNT
-        if (metricLower.contains("人数") || metricLower.contains("记录数") || 
-            metricLower.contains("条数")) {
-            return "计数类指标，建议使用COUNT聚合函数";
-        }
-        
-        // 平均值类指标使用AVG
-        if (metricLower.contains("平均") || metricLower.contains("均值")) {
-            return "平均值类指标，建议使用AVG聚合函数";
+        BusinessDictionary current = dictionary;
+        Set<String> keywords = current.getMatcher().findKeywords(metric);
+        for (BusinessDictionary.AggregationRule rule : current.getAggregationRules()) {
+            if (rule.matches(keywords)) {
+                return rule.getRule();
+            }
         }
         
         return "根据指标类型选择合适的聚合函数";
@@ -144,22 +275,10 @@ public class BusinessRuleService {
         String t1 = table1.toLowerCase();
         String t2 = table2.toLowerCase();
 
-        // 员工表与项目成员表的关联
-        if ((t1.contains("employee") && t2.contains("project_member")) ||
-            (t1.contains("project_member") && t2.contains("employee"))) {
-            return "通过employee_id字段关联员工表和项目成员表";
-        }
-
-        // 项目表与项目成员表的关联
-        if ((t1.contains("project") && t2.contains("project_member")) ||
-            (t1.contains("project_member") && t2.contains("project"))) {
-            return "通过project_id字段关联项目表和项目成员表";
-        }
-
-        // 员工表与部门表的关联（如果有部门表）
-        if ((t1.contains("employee") && t2.contains("department")) ||
-            (t1.contains("department") && t2.contains("employee"))) {
-            return "通过department字段关联员工表和部门表";
+        for (BusinessDictionary.JoinRule rule : dictionary.getJoinRules()) {
+            if (rule.matches(t1, t2)) {
+                return rule.getRule();
+            }
         }
 
         return "需要根据具体表结构确定关联字段";
@@ -170,33 +289,22 @@ public class BusinessRuleService {
      */
     public String getBusinessLogic(String query, String selectedTables) {
         StringBuilder logic = new StringBuilder();
+        BusinessDictionary current = dictionary;
+        Set<String> keywords = current.getMatcher().findKeywords(query);
         
         // 时间相关推理
-        if (query.contains("年") || query.contains("月") || query.contains("日")) {
+        if (current.getTimeTriggers().stream().anyMatch(keywords::contains)) {
             String timeLogic = parseTimeExpression(query);
             if (timeLogic != null) {
                 logic.append("时间推理: ").append(timeLogic).append("\n");
             }
         }
 
-        // 状态相关推理
-        if (query.contains("状态") || query.contains("进行中") || query.contains("已完成")) {
-            logic.append("状态推理: 需要查询status字段来确定记录状态\n");
-        }
-
-        // 排序相关推理
-        if (query.contains("最高") || query.contains("最低") || query.contains("前") || query.contains("排序")) {
-            logic.append("排序推理: 需要添加ORDER BY子句进行排序\n");
-        }
-
-        // 分组相关推理
-        if (query.contains("每个") || query.contains("按") || query.contains("分组")) {
-            logic.append("分组推理: 需要添加GROUP BY子句进行分组统计\n");
-        }
-
-        // 限制结果数量推理
-        if (query.contains("前") && (query.contains("条") || query.contains("个"))) {
-            logic.append("限制推理: 需要添加LIMIT子句限制返回结果数量\n");
+        // 状态、排序、分组、限制等推理
+        for (BusinessDictionary.LogicRule rule : current.getLogicRules()) {
+            if (rule.matches(keywords)) {
+                logic.append(rule.getLogic()).append("\n");
+            }
         }
 
         return logic.toString().trim();
@@ -208,42 +316,24 @@ public class BusinessRuleService {
     public String getFieldRequirements(String query, String tableName) {
         StringBuilder requirements = new StringBuilder();
         
-        String queryLower = query.toLowerCase();
+        BusinessDictionary current = dictionary;
+        Set<String> keywords = current.getMatcher().findKeywords(query);
         String tableLower = tableName.toLowerCase();
 
-        if (tableLower.contains("employee")) {
-            if (queryLower.contains("姓名") || queryLower.contains("名字")) {
-                requirements.append("需要name字段\n");
-            }
-            if (queryLower.contains("工资") || queryLower.contains("薪水") || queryLower.contains("薪资")) {
-                requirements.append("需要salary字段\n");
-            }
-            if (queryLower.contains("部门")) {
-                requirements.append("需要department字段\n");
-            }
-            if (queryLower.contains("职位") || queryLower.contains("岗位")) {
-                requirements.append("需要position字段\n");
-            }
-            if (queryLower.contains("入职") || queryLower.contains("日期")) {
-                requirements.append("需要hire_date字段\n");
-            }
-            if (queryLower.contains("邮箱") || queryLower.contains("邮件")) {
-                requirements.append("需要email字段\n");
-            }
-        }
-
-        if (tableLower.contains("project")) {
-            if (queryLower.contains("项目名称") || queryLower.contains("项目名")) {
-                requirements.append("需要project_name字段\n");
-            }
-            if (queryLower.contains("状态")) {
-                requirements.append("需要status字段\n");
-            }
-            if (queryLower.contains("开始") || queryLower.contains("结束")) {
-                requirements.append("需要start_date和end_date字段\n");
+        for (BusinessDictionary.FieldRule rule : current.getFieldRules()) {
+            if (rule.matches(tableLower, keywords)) {
+                requirements.append(rule.getRequirement()).append("\n");
             }
         }
 
         return requirements.toString().trim();
     }
+
+    private static Set<String> keywordsOf(Collection<AhoCorasickMatcher.Match> matches) {
+        Set<String> keywords = new HashSet<>();
+        for (AhoCorasickMatcher.Match match : matches) {
+            keywords.add(match.getKeyword());
+        }
+        return keywords;
+    }
 }
@@ -0,0 +1,233 @@
+package com.example.text2sql.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 列式查询结果
+ * <p>
+ * 列信息只保存一次，每列的值放在一个数组中：不含 NULL 的整数列和浮点列使用 long[]、double[]，
+ * 其他列使用 Object[]。与每行一个 Map 的结构相比，不再为每行创建 Map 和重复保存列名，
+ * JSON 中也不再每行重复输出列名。
+ */
+@Getter
+public class ColumnarResult {
+
+    /**
+     * 列信息，顺序与 values 一致
+     */
+    private final List<Column> columns;
+
+    private final int rowCount;
+
+    /**
+     * 每列的值数组：long[]、double[] 或 Object[]
+     */
+    private final List<Object> values;
+
+    private ColumnarResult(List<Column> columns, int rowCount, List<Object> values) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.values = values;
+    }
+
+    /**
+     * 将按行的结果转换为列式结果，用于结果已经以 Map 形式存在的场景
+     */
+    public static ColumnarResult fromRows(List<Map<String, Object>> rows) {
+        List<String> names = rows.isEmpty() ? List.of() : List.copyOf(rows.get(0).keySet());
+        Builder builder = new Builder(names);
+        for (Map<String, Object> row : rows) {
+            for (int i = 0; i < names.size(); i++) {
+                builder.add(i, row.get(names.get(i)));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 取第 row 行第 column 列的值
+     */
+    public Object getValue(int row, int column) {
+        Object array = values.get(column);
+        if (array instanceof long[] longs) {
+            return longs[row];
+        }
+        if (array instanceof double[] doubles) {
+            return doubles[row];
+        }
+        return ((Object[]) array)[row];
+    }
+
+    /**
+     * 转换回按行的结果，供需要 Map 的调用方使用
+     */
+    public List<Map<String, Object>> toRows() {
+        List<Map<String, Object>> rows = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (int column = 0; column < columns.size(); column++) {
+                map.put(columns.get(column).getName(), getValue(row, column));
+            }
+            rows.add(map);
+        }
+        return rows;
+    }
+
+    /**
+     * 列信息
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Column {
+        private final String name;
+
+        /**
+         * 由第一个非 NULL 值推断的类型：long、double、decimal、string、boolean、temporal、other，全为 NULL 时为 null
+         */
+        private final String type;
+    }
+
+    /**
+     * 逐个单元格追加值的构建器，每行需要按列顺序追加完所有列
+     */
+    public static class Builder {
+        private final List<String> names;
+        private final ColumnBuffer[] buffers;
+
+        public Builder(List<String> names) {
+            this.names = names;
+            this.buffers = new ColumnBuffer[names.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = new ColumnBuffer();
+            }
+        }
+
+        public void add(int column, Object value) {
+            buffers[column].add(value);
+        }
+
+        public ColumnarResult build() {
+            List<Column> columns = new ArrayList<>(names.size());
+            List<Object> values = new ArrayList<>(names.size());
+            for (int i = 0; i < buffers.length; i++) {
+                columns.add(new Column(names.get(i), buffers[i].type));
+                values.add(buffers[i].toArray());
+            }
+            int rowCount = buffers.length == 0 ? 0 : buffers[0].size;
+            return new ColumnarResult(List.copyOf(columns), rowCount, values);
+        }
+    }
+
+    /**
+     * 单列的值缓冲区，出现 NULL 或与当前数组类型不符的值时退化为 Object[]
+     */
+    private static class ColumnBuffer {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private long[] longs;
+        private double[] doubles;
+        private Object[] objects;
+        private int size;
+        private String type;
+
+        private void add(Object value) {
+            if (type == null && value != null) {
+                type = typeOf(value);
+            }
+            if (size == 0 && objects == null) {
+                if (isIntegral(value)) {
+                    longs = new long[INITIAL_CAPACITY];
+                } else if (isFloating(value)) {
+                    doubles = new double[INITIAL_CAPACITY];
+                } else {
+                    objects = new Object[INITIAL_CAPACITY];
+                }
+            }
+
+            if (longs != null && isIntegral(value)) {
+                if (size == longs.length) {
+                    longs = Arrays.copyOf(longs, size * 2);
+                }
+                longs[size++] = ((Number) value).longValue();
+                return;
+            }
+            if (doubles != null && isFloating(value)) {
+                if (size == doubles.length) {
+                    doubles = Arrays.copyOf(doubles, size * 2);
+                }
+                doubles[size++] = ((Number) value).doubleValue();
+                return;
+            }
+            if (objects == null) {
+                promoteToObjects();
+            }
+            if (size == objects.length) {
+                objects = Arrays.copyOf(objects, size * 2);
+            }
+            objects[size++] = value;
+        }
+
+        private void promoteToObjects() {
+            objects = new Object[Math.max(INITIAL_CAPACITY, size * 2)];
+            for (int i = 0; i < size; i++) {
+                if (longs != null) {
+                    objects[i] = longs[i];
+                } else {
+                    objects[i] = doubles[i];
+                }
+            }
+            longs = null;
+            doubles = null;
+        }
+
+        private Object toArray() {
+            if (longs != null) {
+                return Arrays.copyOf(longs, size);
+            }
+            if (doubles != null) {
+                return Arrays.copyOf(doubles, size);
+            }
+            return objects != null ? Arrays.copyOf(objects, size) : new Object[0];
+        }
+
+        private static boolean isIntegral(Object value) {
+            return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+        }
+
+        private static boolean isFloating(Object value) {
+            return value instanceof Double || value instanceof Float;
+        }
+
+        private static String typeOf(Object value) {
+            if (isIntegral(value)) {
+                return "long";
+            }
+            if (isFloating(value)) {
+                return "double";
+            }
+            if (value instanceof BigDecimal || value instanceof Number) {
+                return "decimal";
+            }
+            if (value instanceof CharSequence) {
+                return "string";
+            }
+            if (value instanceof Boolean) {
+                return "boolean";
+            }
+            if (value instanceof Temporal || value instanceof Date) {
+                return "temporal";
+            }
+            return "other";
+        }
+    }
+}
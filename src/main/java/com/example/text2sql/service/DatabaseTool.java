@@ -1,18 +1,41 @@
 package com.example.text2sql.service;
 
+import com.example.text2sql.config.QueryConnectionPool;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.sql.ResultSetMetaData;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * 简化的数据库 Schema 服务
  * 只提供核心功能：获取表列表和表 schema
+ * <p>
+ * Schema 信息来自内存中的 {@link SchemaSnapshot}，首次使用时构建，
+ * 之后由定时任务比对指纹决定是否重建，请求路径上不再访问 INFORMATION_SCHEMA。
+ * <p>
+ * 生成的 SQL 在 {@link QueryConnectionPool} 的独立只读连接池中执行，并经过 {@link QueryGuard}：
+ * 限制返回行数和查询超时，按行读取的结果超出内存预算时中止。Schema 查询使用应用的主连接池。
  */
 @Slf4j
 @Service
@@ -20,25 +43,109 @@ import java.util.Map;
 public class DatabaseTool {
     private final JdbcTemplate jdbcTemplate;
 
+    private final Text2SqlMetrics metrics;
+
+    private final QueryGuard queryGuard;
+
+    private final QueryConnectionPool queryConnectionPool;
+
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    private volatile SchemaSnapshot snapshot;
+
+    // 批量查询期间固定使用的快照，只对当前线程生效
+    private final ThreadLocal<SchemaSnapshot> pinnedSnapshot = new ThreadLocal<>();
+
+    // Schema 指纹：表和列定义的数量与校验和，比完整的 DDL 查询轻量得多
+    private static final String FINGERPRINT_SQL = """
+            SELECT CONCAT(
+                (SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = DATABASE()), ':',
+                (SELECT COALESCE(SUM(CRC32(CONCAT_WS('|', TABLE_NAME, TABLE_TYPE, TABLE_COMMENT))), 0)
+                 FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = DATABASE()), ':',
+                (SELECT COALESCE(SUM(CRC32(CONCAT_WS('|', TABLE_NAME, COLUMN_NAME, REFERENCED_TABLE_NAME))), 0)
+                 FROM INFORMATION_SCHEMA.KEY_COLUMN_USAGE
+                 WHERE TABLE_SCHEMA = DATABASE() AND REFERENCED_TABLE_NAME IS NOT NULL), ':',
+                COUNT(*), ':',
+                COALESCE(SUM(CRC32(CONCAT_WS('|', TABLE_NAME, COLUMN_NAME, ORDINAL_POSITION, COLUMN_TYPE,
+                    IS_NULLABLE, COLUMN_DEFAULT, COLUMN_KEY, COLUMN_COMMENT))), 0)
+            )
+            FROM INFORMATION_SCHEMA.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE()
+            """;
+
+    // 一次查询获取所有表结构
+    private static final String TABLES_SQL = """
+            SELECT
+                t.TABLE_NAME,
+                t.TABLE_TYPE,
+                t.TABLE_COMMENT,
+                t.ENGINE,
+                t.TABLE_COLLATION,
+                GROUP_CONCAT(
+                    CONCAT(
+                        '  `', c.COLUMN_NAME, '` ', c.COLUMN_TYPE,
+                        CASE WHEN c.IS_NULLABLE = 'NO' THEN ' NOT NULL' ELSE '' END,
+                        CASE WHEN c.COLUMN_DEFAULT IS NOT NULL THEN CONCAT(' DEFAULT ', c.COLUMN_DEFAULT) ELSE '' END,
+                        CASE WHEN c.COLUMN_COMMENT != '' THEN CONCAT(' COMMENT ''', c.COLUMN_COMMENT, '''') ELSE '' END
+                    ) ORDER BY c.ORDINAL_POSITION SEPARATOR ',\n'
+                ) AS COLUMN_DEFINITIONS,
+                GROUP_CONCAT(
+                    CASE WHEN c.COLUMN_KEY = 'PRI' THEN CONCAT('  PRIMARY KEY (`', c.COLUMN_NAME, '`)') ELSE NULL END
+                    ORDER BY c.ORDINAL_POSITION SEPARATOR ',\n'
+                ) AS PRIMARY_KEYS,
+                GROUP_CONCAT(
+                    CASE WHEN c.COLUMN_KEY = 'UNI' THEN CONCAT('  UNIQUE KEY `', c.COLUMN_NAME, '` (`', c.COLUMN_NAME, '`)') ELSE NULL END
+                    ORDER BY c.ORDINAL_POSITION SEPARATOR ',\n'
+                ) AS UNIQUE_KEYS
+            FROM INFORMATION_SCHEMA.TABLES t
+            LEFT JOIN INFORMATION_SCHEMA.COLUMNS c ON t.TABLE_NAME = c.TABLE_NAME AND t.TABLE_SCHEMA = c.TABLE_SCHEMA
+            WHERE t.TABLE_SCHEMA = DATABASE()
+            GROUP BY t.TABLE_NAME, t.TABLE_TYPE, t.TABLE_COMMENT, t.ENGINE, t.TABLE_COLLATION
+            ORDER BY t.TABLE_NAME
+            """;
+
+    // 一次查询获取所有表的列信息
+    private static final String COLUMNS_SQL = """
+            SELECT
+                TABLE_NAME,
+                COLUMN_NAME,
+                COLUMN_TYPE,
+                IS_NULLABLE,
+                COLUMN_DEFAULT,
+                COLUMN_COMMENT,
+                COLUMN_KEY,
+                EXTRA
+            FROM INFORMATION_SCHEMA.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE()
+            ORDER BY TABLE_NAME, ORDINAL_POSITION
+            """;
+
+    // 一次查询获取所有外键引用关系
+    private static final String FOREIGN_KEYS_SQL = """
+            SELECT DISTINCT
+                TABLE_NAME,
+                REFERENCED_TABLE_NAME
+            FROM INFORMATION_SCHEMA.KEY_COLUMN_USAGE
+            WHERE TABLE_SCHEMA = DATABASE() AND REFERENCED_TABLE_NAME IS NOT NULL
+            ORDER BY TABLE_NAME, REFERENCED_TABLE_NAME
+            """;
+
     /**
      * 获取所有业务表列表
      */
     @Tool(name = "getTableNames", description = "获取数据库中所有表的名称列表")
     public List<String> getTableNames() {
-        try {
-            String sql = """
-                    SELECT TABLE_NAME 
-                    FROM INFORMATION_SCHEMA.TABLES 
-                    WHERE TABLE_SCHEMA = DATABASE()
-                    AND TABLE_TYPE = 'BASE TABLE'
-                    ORDER BY TABLE_NAME
-                    """;
-
-            return jdbcTemplate.queryForList(sql, String.class);
-        } catch (Exception e) {
-            log.error("获取表列表失败", e);
-            return List.of();
-        }
+        return metrics.recordTool("getTableNames", () -> {
+            try {
+                return getSnapshot().getTables().values().stream()
+                        .filter(SchemaSnapshot.TableSchema::isBaseTable)
+                        .map(SchemaSnapshot.TableSchema::getName)
+                        .toList();
+            } catch (Exception e) {
+                log.error("获取表列表失败", e);
+                return List.<String>of();
+            }
+        });
     }
 
     /**
@@ -46,127 +153,307 @@ public class DatabaseTool {
      */
     @Tool(name = "getTableSchema", description = "获取指定表的完整结构信息，包括列定义、主键、唯一键等")
     public String getTableSchema(@ToolParam(description = "表名") String tableName) {
-        return getDatabaseSchema(tableName);
+        return metrics.recordTool("getTableSchema", () -> {
+            SchemaSnapshot.TableSchema table = getSnapshot().getTable(tableName);
+            return table != null ? table.getDdl() : "";
+        });
     }
 
     @Tool(name = "getDatabaseSchema", description = "获取数据库中所有表的结构信息")
     public String getDatabaseSchema() {
-        return getDatabaseSchema(null);
-    }
-
-    private String getDatabaseSchema(String table) {
-        // 一次查询获取所有表结构
-        String sql = """
-                SELECT 
-                    t.TABLE_NAME,
-                    t.TABLE_COMMENT,
-                    t.ENGINE,
-                    t.TABLE_COLLATION,
-                    GROUP_CONCAT(
-                        CONCAT(
-                            '  `', c.COLUMN_NAME, '` ', c.COLUMN_TYPE,
-                            CASE WHEN c.IS_NULLABLE = 'NO' THEN ' NOT NULL' ELSE '' END,
-                            CASE WHEN c.COLUMN_DEFAULT IS NOT NULL THEN CONCAT(' DEFAULT ', c.COLUMN_DEFAULT) ELSE '' END,
-                            CASE WHEN c.COLUMN_COMMENT != '' THEN CONCAT(' COMMENT ''', c.COLUMN_COMMENT, '''') ELSE '' END
-                        ) ORDER BY c.ORDINAL_POSITION SEPARATOR ',\n'
-                    ) AS COLUMN_DEFINITIONS,
-                    GROUP_CONCAT(
-                        CASE WHEN c.COLUMN_KEY = 'PRI' THEN CONCAT('  PRIMARY KEY (`', c.COLUMN_NAME, '`)') ELSE NULL END
-                        ORDER BY c.ORDINAL_POSITION SEPARATOR ',\n'
-                    ) AS PRIMARY_KEYS,
-                    GROUP_CONCAT(
-                        CASE WHEN c.COLUMN_KEY = 'UNI' THEN CONCAT('  UNIQUE KEY `', c.COLUMN_NAME, '` (`', c.COLUMN_NAME, '`)') ELSE NULL END
-                        ORDER BY c.ORDINAL_POSITION SEPARATOR ',\n'
-                    ) AS UNIQUE_KEYS
-                FROM INFORMATION_SCHEMA.TABLES t
-                LEFT JOIN INFORMATION_SCHEMA.COLUMNS c ON t.TABLE_NAME = c.TABLE_NAME AND t.TABLE_SCHEMA = c.TABLE_SCHEMA
-                WHERE t.TABLE_SCHEMA = DATABASE() and 1=1
-                GROUP BY t.TABLE_NAME, t.TABLE_COMMENT, t.ENGINE, t.TABLE_COLLATION
-                ORDER BY t.TABLE_NAME
-                """;
-
-        if (table != null) {
-            sql = sql.replace("1=1", "t.TABLE_NAME='" + table + "'");
-        }
-        List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
+        return metrics.recordTool("getDatabaseSchema", () -> getSnapshot().getDatabaseDdl());
+    }
 
-        StringBuilder schema = new StringBuilder();
-        for (Map<String, Object> row : results) {
-            String tableName = (String) row.get("TABLE_NAME");
-            String tableComment = (String) row.get("TABLE_COMMENT");
-            String engine = (String) row.get("ENGINE");
-            String collation = (String) row.get("TABLE_COLLATION");
-            String columnDefinitions = (String) row.get("COLUMN_DEFINITIONS");
-            String primaryKeys = (String) row.get("PRIMARY_KEYS");
-            String uniqueKeys = (String) row.get("UNIQUE_KEYS");
-
-            // 表注释
-            if (tableComment != null && !tableComment.trim().isEmpty()) {
-                schema.append("-- ").append(tableComment);
-            } else {
-                schema.append("-- ").append(tableName).append(" 表");
-            }
-            schema.append("\n");
+    @Tool(name = "getTableColumns", description = "获取指定表的所有列信息")
+    public List<Map<String, Object>> getTableColumns(@ToolParam(description = "表名") String tableName) {
+        return metrics.recordTool("getTableColumns", () -> {
+            SchemaSnapshot.TableSchema table = getSnapshot().getTable(tableName);
+            return table != null ? table.getColumns() : List.<Map<String, Object>>of();
+        });
+    }
 
-            // CREATE TABLE 语句
-            schema.append("CREATE TABLE `").append(tableName).append("` (\n");
+    @Tool(name = "executeQuery", description = "执行 SQL 查询并返回结果（仅支持 SELECT 查询）")
+    public List<Map<String, Object>> executeQuery(@ToolParam(description = "SQL 查询语句") String sql) {
+        return metrics.recordTool("executeQuery", () -> queryRows(queryGuard.limit(sql)));
+    }
 
-            // 列定义
-            if (columnDefinitions != null) {
-                schema.append(columnDefinitions);
-            }
+    /**
+     * 执行查询并直接读取为列式结果，不为每行创建 Map
+     */
+    public ColumnarResult executeQueryColumnar(String sql) {
+        long start = System.nanoTime();
+        ColumnarResult result = null;
+        try {
+            PreparedStatementCreator statement = queryGuard.prepare(queryGuard.limit(sql));
+            result = queryJdbcTemplate().query(statement, (ResultSetExtractor<ColumnarResult>) rs -> {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                List<String> names = new ArrayList<>(columnCount);
+                for (int i = 1; i <= columnCount; i++) {
+                    names.add(JdbcUtils.lookupColumnName(metaData, i));
+                }
+                QueryGuard.MemoryBudget budget = queryGuard.newBudget();
+                ColumnarResult.Builder builder = new ColumnarResult.Builder(names);
+                while (rs.next()) {
+                    for (int i = 1; i <= columnCount; i++) {
+                        Object value = JdbcUtils.getResultSetValue(rs, i);
+                        budget.charge(value);
+                        builder.add(i - 1, value);
+                    }
+                }
+                return builder.build();
+            });
+            return result;
+        } catch (QueryTimeoutException e) {
+            queryGuard.recordTimeout();
+            throw e;
+        } finally {
+            metrics.recordSqlExecution("buffered", System.nanoTime() - start,
+                    result != null ? result.getRowCount() : 0, result != null);
+        }
+    }
 
-            // 主键约束
-            if (primaryKeys != null && !primaryKeys.trim().isEmpty()) {
-                schema.append(",\n").append(primaryKeys);
-            }
+    /**
+     * 执行带参数的查询，供分页等由应用自身拼接的 SQL 使用，不作为工具暴露给大模型
+     */
+    public List<Map<String, Object>> queryForList(String sql, Object... args) {
+        return queryRows(sql, args);
+    }
 
-            // 唯一键约束
-            if (uniqueKeys != null && !uniqueKeys.trim().isEmpty()) {
-                schema.append(",\n").append(uniqueKeys);
-            }
+    /**
+     * 以 JSON 格式获取查询的执行计划，不执行查询本身
+     */
+    public String explain(String sql) {
+        return queryJdbcTemplate().query(queryGuard.prepare("EXPLAIN FORMAT=JSON " + sql),
+                (ResultSetExtractor<String>) rs -> rs.next() ? rs.getString(1) : null);
+    }
+
+    /**
+     * 以只进游标执行查询，逐行回调而不把结果整体加载到内存
+     *
+     * @param fetchSize JDBC fetch size，MySQL 驱动下 Integer.MIN_VALUE 表示逐行流式读取
+     */
+    public void streamQuery(String sql, int fetchSize, RowCallbackHandler handler) {
+        long start = System.nanoTime();
+        long[] rows = {0};
+        boolean success = false;
+        try {
+            queryJdbcTemplate().query(queryGuard.prepareStream(sql, fetchSize), (RowCallbackHandler) rs -> {
+                rows[0]++;
+                handler.processRow(rs);
+            });
+            success = true;
+        } catch (QueryTimeoutException e) {
+            queryGuard.recordTimeout();
+            throw e;
+        } finally {
+            metrics.recordSqlExecution("stream", System.nanoTime() - start, rows[0], success);
+        }
+    }
 
-            schema.append("\n)");
+    /**
+     * 在执行防护下按行读取结果，累计的估算内存超出预算时中止
+     */
+    private List<Map<String, Object>> queryRows(String sql, Object... args) {
+        long start = System.nanoTime();
+        List<Map<String, Object>> rows = null;
+        try {
+            PreparedStatementCreator statement = queryGuard.prepare(sql, args);
+            rows = queryJdbcTemplate().query(statement, (ResultSetExtractor<List<Map<String, Object>>>) rs -> {
+                QueryGuard.MemoryBudget budget = queryGuard.newBudget();
+                ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+                List<Map<String, Object>> result = new ArrayList<>();
+                while (rs.next()) {
+                    Map<String, Object> row = rowMapper.mapRow(rs, result.size());
+                    budget.reserve(QueryGuard.ROW_OVERHEAD + QueryGuard.ENTRY_OVERHEAD * row.size());
+                    row.values().forEach(budget::charge);
+                    result.add(row);
+                }
+                return result;
+            });
+            return rows;
+        } catch (QueryTimeoutException e) {
+            queryGuard.recordTimeout();
+            throw e;
+        } finally {
+            metrics.recordSqlExecution("buffered", System.nanoTime() - start,
+                    rows != null ? rows.size() : 0, rows != null);
+        }
+    }
 
-            // 表注释
-            if (tableComment != null && !tableComment.trim().isEmpty()) {
-                schema.append(" COMMENT='").append(tableComment).append("'");
-            }
+    /**
+     * 执行生成 SQL 使用的 JdbcTemplate，连接来自独立的只读连接池
+     */
+    private JdbcTemplate queryJdbcTemplate() {
+        return queryConnectionPool.getJdbcTemplate();
+    }
 
-            // 表选项
-            if (engine != null) {
-                schema.append(" ENGINE=").append(engine);
+    /**
+     * 获取当前 Schema 快照，首次调用时构建
+     */
+    public SchemaSnapshot getSnapshot() {
+        SchemaSnapshot pinned = pinnedSnapshot.get();
+        if (pinned != null) {
+            return pinned;
+        }
+        SchemaSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = buildSnapshot(queryFingerprint());
             }
-            if (collation != null) {
-                schema.append(" DEFAULT CHARSET=").append(collation.split("_")[0]);
-                schema.append(" COLLATE=").append(collation);
+            return snapshot;
+        }
+    }
+
+    /**
+     * 在当前线程中固定使用指定的快照执行操作，期间快照被刷新也不影响本次操作看到的 Schema
+     */
+    public <T> T withSnapshot(SchemaSnapshot pinned, Supplier<T> action) {
+        SchemaSnapshot previous = pinnedSnapshot.get();
+        pinnedSnapshot.set(pinned);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                pinnedSnapshot.set(previous);
+            } else {
+                pinnedSnapshot.remove();
             }
+        }
+    }
+
+    /**
+     * 强制重建 Schema 快照
+     */
+    public synchronized SchemaSnapshot refreshSchema() {
+        snapshot = buildSnapshot(queryFingerprint());
+        log.info("Schema 快照已刷新，版本: {}", snapshot.getVersion());
+        return snapshot;
+    }
 
-            schema.append(";\n\n");
+    /**
+     * 定时比对 Schema 指纹，发生变化时重建快照
+     */
+    @Scheduled(fixedDelayString = "${text2sql.schema.check-interval:PT1M}",
+            initialDelayString = "${text2sql.schema.check-interval:PT1M}")
+    public void checkSchemaStaleness() {
+        SchemaSnapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        try {
+            String fingerprint = queryFingerprint();
+            if (!Objects.equals(fingerprint, current.getFingerprint())) {
+                log.info("检测到 Schema 变化，重建快照: {} -> {}", current.getFingerprint(), fingerprint);
+                synchronized (this) {
+                    snapshot = buildSnapshot(fingerprint);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("检查 Schema 指纹失败，继续使用版本 {} 的快照", current.getVersion(), e);
         }
-        return schema.toString();
     }
 
-    @Tool(name = "getTableColumns", description = "获取指定表的所有列信息")
-    public List<Map<String, Object>> getTableColumns(@ToolParam(description = "表名") String tableName) {
-        String sql = """
-                SELECT 
-                    COLUMN_NAME,
-                    COLUMN_TYPE,
-                    IS_NULLABLE,
-                    COLUMN_DEFAULT,
-                    COLUMN_COMMENT,
-                    COLUMN_KEY,
-                    EXTRA
-                FROM INFORMATION_SCHEMA.COLUMNS 
-                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?
-                ORDER BY ORDINAL_POSITION
-                """;
-        return jdbcTemplate.queryForList(sql, tableName);
+    private String queryFingerprint() {
+        return jdbcTemplate.queryForObject(FINGERPRINT_SQL, String.class);
     }
 
-    @Tool(name = "executeQuery", description = "执行 SQL 查询并返回结果（仅支持 SELECT 查询）")
-    public List<Map<String, Object>> executeQuery(@ToolParam(description = "SQL 查询语句") String sql) {
-        return jdbcTemplate.queryForList(sql);
+    private SchemaSnapshot buildSnapshot(String fingerprint) {
+        Map<String, List<Map<String, Object>>> columnsByTable = new HashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(COLUMNS_SQL)) {
+            Map<String, Object> column = new LinkedHashMap<>(row);
+            String tableName = (String) column.remove("TABLE_NAME");
+            columnsByTable.computeIfAbsent(tableName, k -> new ArrayList<>())
+                    .add(Collections.unmodifiableMap(column));
+        }
+
+        Map<String, List<String>> referencesByTable = new HashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(FOREIGN_KEYS_SQL)) {
+            referencesByTable.computeIfAbsent((String) row.get("TABLE_NAME"), k -> new ArrayList<>())
+                    .add((String) row.get("REFERENCED_TABLE_NAME"));
+        }
+
+        Map<String, SchemaSnapshot.TableSchema> tables = new LinkedHashMap<>();
+        StringBuilder databaseDdl = new StringBuilder();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(TABLES_SQL)) {
+            String tableName = (String) row.get("TABLE_NAME");
+            String ddl = renderTableDdl(row);
+            databaseDdl.append(ddl);
+            tables.put(tableName, new SchemaSnapshot.TableSchema(
+                    tableName,
+                    (String) row.get("TABLE_COMMENT"),
+                    (String) row.get("TABLE_TYPE"),
+                    ddl,
+                    Collections.unmodifiableList(columnsByTable.getOrDefault(tableName, List.of())),
+                    List.copyOf(referencesByTable.getOrDefault(tableName, List.of()))));
+        }
+
+        long version = versionSequence.incrementAndGet();
+        log.debug("构建 Schema 快照，版本: {}，表数量: {}", version, tables.size());
+        return new SchemaSnapshot(version, fingerprint, Instant.now(),
+                Collections.unmodifiableMap(tables), databaseDdl.toString());
+    }
+
+    /**
+     * 将一行表结构查询结果渲染为 CREATE TABLE 语句
+     */
+    static String renderTableDdl(Map<String, Object> row) {
+        String tableName = (String) row.get("TABLE_NAME");
+        String tableComment = (String) row.get("TABLE_COMMENT");
+        String engine = (String) row.get("ENGINE");
+        String collation = (String) row.get("TABLE_COLLATION");
+        String columnDefinitions = (String) row.get("COLUMN_DEFINITIONS");
+        String primaryKeys = (String) row.get("PRIMARY_KEYS");
+        String uniqueKeys = (String) row.get("UNIQUE_KEYS");
+
+        StringBuilder schema = new StringBuilder();
+
+        // 表注释
+        if (tableComment != null && !tableComment.trim().isEmpty()) {
+            schema.append("-- ").append(tableComment);
+        } else {
+            schema.append("-- ").append(tableName).append(" 表");
+        }
+        schema.append("\n");
+
+        // CREATE TABLE 语句
+        schema.append("CREATE TABLE `").append(tableName).append("` (\n");
+
+        // 列定义
+        if (columnDefinitions != null) {
+            schema.append(columnDefinitions);
+        }
+
+        // 主键约束
+        if (primaryKeys != null && !primaryKeys.trim().isEmpty()) {
+            schema.append(",\n").append(primaryKeys);
+        }
+
+        // 唯一键约束
+        if (uniqueKeys != null && !uniqueKeys.trim().isEmpty()) {
+            schema.append(",\n").append(uniqueKeys);
+        }
+
+        schema.append("\n)");
+
+        // 表注释
+        if (tableComment != null && !tableComment.trim().isEmpty()) {
+            schema.append(" COMMENT='").append(tableComment).append("'");
+        }
+
+        // 表选项
+        if (engine != null) {
+            schema.append(" ENGINE=").append(engine);
+        }
+        if (collation != null) {
+            schema.append(" DEFAULT CHARSET=").append(collation.split("_")[0]);
+            schema.append(" COLLATE=").append(collation);
+        }
+
+        schema.append(";\n\n");
+        return schema.toString();
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package com.example.text2sql.service;
 
-import com.example.text2sql.util.SqlUtils;
+import com.example.text2sql.config.Text2SqlProperties;
+import com.example.text2sql.util.SqlSafetyValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -20,6 +21,8 @@ import java.util.Map;
 public class DirectText2SqlService implements Text2SqlService {
     private final ChatClient chatClient;
     private final DatabaseTool databaseTool;
+    private final GeneratedSqlCache<String> generatedSqlCache;
+    private final SchemaRetriever schemaRetriever;
 
     // SQL 生成提示模板
     private static final String SQL_GENERATION_PROMPT = """
@@ -54,36 +57,70 @@ public class DirectText2SqlService implements Text2SqlService {
                 return Text2SqlResult.error("查询内容不能为空");
             }
 
-            // 2. 生成 SQL
-            String sql = generateSql(userQuery);
-            if (sql == null || sql.trim().isEmpty()) {
-                return Text2SqlResult.error("无法生成有效的SQL查询，请检查您的查询描述");
-            }
-
-            // 3. 验证 SQL 安全性
-            if (!SqlUtils.isSqlSafe(sql)) {
-                return Text2SqlResult.error("生成的 SQL 包含不安全的操作，请重新描述您的查询需求");
+            // 2. 生成并校验 SQL，相同问题直接复用缓存
+            long generationStart = System.nanoTime();
+            String sql;
+            try {
+                sql = prepareSql(userQuery);
+            } catch (IllegalArgumentException e) {
+                return Text2SqlResult.error(e.getMessage());
             }
+            long generationMillis = (System.nanoTime() - generationStart) / 1_000_000;
 
             log.info("sql: {}", sql);
 
-            // 4. 执行 SQL 查询
+            // 3. 执行 SQL 查询
+            long executionStart = System.nanoTime();
             List<Map<String, Object>> results = databaseTool.executeQuery(sql);
+            long executionMillis = (System.nanoTime() - executionStart) / 1_000_000;
 
-            return Text2SqlResult.success(sql, results);
+            return Text2SqlResult.success(sql, results).withTimings(generationMillis, executionMillis);
 
+        } catch (LlmOverloadedException e) {
+            // 限流拒绝交给接口层返回 429
+            throw e;
         } catch (Exception e) {
             log.error("处理查询时发生错误: {}", e.getMessage(), e);
             return Text2SqlResult.error("处理查询时发生错误: " + e.getMessage());
         }
     }
 
+    @Override
+    public String prepareSql(String userQuery) {
+        String sql = generatedSqlCache.get(userQuery);
+        if (sql != null) {
+            return sql;
+        }
+
+        sql = generateSql(userQuery);
+        if (sql == null || sql.trim().isEmpty()) {
+            throw new IllegalArgumentException("无法生成有效的SQL查询，请检查您的查询描述");
+        }
+
+        // 验证 SQL 安全性
+        SqlSafetyValidator.Verdict verdict = SqlSafetyValidator.validate(sql);
+        if (!verdict.isSafe()) {
+            throw new IllegalArgumentException("生成的 SQL 包含不安全的操作（" + verdict.getReason() + "），请重新描述您的查询需求");
+        }
+
+        generatedSqlCache.put(userQuery, sql);
+        return sql;
+    }
+
+    @Override
+    public Text2SqlResult executeSql(String sql, Text2SqlProperties.ResultFormat format) {
+        if (format == Text2SqlProperties.ResultFormat.COLUMNAR) {
+            return Text2SqlResult.success(sql, databaseTool.executeQueryColumnar(sql));
+        }
+        return Text2SqlResult.success(sql, databaseTool.executeQuery(sql));
+    }
+
     /**
      * 生成 SQL 查询语句
      */
     private String generateSql(String userQuery) {
-        // 获取数据库结构信息
-        String schema = databaseTool.getDatabaseSchema();
+        // 获取与问题相关的数据库结构信息
+        String schema = schemaRetriever.retrieveSchema(userQuery);
 
         // 创建提示模板
         PromptTemplate promptTemplate = new PromptTemplate(SQL_GENERATION_PROMPT);
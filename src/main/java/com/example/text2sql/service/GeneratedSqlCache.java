@@ -0,0 +1,128 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import com.example.text2sql.util.LruTtlCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 自然语言问题到生成结果的缓存
+ * 缓存键由 Schema 快照版本、业务词典版本和标准化后的问题组成，Schema 或词典变化后旧条目自然失效；
+ * 同一问题按不同方式生成的结果可以用 variant 区分
+ *
+ * @param <V> 缓存的生成结果类型，例如 SQL 字符串或步骤1-4的结果
+ */
+@Slf4j
+public class GeneratedSqlCache<V> {
+
+    private final String name;
+    private final boolean enabled;
+    private final LruTtlCache<String, V> cache;
+    private final BusinessRuleService businessRuleService;
+    private final DatabaseTool databaseTool;
+
+    public GeneratedSqlCache(String name, Text2SqlProperties.Cache config,
+                             BusinessRuleService businessRuleService, DatabaseTool databaseTool) {
+        this.name = name;
+        this.enabled = config.isEnabled();
+        this.cache = new LruTtlCache<>(config.getMaxSize(), config.getTtl());
+        this.businessRuleService = businessRuleService;
+        this.databaseTool = databaseTool;
+    }
+
+    /**
+     * 查找问题对应的缓存结果，未命中时返回 null
+     */
+    public V get(String question) {
+        return get(null, question);
+    }
+
+    /**
+     * 查找问题按指定方式生成的缓存结果，未命中时返回 null
+     */
+    public V get(String variant, String question) {
+        if (!enabled) {
+            return null;
+        }
+        V value = cache.get(key(variant, question));
+        if (value != null) {
+            log.debug("{} 缓存命中: {}", name, question);
+        }
+        return value;
+    }
+
+    /**
+     * 缓存问题对应的生成结果
+     */
+    public void put(String question, V value) {
+        put(null, question, value);
+    }
+
+    /**
+     * 缓存问题按指定方式生成的结果
+     */
+    public void put(String variant, String question, V value) {
+        if (enabled && value != null) {
+            cache.put(key(variant, question), value);
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public long getEvictions() {
+        return cache.getEvictions();
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("enabled", enabled);
+        stats.put("size", cache.size());
+        stats.put("hits", cache.getHits());
+        stats.put("misses", cache.getMisses());
+        stats.put("evictions", cache.getEvictions());
+        return stats;
+    }
+
+    /**
+     * 问题对应的缓存键，标准化后相同的问题得到相同的键
+     */
+    public String key(String question) {
+        return key(null, question);
+    }
+
+    /**
+     * 问题按指定方式生成时的缓存键，variant 为 null 时与 {@link #key(String)} 相同
+     */
+    public String key(String variant, String question) {
+        String prefix = databaseTool.getSnapshot().getVersion() + ":" + businessRuleService.getDictionary().getVersion()
+                + ":";
+        if (variant != null) {
+            prefix += variant + ":";
+        }
+        return prefix + businessRuleService.normalizeQuestion(question);
+    }
+}
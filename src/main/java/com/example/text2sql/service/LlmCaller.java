@@ -0,0 +1,92 @@
+package com.example.text2sql.service;
+
+import lombok.Getter;
+
+/**
+ * 大模型调用方
+ * <p>
+ * 由请求入口设置在当前线程上，限流时按调用方分配 token 预算、按优先级分配并发。
+ * 请求在其他线程池中继续执行时，需要通过 {@link #wrap(Runnable)} 把调用方带到工作线程。
+ */
+@Getter
+public class LlmCaller {
+
+    /**
+     * 调用优先级，并发紧张时批量请求先被拒绝
+     */
+    public enum Priority {
+        INTERACTIVE, BATCH
+    }
+
+    /**
+     * 没有经过请求入口的调用，例如定时任务和测试
+     */
+    public static final LlmCaller ANONYMOUS = new LlmCaller("anonymous", Priority.INTERACTIVE);
+
+    private static final ThreadLocal<LlmCaller> CURRENT = new ThreadLocal<>();
+
+    private final String id;
+
+    private final Priority priority;
+
+    public LlmCaller(String id, Priority priority) {
+        this.id = id;
+        this.priority = priority;
+    }
+
+    /**
+     * 当前线程的调用方，未设置时为 ANONYMOUS
+     */
+    public static LlmCaller current() {
+        LlmCaller caller = CURRENT.get();
+        return caller != null ? caller : ANONYMOUS;
+    }
+
+    /**
+     * 设置当前线程的调用方，返回之前的调用方以便恢复
+     */
+    public static LlmCaller set(LlmCaller caller) {
+        LlmCaller previous = CURRENT.get();
+        CURRENT.set(caller);
+        return previous;
+    }
+
+    /**
+     * 恢复之前的调用方，为 null 时清除
+     */
+    public static void restore(LlmCaller previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * 把当前线程的调用方带到任务执行的线程
+     */
+    public static Runnable wrap(Runnable task) {
+        return current().bind(task);
+    }
+
+    /**
+     * 以本调用方执行任务
+     */
+    public Runnable bind(Runnable task) {
+        return () -> {
+            LlmCaller previous = set(this);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * 同一调用方的批量请求
+     */
+    public LlmCaller asBatch() {
+        return new LlmCaller(id, Priority.BATCH);
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import com.example.text2sql.util.LruTtlCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大模型调用的自适应并发限制和调用方 token 预算
+ * <p>
+ * 并发上限按 AIMD 调整：上限被用到一半以上且调用正常时每次完成加 1/limit，约每轮加 1；
+ * 调用遇到限流、服务端错误、超时，或最近延迟超过长期平均延迟的 latencyTolerance 倍（模型服务开始排队）时，
+ * 上限乘以 backoffRatio。批量请求最多占用 batchShare 比例的并发，其余留给交互请求。
+ * <p>
+ * 每个调用方有一个按分钟补充的 token 桶，调用完成后按实际消耗扣减，可以透支一次，余额为负时拒绝后续调用。
+ * 超出并发或预算的交互调用立即拒绝，不排队等待；批量调用等待并发空出或预算补充，最多等待 batchMaxWait。
+ */
+@Slf4j
+@Component
+public class LlmConcurrencyLimiter implements MeterBinder {
+
+    static final String CONCURRENCY = "concurrency";
+    static final String BUDGET = "budget";
+
+    // 延迟均值的权重：短期均值跟随最近几次调用，长期均值作为基线
+    private static final double SHORT_ALPHA = 0.3;
+    private static final double LONG_ALPHA = 0.05;
+
+    private final Text2SqlProperties.Limiter config;
+
+    private final Text2SqlMetrics metrics;
+
+    private final LruTtlCache<String, TokenBucket> buckets;
+
+    private double limit;
+
+    private int inFlight;
+
+    private int batchInFlight;
+
+    private double shortLatencyMillis;
+
+    private double longLatencyMillis;
+
+    public LlmConcurrencyLimiter(Text2SqlProperties properties, Text2SqlMetrics metrics) {
+        this.config = properties.getLimiter();
+        this.metrics = metrics;
+        this.buckets = new LruTtlCache<>(config.getMaxCallers(), Duration.ofMinutes(10));
+        this.limit = config.getInitialLimit();
+    }
+
+    /**
+     * 申请一次调用许可：交互调用在并发或预算不足时立即失败，批量调用等待到 batchMaxWait 后才失败
+     *
+     * @throws LlmOverloadedException 调用方预算已用完或并发已达上限时抛出
+     * @throws CancellationException  批量调用等待期间线程被中断时抛出，线程的中断状态会被保留
+     */
+    public Permit acquire(LlmCaller caller) {
+        if (!config.isEnabled()) {
+            return new Permit(caller, null);
+        }
+        boolean batch = caller.getPriority() == LlmCaller.Priority.BATCH;
+        long deadline = System.nanoTime() + (batch ? config.getBatchMaxWait().toNanos() : 0);
+        TokenBucket bucket = bucket(caller.getId());
+        if (bucket != null) {
+            awaitBudget(caller, bucket, deadline);
+        }
+        synchronized (this) {
+            while (inFlight >= capacity(caller.getPriority())) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw shed(caller, CONCURRENCY, "大模型调用已达并发上限，请稍后重试");
+                }
+                try {
+                    // 许可释放或上限增大时唤醒
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("等待大模型调用许可时被中断");
+                }
+            }
+            inFlight++;
+            if (batch) {
+                batchInFlight++;
+            }
+        }
+        return new Permit(caller, bucket);
+    }
+
+    /**
+     * 初始并发上限下批量调用可以同时占用的许可数，未启用限流时返回 {@link Integer#MAX_VALUE}
+     */
+    public int getInitialBatchCapacity() {
+        return config.isEnabled() ? batchCapacity(config.getInitialLimit()) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * 当前的并发上限
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getBatchInFlight() {
+        return batchInFlight;
+    }
+
+    /**
+     * 不同优先级可以占用的并发数，批量请求至少可以占用 1 个
+     */
+    private int capacity(LlmCaller.Priority priority) {
+        int total = (int) limit;
+        return priority == LlmCaller.Priority.BATCH ? batchCapacity(total) : total;
+    }
+
+    private int batchCapacity(int total) {
+        return Math.max(1, (int) (total * config.getBatchShare()));
+    }
+
+    /**
+     * 等待调用方的预算补充到可以发起调用，交互调用不等待
+     */
+    private void awaitBudget(LlmCaller caller, TokenBucket bucket, long deadline) {
+        while (!bucket.hasBudget()) {
+            long waitNanos = bucket.nanosUntilBudget();
+            if (System.nanoTime() + waitNanos > deadline) {
+                throw shed(caller, BUDGET, "调用方 " + caller.getId() + " 的 token 预算已用完，请稍后重试");
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("等待 token 预算补充时被中断");
+            }
+        }
+    }
+
+    private LlmOverloadedException shed(LlmCaller caller, String reason, String message) {
+        metrics.recordLlmShed(reason, caller.getPriority().name().toLowerCase());
+        return new LlmOverloadedException(reason, message);
+    }
+
+    private synchronized void release(LlmCaller caller, long latencyNanos, boolean overloaded) {
+        int used = inFlight;
+        inFlight--;
+        if (caller.getPriority() == LlmCaller.Priority.BATCH) {
+            batchInFlight--;
+        }
+
+        double latencyMillis = latencyNanos / 1_000_000.0;
+        boolean queueing = false;
+        if (!overloaded) {
+            if (longLatencyMillis == 0) {
+                shortLatencyMillis = latencyMillis;
+                longLatencyMillis = latencyMillis;
+            } else {
+                shortLatencyMillis = SHORT_ALPHA * latencyMillis + (1 - SHORT_ALPHA) * shortLatencyMillis;
+                longLatencyMillis = LONG_ALPHA * latencyMillis + (1 - LONG_ALPHA) * longLatencyMillis;
+                queueing = shortLatencyMillis > config.getLatencyTolerance() * longLatencyMillis;
+            }
+        }
+
+        double previous = limit;
+        if (overloaded || queueing) {
+            limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+        } else if (used * 2 >= limit) {
+            // 上限没有被用到时不增加，避免空闲时上限无限增长
+            limit = Math.min(config.getMaxLimit(), limit + 1 / limit);
+        }
+        // 唤醒等待许可的批量调用
+        notifyAll();
+        if ((int) limit != (int) previous) {
+            log.debug("大模型并发上限 {} -> {}（{}）", (int) previous, (int) limit,
+                    overloaded ? "限流或错误" : queueing ? "延迟升高" : "增加");
+        }
+    }
+
+    private TokenBucket bucket(String callerId) {
+        if (config.getTokensPerMinute() <= 0) {
+            return null;
+        }
+        synchronized (buckets) {
+            TokenBucket bucket = buckets.get(callerId);
+            if (bucket == null) {
+                bucket = new TokenBucket(config.getTokensPerMinute());
+            }
+            // 每次访问重新写入，活跃调用方的预算不会因过期被重置
+            buckets.put(callerId, bucket);
+            return bucket;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("text2sql.llm.limiter.limit", this, LlmConcurrencyLimiter::getLimit)
+                .description("大模型调用的自适应并发上限")
+                .register(registry);
+        Gauge.builder("text2sql.llm.limiter.in.flight", this,
+                        limiter -> limiter.getInFlight() - limiter.getBatchInFlight())
+                .description("进行中的大模型调用数")
+                .tag("priority", "interactive")
+                .register(registry);
+        Gauge.builder("text2sql.llm.limiter.in.flight", this, LlmConcurrencyLimiter::getBatchInFlight)
+                .description("进行中的大模型调用数")
+                .tag("priority", "batch")
+                .register(registry);
+    }
+
+    /**
+     * 一次调用的许可，调用结束后必须释放
+     */
+    public class Permit {
+        private final LlmCaller caller;
+        private final TokenBucket bucket;
+        private boolean released;
+
+        private Permit(LlmCaller caller, TokenBucket bucket) {
+            this.caller = caller;
+            this.bucket = bucket;
+        }
+
+        /**
+         * 释放许可并反馈调用结果
+         *
+         * @param overloaded 调用是否遇到限流、服务端错误或超时
+         * @param tokens     本次调用实际消耗的 token 数，未知时为 0
+         */
+        public synchronized void release(long latencyNanos, boolean overloaded, long tokens) {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (bucket != null && tokens > 0) {
+                bucket.consume(tokens);
+            }
+            if (config.isEnabled()) {
+                LlmConcurrencyLimiter.this.release(caller, latencyNanos, overloaded);
+            }
+        }
+    }
+
+    /**
+     * 按分钟匀速补充的 token 桶，容量为一分钟的额度
+     */
+    static class TokenBucket {
+        private final long capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(long tokensPerMinute) {
+            this.capacity = tokensPerMinute;
+            this.tokens = tokensPerMinute;
+        }
+
+        synchronized boolean hasBudget() {
+            refill();
+            return tokens > 0;
+        }
+
+        synchronized void consume(long used) {
+            refill();
+            tokens -= used;
+        }
+
+        synchronized double getTokens() {
+            refill();
+            return tokens;
+        }
+
+        /**
+         * 余额补充到正数还需要的时间
+         */
+        synchronized long nanosUntilBudget() {
+            refill();
+            if (tokens > 0) {
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) * TimeUnit.MINUTES.toNanos(1) / capacity);
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + capacity * (now - refilledAt) / (double) TimeUnit.MINUTES.toNanos(1));
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.text2sql.service;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 为 ChatClient 的每次调用申请限流许可
+ * <p>
+ * 注册为 chatClient 和 mcpChatClient 的默认 Advisor，一次调用（包括模型发起的工具调用）占用一个许可，
+ * 调用结束后按实际 token 消耗扣减调用方预算，并把限流、服务端错误和超时反馈给并发上限。
+ */
+@Component
+public class LlmLimiterAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final LlmConcurrencyLimiter limiter;
+
+    public LlmLimiterAdvisor(LlmConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        LlmConcurrencyLimiter.Permit permit = limiter.acquire(LlmCaller.current());
+        long start = System.nanoTime();
+        boolean overloaded = false;
+        ChatClientResponse response = null;
+        try {
+            response = chain.nextCall(request);
+            return response;
+        } catch (RuntimeException e) {
+            overloaded = isOverload(e);
+            throw e;
+        } finally {
+            permit.release(System.nanoTime() - start, overloaded,
+                    response != null ? totalTokens(response.chatResponse()) : 0);
+        }
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        // 许可在订阅时申请、在流结束或取消时释放，组装后没有订阅的流不占用许可；
+        // 调用方在组装时确定，订阅发生在其他线程时仍按原调用方计算预算
+        LlmCaller caller = LlmCaller.current();
+        return Flux.defer(() -> {
+            LlmConcurrencyLimiter.Permit permit = limiter.acquire(caller);
+            long start = System.nanoTime();
+            AtomicLong tokens = new AtomicLong();
+            return chain.nextStream(request)
+                    .doOnNext(response -> {
+                        long used = totalTokens(response.chatResponse());
+                        if (used > 0) {
+                            tokens.set(used);
+                        }
+                    })
+                    .doOnError(e -> permit.release(System.nanoTime() - start, isOverload(e), tokens.get()))
+                    .doFinally(signal -> permit.release(System.nanoTime() - start, false, tokens.get()));
+        });
+    }
+
+    /**
+     * 限流（429）、服务端错误和超时说明模型服务已过载
+     */
+    static boolean isOverload(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientAiException || cause instanceof ResourceAccessException) {
+                return true;
+            }
+            String message = cause.getMessage();
+            if (message != null && (message.startsWith("429") || message.contains("Too Many Requests"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long totalTokens(ChatResponse response) {
+        if (response == null || response.getMetadata() == null || response.getMetadata().getUsage() == null) {
+            return 0;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        return usage.getTotalTokens() != null ? usage.getTotalTokens() : 0;
+    }
+
+    @Override
+    public String getName() {
+        return "LlmLimiterAdvisor";
+    }
+
+    /**
+     * 排在最外层，被拒绝的调用不经过其他 Advisor
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.text2sql.service;
+
+import lombok.Getter;
+
+/**
+ * 大模型调用被限流拒绝
+ * <p>
+ * 并发已达上限或调用方的 token 预算已用完时抛出：交互请求立即抛出，批量请求等待超过上限后抛出，调用方应稍后重试。
+ */
+@Getter
+public class LlmOverloadedException extends RuntimeException {
+
+    /**
+     * 拒绝原因：concurrency 或 budget
+     */
+    private final String reason;
+
+    public LlmOverloadedException(String reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+}
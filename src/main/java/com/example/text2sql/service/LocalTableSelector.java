@@ -0,0 +1,117 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地数据表选取引擎
+ * 基于 Schema 注释、业务术语/同义词和外键关系确定性地选出相关表，并给出置信度，
+ * 置信度足够时直接作为步骤2的结果，否则交由大模型选表
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LocalTableSelector {
+
+    // BM25 得分达到该值附近时认为匹配已经足够充分
+    private static final double SCORE_SATURATION = 2.0;
+
+    private final SchemaRetriever schemaRetriever;
+
+    private final DatabaseTool databaseTool;
+
+    private final Text2SqlProperties properties;
+
+    private final AtomicLong localSelections = new AtomicLong();
+
+    private final AtomicLong modelFallbacks = new AtomicLong();
+
+    /**
+     * 为查询选出相关表
+     */
+    public Selection select(String query) {
+        Text2SqlProperties.TableSelection config = properties.getTableSelection();
+        List<SchemaIndex.TableScore> ranked = schemaRetriever.rankTables(query);
+        if (ranked.isEmpty()) {
+            return new Selection(List.of(), 0, false);
+        }
+
+        // 得分与最高分足够接近的表都视为相关表
+        double topScore = ranked.get(0).getScore();
+        double cutoff = topScore * config.getRelativeThreshold();
+        Set<String> selected = new LinkedHashSet<>();
+        double lowestSelected = topScore;
+        double bestExcluded = 0;
+        for (SchemaIndex.TableScore score : ranked) {
+            if (score.getScore() >= cutoff) {
+                selected.add(score.getTableName());
+                lowestSelected = score.getScore();
+            } else {
+                bestExcluded = Math.max(bestExcluded, score.getScore());
+            }
+        }
+        // 补充同时引用多张选中表的关联表，例如 employees + projects → project_members
+        selected.addAll(databaseTool.getSnapshot().getJoinTables(selected));
+
+        // 置信度 = 匹配强度 × 选中表与落选表之间的区分度
+        double strength = topScore / (topScore + SCORE_SATURATION);
+        double margin = (lowestSelected - bestExcluded) / lowestSelected;
+        double confidence = strength * (0.5 + 0.5 * margin);
+
+        Selection selection = new Selection(List.copyOf(selected), confidence,
+                confidence >= config.getMinConfidence());
+        log.debug("本地选表 [{}]: {}，置信度 {}", query, selection.getTables(), String.format("%.2f", confidence));
+        return selection;
+    }
+
+    /**
+     * 记录一次选表的去向：本地直接回答或回退到大模型
+     */
+    public void recordOutcome(boolean local) {
+        (local ? localSelections : modelFallbacks).incrementAndGet();
+    }
+
+    public long getLocalSelections() {
+        return localSelections.get();
+    }
+
+    public long getModelFallbacks() {
+        return modelFallbacks.get();
+    }
+
+    /**
+     * 本地选表统计信息
+     */
+    public Map<String, Object> stats() {
+        long local = localSelections.get();
+        long fallback = modelFallbacks.get();
+        long total = local + fallback;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localSelections", local);
+        stats.put("modelFallbacks", fallback);
+        stats.put("fallbackRate", total == 0 ? 0.0 : (double) fallback / total);
+        return stats;
+    }
+
+    /**
+     * 选表结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Selection {
+        private final List<String> tables;
+        private final double confidence;
+        private final boolean confident;
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.text2sql.service;
 
+import com.example.text2sql.config.Text2SqlProperties;
+import com.example.text2sql.util.SingleFlight;
+import com.example.text2sql.util.SqlSafetyValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.ResponseEntity;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
@@ -14,7 +18,6 @@ import java.util.List;
 import java.util.Map;
 
 import static com.example.text2sql.util.SqlUtils.cleanSql;
-import static com.example.text2sql.util.SqlUtils.isSqlSafe;
 
 @Slf4j
 @Service
@@ -24,20 +27,37 @@ public class McpText2SqlService implements Text2SqlService {
     @Qualifier("mcpChatClient")
     private final ChatClient mcpChatClient;
 
-    // SQL 生成提示模板
+    private final DatabaseTool databaseTool;
+
+    private final SchemaRetriever schemaRetriever;
+
+    private final Text2SqlProperties properties;
+
+    private final GeneratedSqlCache<String> generatedSqlCache;
+
+    private final SingleFlight<Text2SqlResult> queryCoalescer;
+
+    private final Text2SqlMetrics metrics;
+
+    private final ResultSessionService resultSessionService;
+
+    private final QueryCostGate queryCostGate;
+
+    // SQL 生成提示模板，只附带与问题相关的表结构
     private static final String SQL_GENERATION_PROMPT = """
-            你是一个专业的 SQL 生成助手。你可以使用以下工具来获取数据库结构信息：
+            你是一个专业的 SQL 生成助手。下面是与用户查询相关的表结构：
+            
+            {schema}
             
             可用工具：
             - getTableNames(): 获取所有表名
             - getTableSchema(tableName): 获取指定表的完整结构
-            - getDatabaseSchema(): 获取所有表的完整结构
             - getTableColumns(tableName): 获取指定表的列信息
             - executeQuery(sql): 执行 SQL 查询验证结果
             
             请遵循以下规则：
-            1. 首先使用 getTableNames() 了解数据库中有哪些表
-            2. 根据用户查询需求，使用 getTableSchema() 或 getAllTablesSchema() 获取相关表的结构信息
+            1. 优先根据上面提供的表结构生成 SQL，不要获取全部表结构
+            2. 上面的表结构中缺少需要的表时，再使用 getTableNames() 和 getTableSchema() 获取相关表的结构信息
             3. 只生成 SELECT 查询语句
             4. 使用正确的表名和字段名
             5. 添加适当的 WHERE 条件
@@ -52,54 +72,135 @@ public class McpText2SqlService implements Text2SqlService {
 
     /**
      * 将自然语言转换为 SQL 并执行查询
+     * 同时到达的相同问题（标准化后）合并为一次处理，共享同一个结果
      *
      * @param userQuery 用户自然语言查询
      * @return 查询结果
      */
     @Override
     public Text2SqlResult processQuery(String userQuery) {
-        try {
-            // 1. 验证输入
-            if (userQuery == null || userQuery.trim().isEmpty()) {
-                return Text2SqlResult.error("查询不能为空");
-            }
-
-            log.info("开始处理 MCP Text2SQL 查询: {}", userQuery);
+        return processQuery(userQuery, properties.getExecution().getResultFormat());
+    }
 
-            // 2. 使用 MCP 工具生成 SQL
-            String sql = generateSqlWithMcpTools(userQuery);
+    /**
+     * 以指定格式返回结果，列式格式在直接执行时从 ResultSet 直接读取为列式结果，不经过按行的 Map
+     */
+    @Override
+    public Text2SqlResult processQuery(String userQuery, Text2SqlProperties.ResultFormat format) {
+        // 1. 验证输入
+        if (userQuery == null || userQuery.trim().isEmpty()) {
+            return Text2SqlResult.error("查询不能为空");
+        }
+        long start = System.nanoTime();
+        Text2SqlResult result = queryCoalescer.execute(format + ":" + generatedSqlCache.key(userQuery),
+                () -> doProcessQuery(userQuery, format));
+        metrics.recordRequest("query", System.nanoTime() - start, result.isSuccess());
+        return result;
+    }
 
-            if (sql == null || sql.trim().isEmpty()) {
-                return Text2SqlResult.error("无法生成有效的 SQL 查询");
-            }
+    private Text2SqlResult doProcessQuery(String userQuery, Text2SqlProperties.ResultFormat format) {
+        try {
+            log.info("开始处理 MCP Text2SQL 查询: {}", userQuery);
 
-            // 3. 验证 SQL 安全性
-            if (!isSqlSafe(sql)) {
-                return Text2SqlResult.error("生成的 SQL 不安全，包含危险操作");
+            // 2. 生成并校验 SQL，相同问题直接复用缓存
+            long generationStart = System.nanoTime();
+            String sql;
+            try {
+                sql = prepareSql(userQuery);
+            } catch (IllegalArgumentException e) {
+                Text2SqlResult error = Text2SqlResult.error(e.getMessage());
+                if (e instanceof QueryCostExceededException costExceeded) {
+                    error.setPlan(costExceeded.getPlan());
+                }
+                return error;
             }
+            long generationMillis = elapsedMillis(generationStart);
 
-            // 4. 执行查询
-            List<Map<String, Object>> results = executeQuery(sql);
+            // 3. 执行查询
+            long executionStart = System.nanoTime();
+            Text2SqlResult result = executeSql(sql, format);
+            long executionMillis = elapsedMillis(executionStart);
 
-            log.info("MCP Text2SQL 查询完成，返回 {} 条记录", results.size());
+            log.info("MCP Text2SQL 查询完成，返回 {} 条记录，生成耗时 {}ms，执行耗时 {}ms",
+                    result.rowCount(), generationMillis, executionMillis);
 
-            return Text2SqlResult.success(sql, results);
+            result.withTimings(generationMillis, executionMillis);
+            result.setSessionId(resultSessionService.create(sql, result.columnNames()));
+            return result;
 
+        } catch (LlmOverloadedException e) {
+            // 限流拒绝交给接口层返回 429
+            throw e;
         } catch (Exception e) {
             log.error("MCP Text2SQL 处理失败", e);
             return Text2SqlResult.error("处理查询时发生错误: " + e.getMessage());
         }
     }
 
+    @Override
+    public String prepareSql(String userQuery) {
+        String sql = generatedSqlCache.get(userQuery);
+        if (sql != null) {
+            return sql;
+        }
+
+        sql = generateSqlWithMcpTools(userQuery, null);
+        validateGeneratedSql(sql);
+
+        // 执行计划代价超出阈值时，带着计划摘要重新生成
+        QueryPlan plan = queryCostGate.evaluate(sql);
+        for (int i = 0; i < queryCostGate.maxRegenerations() && plan != null && plan.isRejected(); i++) {
+            log.info("SQL 执行代价超出阈值，第 {} 次重新生成", i + 1);
+            sql = generateSqlWithMcpTools(userQuery, queryCostGate.regenerationFeedback(sql, plan));
+            validateGeneratedSql(sql);
+            plan = queryCostGate.evaluate(sql);
+        }
+        if (plan != null && plan.isRejected()) {
+            throw new QueryCostExceededException(plan);
+        }
+
+        generatedSqlCache.put(userQuery, sql);
+        return sql;
+    }
+
+    /**
+     * 校验生成的 SQL 非空且通过安全校验
+     */
+    private void validateGeneratedSql(String sql) {
+        if (sql == null || sql.trim().isEmpty()) {
+            throw new IllegalArgumentException("无法生成有效的 SQL 查询");
+        }
+
+        // 验证 SQL 安全性
+        SqlSafetyValidator.Verdict verdict = SqlSafetyValidator.validate(sql);
+        if (!verdict.isSafe()) {
+            metrics.recordSafetyRejection(verdict);
+            throw new IllegalArgumentException("生成的 SQL 不安全，" + verdict.getReason());
+        }
+    }
+
     /**
      * 使用 MCP 工具生成 SQL
+     *
+     * @param feedback 上一次生成的 SQL 被拒绝的原因，首次生成时为 null
      */
-    private String generateSqlWithMcpTools(String userQuery) {
+    private String generateSqlWithMcpTools(String userQuery, String feedback) {
         try {
             PromptTemplate promptTemplate = new PromptTemplate(SQL_GENERATION_PROMPT);
-            Prompt prompt = promptTemplate.create(Map.of("userQuery", userQuery));
+            Prompt prompt = promptTemplate.create(Map.of(
+                    "schema", schemaRetriever.retrieveSchema(userQuery),
+                    "userQuery", userQuery));
+            if (feedback != null) {
+                prompt = new Prompt(prompt.getContents() + "\n" + feedback);
+            }
 
-            ChatResponse response = mcpChatClient.prompt(prompt).call().chatResponse();
+            long start = System.nanoTime();
+            ChatResponse response = null;
+            try {
+                response = mcpChatClient.prompt(prompt).call().chatResponse();
+            } finally {
+                metrics.recordModelCall("generate_sql", System.nanoTime() - start, response);
+            }
             String sql = response.getResult().getOutput().getText();
 
             // 清理 SQL 语句，移除可能的解释文本
@@ -108,27 +209,56 @@ public class McpText2SqlService implements Text2SqlService {
             log.info("MCP 工具生成的 SQL: {}", sql);
             return sql;
 
+        } catch (LlmOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("使用 MCP 工具生成 SQL 失败", e);
             return null;
         }
     }
 
+    /**
+     * 按配置的执行方式执行查询，并以指定格式返回结果
+     */
+    @Override
+    public Text2SqlResult executeSql(String sql, Text2SqlProperties.ResultFormat format) {
+        if (properties.getExecution().getMode() == Text2SqlProperties.ExecutionMode.TOOL) {
+            Text2SqlResult result = Text2SqlResult.success(sql, executeQueryWithMcpTools(sql));
+            return format == Text2SqlProperties.ResultFormat.COLUMNAR ? result.toColumnar() : result;
+        }
+        log.info("通过 JDBC 直接执行查询: {}", sql);
+        if (format == Text2SqlProperties.ResultFormat.COLUMNAR) {
+            return Text2SqlResult.success(sql, databaseTool.executeQueryColumnar(sql));
+        }
+        return Text2SqlResult.success(sql, databaseTool.executeQuery(sql));
+    }
+
     /**
      * 使用大模型调用 MCP 工具执行查询
      */
-    private List<Map<String, Object>> executeQuery(String sql) {
+    private List<Map<String, Object>> executeQueryWithMcpTools(String sql) {
         log.info("使用 MCP 工具执行查询: {}", sql);
 
         // 使用大模型调用 MCP 工具执行查询
-        List<Map<String, Object>> result = mcpChatClient.prompt()
-                .user("请使用 executeQuery 工具执行以下 SQL 查询: " + sql)
-                .call()
-                .entity(new ParameterizedTypeReference<List<Map<String, Object>>>() {
-                });
+        long start = System.nanoTime();
+        ResponseEntity<ChatResponse, List<Map<String, Object>>> response = null;
+        try {
+            response = mcpChatClient.prompt()
+                    .user("请使用 executeQuery 工具执行以下 SQL 查询: " + sql)
+                    .call()
+                    .responseEntity(new ParameterizedTypeReference<List<Map<String, Object>>>() {
+                    });
+        } finally {
+            metrics.recordModelCall("execute_sql", System.nanoTime() - start,
+                    response != null ? response.response() : null);
+        }
+        List<Map<String, Object>> result = response.entity();
 
         log.info("MCP 工具执行查询完成，返回 {} 条记录", result.size());
         return result;
     }
 
-}
\ No newline at end of file
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
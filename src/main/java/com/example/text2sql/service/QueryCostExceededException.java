@@ -0,0 +1,17 @@
+package com.example.text2sql.service;
+
+import lombok.Getter;
+
+/**
+ * 生成的 SQL 执行代价超出阈值，携带执行计划摘要供调用方展示
+ */
+@Getter
+public class QueryCostExceededException extends IllegalArgumentException {
+
+    private final QueryPlan plan;
+
+    public QueryCostExceededException(QueryPlan plan) {
+        super("SQL 执行代价超出阈值，未执行：" + plan.getSummary());
+        this.plan = plan;
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 执行计划代价检查
+ * <p>
+ * 执行生成的 SQL 前先通过 EXPLAIN FORMAT=JSON 取得优化器的估算：查询代价、每张表的扫描行数和连接结果行数。
+ * 超出阈值的 SQL（常见于全表扫描或缺少连接条件的笛卡尔积）不会被执行，按配置直接拒绝，
+ * 或把计划摘要反馈给大模型重新生成。EXPLAIN 本身失败时不阻止执行，由执行防护兜底。
+ */
+@Slf4j
+@Service
+public class QueryCostGate {
+
+    public static final String COST_REJECTED = "cost_rejected";
+
+    private static final String REGENERATION_FEEDBACK = """
+            上一次生成的 SQL 执行代价过高，已被拒绝执行：
+            ```sql
+            %s
+            ```
+            执行计划摘要：%s
+            请重新生成满足同样需求的 SQL：优先在有索引的列上过滤和连接，每张表之间都要有连接条件，
+            避免全表扫描和笛卡尔积，需要汇总时先聚合再连接。
+            """;
+
+    private final DatabaseTool databaseTool;
+
+    private final ObjectMapper objectMapper;
+
+    private final Text2SqlProperties.CostGate config;
+
+    private final Text2SqlMetrics metrics;
+
+    public QueryCostGate(DatabaseTool databaseTool, ObjectMapper objectMapper, Text2SqlProperties properties,
+                         Text2SqlMetrics metrics) {
+        this.databaseTool = databaseTool;
+        this.objectMapper = objectMapper;
+        this.config = properties.getCostGate();
+        this.metrics = metrics;
+    }
+
+    /**
+     * 估算已通过安全校验的 SQL 的执行计划，未启用或 EXPLAIN 失败时返回 null
+     */
+    public QueryPlan evaluate(String sql) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        try {
+            String explain = databaseTool.explain(sql);
+            if (explain == null) {
+                return null;
+            }
+            QueryPlan plan = analyze(explain);
+            if (plan.isRejected()) {
+                metrics.recordGuard(COST_REJECTED);
+                log.info("SQL 执行代价超出阈值: {}", plan.getSummary());
+            }
+            return plan;
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("EXPLAIN 失败，跳过代价检查: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 超出阈值时允许重新生成 SQL 的次数，配置为直接拒绝时为 0
+     */
+    public int maxRegenerations() {
+        return config.isEnabled() && config.getAction() == Text2SqlProperties.CostGateAction.REGENERATE
+                ? Math.max(0, config.getMaxRegenerations())
+                : 0;
+    }
+
+    /**
+     * 重新生成 SQL 时附加到提示词中的反馈
+     */
+    public String regenerationFeedback(String sql, QueryPlan plan) {
+        return REGENERATION_FEEDBACK.formatted(sql, plan.getSummary());
+    }
+
+    /**
+     * 解析 EXPLAIN FORMAT=JSON 的输出并与阈值比较
+     */
+    QueryPlan analyze(String explainJson) throws JsonProcessingException {
+        JsonNode root = objectMapper.readTree(explainJson);
+        PlanCollector collector = new PlanCollector();
+        collector.walk(root, 1);
+
+        double cost = root.path("query_block").path("cost_info").path("query_cost").asDouble(0);
+        long examinedRows = (long) Math.min(Long.MAX_VALUE, collector.examinedRows);
+        long joinRows = (long) Math.min(Long.MAX_VALUE, collector.joinRows);
+        boolean rejected = cost > config.getMaxCost()
+                || examinedRows > config.getMaxRows()
+                || joinRows > config.getMaxRows();
+        return new QueryPlan(cost, examinedRows, joinRows, List.copyOf(collector.tables), rejected,
+                summarize(cost, examinedRows, joinRows, collector.tables, rejected));
+    }
+
+    private String summarize(double cost, long examinedRows, long joinRows, List<QueryPlan.TableAccess> tables,
+                             boolean rejected) {
+        StringBuilder summary = new StringBuilder()
+                .append("预估代价 ").append(String.format(Locale.ROOT, "%.1f", cost))
+                .append("，扫描约 ").append(examinedRows).append(" 行");
+        if (joinRows > 0) {
+            summary.append("，结果约 ").append(joinRows).append(" 行");
+        }
+        String fullScans = tables.stream()
+                .filter(QueryPlan.TableAccess::isFullScan)
+                .map(table -> table.getTable() + "(约 " + table.getExaminedRows() + " 行)")
+                .collect(Collectors.joining("、"));
+        if (!fullScans.isEmpty()) {
+            summary.append("；全表扫描：").append(fullScans);
+        }
+        String bufferedJoins = tables.stream()
+                .filter(QueryPlan.TableAccess::isJoinBuffer)
+                .map(QueryPlan.TableAccess::getTable)
+                .collect(Collectors.joining("、"));
+        if (!bufferedJoins.isEmpty()) {
+            summary.append("；连接未使用索引：").append(bufferedJoins);
+        }
+        if (rejected) {
+            summary.append("；超出阈值（代价 ").append(String.format(Locale.ROOT, "%.0f", config.getMaxCost()))
+                    .append("，行数 ").append(config.getMaxRows()).append("）");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * 遍历执行计划，累计各表的扫描行数
+     * <p>
+     * nested_loop 中每张表的扫描次数等于前面各表连接产生的行数，使用连接缓冲的表只扫描一次；
+     * 相关子查询按所属表产生的行数重复执行。
+     */
+    private static class PlanCollector {
+        private final List<QueryPlan.TableAccess> tables = new ArrayList<>();
+        private double examinedRows;
+        private double joinRows;
+
+        /**
+         * @param scans 当前节点被执行的次数
+         */
+        private void walk(JsonNode node, double scans) {
+            if (node.isArray()) {
+                for (JsonNode child : node) {
+                    walk(child, scans);
+                }
+                return;
+            }
+            if (!node.isObject()) {
+                return;
+            }
+            if (node.has("table_name")) {
+                visitTable(node, scans);
+                return;
+            }
+            for (Map.Entry<String, JsonNode> field : node.properties()) {
+                if ("nested_loop".equals(field.getKey())) {
+                    walkNestedLoop(field.getValue(), scans);
+                } else {
+                    walk(field.getValue(), scans);
+                }
+            }
+        }
+
+        private void walkNestedLoop(JsonNode items, double scans) {
+            // 连接前缀每次执行产生的行数
+            double produced = 1;
+            for (JsonNode item : items) {
+                JsonNode table = item.path("table");
+                if (!table.isObject()) {
+                    walk(item, scans);
+                    continue;
+                }
+                visitTable(table, table.has("using_join_buffer") ? scans : scans * produced);
+                produced = table.path("rows_produced_per_join").asDouble(produced);
+            }
+        }
+
+        private void visitTable(JsonNode table, double scans) {
+            double examined = table.path("rows_examined_per_scan").asDouble(0) * scans;
+            double produced = table.path("rows_produced_per_join").asDouble(0);
+            examinedRows += examined;
+            // rows_produced_per_join 已经是连接到本表为止的累计行数
+            joinRows = Math.max(joinRows, produced);
+            tables.add(new QueryPlan.TableAccess(
+                    table.path("table_name").asText(),
+                    table.path("access_type").asText(null),
+                    table.path("key").asText(null),
+                    (long) Math.min(Long.MAX_VALUE, examined),
+                    table.has("using_join_buffer")));
+
+            // 派生表只物化一次，相关子查询对本表产生的每一行执行一次
+            walk(table.path("materialized_from_subquery"), 1);
+            for (JsonNode subquery : table.path("attached_subqueries")) {
+                walk(subquery, subquery.path("dependent").asBoolean(false) ? Math.max(1, produced) : 1);
+            }
+        }
+    }
+}
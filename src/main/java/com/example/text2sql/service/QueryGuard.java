@@ -0,0 +1,187 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import com.example.text2sql.util.SelectStatement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.temporal.Temporal;
+import java.util.Date;
+
+/**
+ * SQL 执行防护
+ * <p>
+ * 生成的 SQL 执行时有三层限制：先改写顶层 LIMIT，使返回行数不超过 maxRows；再在 Statement 上设置
+ * maxRows、queryTimeout 和 fetchSize，LIMIT 无法改写时驱动同样只返回有限的行（MySQL 驱动会设置
+ * SQL_SELECT_LIMIT），超时后由驱动取消查询；读取结果时按估算的内存占用累计，超出预算立即中止读取。
+ */
+@Slf4j
+@Component
+public class QueryGuard {
+
+    public static final String LIMIT_INJECTED = "limit_injected";
+    public static final String LIMIT_CLAMPED = "limit_clamped";
+    public static final String TIMEOUT = "timeout";
+    public static final String MEMORY_EXCEEDED = "memory_exceeded";
+
+    // 按行读取时每行 Map 及每个条目的大致开销
+    static final long ROW_OVERHEAD = 64;
+    static final long ENTRY_OVERHEAD = 96;
+
+    private final Text2SqlProperties.Execution config;
+
+    private final Text2SqlMetrics metrics;
+
+    public QueryGuard(Text2SqlProperties properties, Text2SqlMetrics metrics) {
+        this.config = properties.getExecution();
+        this.metrics = metrics;
+    }
+
+    /**
+     * 将 SQL 的顶层 LIMIT 限制在 maxRows 以内，子查询中的 LIMIT 不受影响；
+     * LIMIT 子句无法识别时原样返回，由 Statement 的 maxRows 兜底
+     */
+    public String limit(String sql) {
+        SelectStatement statement;
+        try {
+            statement = SelectStatement.parse(sql);
+        } catch (IllegalArgumentException e) {
+            log.debug("{}，不改写 LIMIT", e.getMessage());
+            return sql;
+        }
+        Long limit = statement.getLimit();
+        if (limit != null && limit <= config.getMaxRows()) {
+            return sql;
+        }
+        metrics.recordGuard(limit == null ? LIMIT_INJECTED : LIMIT_CLAMPED);
+        log.debug("顶层 LIMIT {} 改写为 {}", limit, config.getMaxRows());
+        return statement.withLimit(config.getMaxRows(), statement.getOffset());
+    }
+
+    /**
+     * 创建设置了 maxRows、查询超时和 fetch size 的只读 Statement
+     */
+    public PreparedStatementCreator prepare(String sql, Object... args) {
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setMaxRows(config.getMaxRows());
+            ps.setQueryTimeout(timeoutSeconds());
+            ps.setFetchSize(config.getFetchSize());
+            new ArgumentPreparedStatementSetter(args).setValues(ps);
+            return ps;
+        };
+    }
+
+    /**
+     * 创建流式读取的 Statement：只设置查询超时，不限制行数，结果逐行写出不占用内存预算
+     */
+    public PreparedStatementCreator prepareStream(String sql, int fetchSize) {
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setQueryTimeout(timeoutSeconds());
+            ps.setFetchSize(fetchSize);
+            return ps;
+        };
+    }
+
+    /**
+     * 为一次查询创建内存预算
+     */
+    public MemoryBudget newBudget() {
+        return new MemoryBudget(config.getMaxResultSize().toBytes());
+    }
+
+    /**
+     * 记录一次查询超时
+     */
+    public void recordTimeout() {
+        metrics.recordGuard(TIMEOUT);
+    }
+
+    /**
+     * JDBC 的查询超时以秒为单位，不足一秒按一秒计，0 表示不限制
+     */
+    private int timeoutSeconds() {
+        long millis = config.getQueryTimeout().toMillis();
+        return (int) Math.min(Integer.MAX_VALUE, (millis + 999) / 1000);
+    }
+
+    /**
+     * 估算单个值占用的堆内存
+     */
+    static long estimateSize(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence text) {
+            return 40 + 2L * text.length();
+        }
+        if (value instanceof byte[] bytes) {
+            return 16 + bytes.length;
+        }
+        if (value instanceof BigDecimal || value instanceof BigInteger) {
+            return 48;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 16;
+        }
+        if (value instanceof Temporal || value instanceof Date) {
+            return 32;
+        }
+        return 64;
+    }
+
+    /**
+     * 单次查询的内存预算，只在读取结果的线程中使用
+     */
+    public class MemoryBudget {
+        private final long limit;
+        private long used;
+
+        private MemoryBudget(long limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * 累计一个值的估算大小
+         *
+         * @throws DataRetrievalFailureException 超出预算时抛出，调用方应中止读取
+         */
+        public void charge(Object value) {
+            reserve(estimateSize(value));
+        }
+
+        /**
+         * 累计固定的开销，例如每行 Map 本身
+         */
+        public void reserve(long bytes) {
+            used += bytes;
+            if (used > limit) {
+                metrics.recordGuard(MEMORY_EXCEEDED);
+                throw new DataRetrievalFailureException("查询结果超过内存预算 " + formatSize(limit)
+                        + "，已中止读取，请增加筛选条件或先聚合再查询");
+            }
+        }
+
+        public long getUsed() {
+            return used;
+        }
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return bytes / (1024 * 1024) + "MB";
+        }
+        if (bytes >= 1024) {
+            return bytes / 1024 + "KB";
+        }
+        return bytes + "B";
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.text2sql.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+/**
+ * 异步查询任务
+ * <p>
+ * 由工作线程更新状态，查询接口随时读取。步骤化任务每完成一个步骤就替换一次 stepResult，
+ * 轮询时可以看到已完成的步骤。
+ */
+@Getter
+public class QueryJob {
+
+    /**
+     * 任务类型
+     */
+    public enum Type {
+        /**
+         * 直接生成并执行 SQL，对应 /api/query
+         */
+        QUERY,
+
+        /**
+         * 5步流程，对应 /api/steps/query
+         */
+        STEPS
+    }
+
+    /**
+     * 任务状态，SUCCEEDED、FAILED、CANCELLED 为终止状态
+     */
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this != QUEUED && this != RUNNING;
+        }
+    }
+
+    private final String id = UUID.randomUUID().toString();
+
+    private final Type type;
+
+    private final String question;
+
+    private final Instant submittedAt = Instant.now();
+
+    private volatile Status status = Status.QUEUED;
+
+    private volatile Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    /**
+     * QUERY 任务的结果，任务结束前为 null
+     */
+    private volatile Text2SqlResult result;
+
+    /**
+     * STEPS 任务的结果，运行中只包含已完成的步骤
+     */
+    private volatile Text2SqlStepResult stepResult;
+
+    private volatile String error;
+
+    /**
+     * 错误原因：大模型调用被限流拒绝时为 concurrency 或 budget，客户端可据此稍后重新提交
+     */
+    private volatile String errorReason;
+
+    @JsonIgnore
+    private volatile Future<?> future;
+
+    // 已完成的步骤，按步骤序号存放
+    @Getter(AccessLevel.NONE)
+    private final Text2SqlStepResult.StepResult[] steps = new Text2SqlStepResult.StepResult[5];
+
+    public QueryJob(Type type, String question) {
+        this.type = type;
+        this.question = question;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * 工作线程开始执行，任务已被取消时返回 false
+     */
+    synchronized boolean start() {
+        if (status != Status.QUEUED) {
+            return false;
+        }
+        status = Status.RUNNING;
+        startedAt = Instant.now();
+        return true;
+    }
+
+    /**
+     * 某个步骤完成，步骤可能在并行执行的线程中完成
+     */
+    synchronized void stepCompleted(int stepNumber, Text2SqlStepResult.StepResult step) {
+        if (status != Status.RUNNING) {
+            return;
+        }
+        steps[stepNumber - 1] = step;
+        stepResult = Text2SqlStepResult.create(steps[0], steps[1], steps[2], steps[3], steps[4]);
+    }
+
+    synchronized void succeed(Text2SqlResult result) {
+        if (finish(result.isSuccess() ? Status.SUCCEEDED : Status.FAILED)) {
+            this.result = result;
+            this.error = result.getError();
+        }
+    }
+
+    synchronized void succeed(Text2SqlStepResult stepResult) {
+        Text2SqlStepResult.StepResult step5 = stepResult.getStep5SqlExecution();
+        boolean success = step5 != null && !step5.isError();
+        if (finish(success ? Status.SUCCEEDED : Status.FAILED)) {
+            this.stepResult = stepResult;
+            this.error = success ? null : firstError(stepResult);
+            Text2SqlStepResult.StepResult overloaded = stepResult.findOverloadedStep();
+            this.errorReason = overloaded != null ? overloaded.getReason() : null;
+        }
+    }
+
+    private static String firstError(Text2SqlStepResult stepResult) {
+        for (Text2SqlStepResult.StepResult step : new Text2SqlStepResult.StepResult[]{
+                stepResult.getStep1ProblemRewriting(), stepResult.getStep2TableSelection(),
+                stepResult.getStep3InformationInference(), stepResult.getStep4SqlGeneration(),
+                stepResult.getStep5SqlExecution()}) {
+            if (step != null && step.isError()) {
+                return step.getContent();
+            }
+        }
+        return "步骤化查询未完成";
+    }
+
+    synchronized void fail(String error) {
+        fail(error, null);
+    }
+
+    synchronized void fail(String error, String errorReason) {
+        if (finish(Status.FAILED)) {
+            this.error = error;
+            this.errorReason = errorReason;
+        }
+    }
+
+    /**
+     * 取消尚未结束的任务，已结束时返回 false
+     */
+    synchronized boolean cancel() {
+        return finish(Status.CANCELLED);
+    }
+
+    private boolean finish(Status target) {
+        if (status.isFinished()) {
+            return false;
+        }
+        status = target;
+        finishedAt = Instant.now();
+        return true;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步查询任务服务
+ * <p>
+ * 请求线程只负责提交任务并立即返回任务 id，完整流程由固定数量的工作线程执行。
+ * 等待队列有上限，队列已满时拒绝提交，由调用方稍后重试；任务结束后结果保留 ttl，之后定时清理。
+ */
+@Slf4j
+@Service
+public class QueryJobService implements DisposableBean {
+
+    private final Text2SqlService text2SqlService;
+
+    private final StepBasedText2SqlService stepBasedText2SqlService;
+
+    private final Text2SqlProperties.Jobs config;
+
+    private final ThreadPoolExecutor pool;
+
+    private final Map<String, QueryJob> jobs = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public QueryJobService(Text2SqlService text2SqlService, StepBasedText2SqlService stepBasedText2SqlService,
+                           Text2SqlProperties properties) {
+        this.text2SqlService = text2SqlService;
+        this.stepBasedText2SqlService = stepBasedText2SqlService;
+        this.config = properties.getJobs();
+        this.pool = new ThreadPoolExecutor(config.getWorkers(), config.getWorkers(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()), new CustomizableThreadFactory("query-job-"));
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 提交直接生成并执行 SQL 的任务
+     *
+     * @throws RejectedExecutionException 等待队列已满时抛出
+     */
+    public QueryJob submitQuery(String question, Text2SqlProperties.ResultFormat format) {
+        QueryJob job = new QueryJob(QueryJob.Type.QUERY, question);
+        return submit(job, () -> job.succeed(text2SqlService.processQuery(question, format)));
+    }
+
+    /**
+     * 提交5步流程的任务，每完成一个步骤更新一次任务的部分结果
+     *
+     * @throws RejectedExecutionException 等待队列已满时抛出
+     */
+    public QueryJob submitSteps(String question, Text2SqlProperties.PipelineMode mode,
+                                Text2SqlProperties.ResultFormat format) {
+        QueryJob job = new QueryJob(QueryJob.Type.STEPS, question);
+        Text2SqlStepListener listener = new Text2SqlStepListener() {
+            @Override
+            public void onStepCompleted(int stepNumber, Text2SqlStepResult.StepResult result) {
+                job.stepCompleted(stepNumber, result);
+            }
+        };
+        return submit(job, () -> job.succeed(
+                stepBasedText2SqlService.processQueryWithSteps(question, mode, format, listener)));
+    }
+
+    /**
+     * 查询任务，不存在或已过期时返回 null
+     */
+    public QueryJob get(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 取消任务：排队中的任务移出队列，运行中的任务中断工作线程，已结束的任务不受影响
+     *
+     * @return 任务，不存在或已过期时返回 null
+     */
+    public QueryJob cancel(String jobId) {
+        QueryJob job = jobs.get(jobId);
+        if (job != null && job.cancel()) {
+            Future<?> future = job.getFuture();
+            if (future != null) {
+                future.cancel(true);
+            }
+            // 已取消的任务仍占用队列位置，直到被工作线程取出
+            pool.purge();
+            log.info("已取消任务 {}", jobId);
+        }
+        return job;
+    }
+
+    /**
+     * 清理结束时间超过 ttl 的任务
+     */
+    @Scheduled(fixedDelayString = "${text2sql.jobs.cleanup-interval:PT1M}",
+            initialDelayString = "${text2sql.jobs.cleanup-interval:PT1M}")
+    public void removeExpired() {
+        Instant expiredBefore = Instant.now().minus(config.getTtl());
+        int before = jobs.size();
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(expiredBefore));
+        int removed = before - jobs.size();
+        if (removed > 0) {
+            log.debug("清理过期任务 {} 个", removed);
+        }
+    }
+
+    /**
+     * 任务队列统计：排队数、运行数、保留的任务数和因队列已满被拒绝的次数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", pool.getQueue().size());
+        stats.put("running", pool.getActiveCount());
+        stats.put("workers", config.getWorkers());
+        stats.put("queueCapacity", config.getQueueCapacity());
+        stats.put("retained", jobs.size());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    private QueryJob submit(QueryJob job, Runnable task) {
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(pool.submit(LlmCaller.wrap(() -> run(job, task))));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            rejected.incrementAndGet();
+            throw e;
+        }
+        return job;
+    }
+
+    private void run(QueryJob job, Runnable task) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            task.run();
+        } catch (LlmOverloadedException e) {
+            log.warn("任务 {} 的大模型调用被限流拒绝: {}", job.getId(), e.getMessage());
+            job.fail(e.getMessage(), e.getReason());
+        } catch (Exception e) {
+            log.error("任务 {} 执行失败", job.getId(), e);
+            job.fail("查询处理失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        log.info("关闭异步任务线程池");
+        pool.shutdownNow();
+    }
+}
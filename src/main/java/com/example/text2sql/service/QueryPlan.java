@@ -0,0 +1,80 @@
+package com.example.text2sql.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * EXPLAIN FORMAT=JSON 的执行计划摘要
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QueryPlan {
+
+    /**
+     * 优化器估算的查询代价，计划中没有给出时为 0
+     */
+    private double cost;
+
+    /**
+     * 估算的扫描行数：每张表每次扫描的行数乘以扫描次数之和
+     */
+    private long examinedRows;
+
+    /**
+     * 估算的最大连接结果行数，缺少连接条件时会急剧膨胀
+     */
+    private long joinRows;
+
+    /**
+     * 各表的访问方式
+     */
+    private List<TableAccess> tables;
+
+    /**
+     * 是否超出代价阈值
+     */
+    private boolean rejected;
+
+    /**
+     * 可读的计划摘要
+     */
+    private String summary;
+
+    /**
+     * 单张表的访问方式
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class TableAccess {
+        private String table;
+
+        /**
+         * 访问类型，ALL 为全表扫描
+         */
+        private String accessType;
+
+        /**
+         * 使用的索引，未使用索引时为 null
+         */
+        private String key;
+
+        /**
+         * 估算的扫描行数
+         */
+        private long examinedRows;
+
+        /**
+         * 是否通过连接缓冲（Block Nested Loop 或 hash join）连接，通常意味着连接列上没有可用的索引
+         */
+        private boolean joinBuffer;
+
+        public boolean isFullScan() {
+            return "ALL".equalsIgnoreCase(accessType);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSetMetaData;
+
+/**
+ * 查询结果流式输出服务
+ * 以 NDJSON 格式逐行写出查询结果：每行一个 JSON 对象，最后一行为包含 SQL、记录数等信息的 trailer
+ * <p>
+ * 结果从只进游标读出后立即写入响应，单个请求占用的内存与结果行数无关。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryResultStreamer {
+
+    private final DatabaseTool databaseTool;
+
+    private final ObjectMapper objectMapper;
+
+    private final Text2SqlProperties properties;
+
+    /**
+     * 执行 SQL 并将结果以 NDJSON 格式写入输出流
+     */
+    public void streamRows(String sql, OutputStream outputStream) throws IOException {
+        Text2SqlProperties.Stream config = properties.getStream();
+        long start = System.nanoTime();
+        long[] count = {0};
+
+        try (JsonGenerator generator = createGenerator(outputStream)) {
+            try {
+                databaseTool.streamQuery(sql, config.getFetchSize(), rs -> {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    int columnCount = metaData.getColumnCount();
+                    try {
+                        generator.writeStartObject();
+                        for (int i = 1; i <= columnCount; i++) {
+                            generator.writeFieldName(JdbcUtils.lookupColumnName(metaData, i));
+                            generator.writeObject(JdbcUtils.getResultSetValue(rs, i));
+                        }
+                        generator.writeEndObject();
+                        generator.writeRaw('\n');
+                        if (++count[0] % config.getFlushRows() == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writeTrailer(generator, sql, count[0], elapsedMillis(start), null);
+            } catch (UncheckedIOException e) {
+                // 客户端断开连接，无法再写出 trailer
+                log.warn("流式输出中断，已写出 {} 条记录", count[0]);
+                throw e.getCause();
+            } catch (Exception e) {
+                log.error("流式查询执行失败", e);
+                writeTrailer(generator, sql, count[0], elapsedMillis(start), e.getMessage());
+            }
+        }
+        log.info("流式查询完成，写出 {} 条记录", count[0]);
+    }
+
+    /**
+     * 写出只包含错误信息的 trailer，用于 SQL 生成阶段就失败的请求
+     */
+    public void streamError(String error, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = createGenerator(outputStream)) {
+            writeTrailer(generator, null, 0, 0, error);
+        }
+    }
+
+    private JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.createGenerator(outputStream);
+        // 行之间由换行分隔，不需要默认的空格分隔符
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    private void writeTrailer(JsonGenerator generator, String sql, long count, long executionMillis,
+                              String error) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("trailer");
+        generator.writeBooleanField("success", error == null);
+        generator.writeStringField("sql", sql);
+        generator.writeNumberField("count", count);
+        generator.writeNumberField("executionMillis", executionMillis);
+        if (error != null) {
+            generator.writeStringField("error", error);
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.text2sql.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 结果会话的一页数据
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResultPage {
+    private boolean success;
+
+    /**
+     * 页码，从 1 开始
+     */
+    private int page;
+
+    private int pageSize;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+
+    /**
+     * 分页方式 (keyset, offset)
+     */
+    private String pagination;
+
+    private List<Map<String, Object>> data;
+
+    private String error;
+
+    public static ResultPage success(int page, int pageSize, boolean hasMore, String pagination,
+                                     List<Map<String, Object>> data) {
+        return new ResultPage(true, page, pageSize, hasMore, pagination, data, null);
+    }
+
+    public static ResultPage error(int page, int pageSize, String error) {
+        return new ResultPage(false, page, pageSize, false, null, null, error);
+    }
+}
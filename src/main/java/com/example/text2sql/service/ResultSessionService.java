@@ -0,0 +1,224 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import com.example.text2sql.util.LruTtlCache;
+import com.example.text2sql.util.SelectStatement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 结果会话服务
+ * <p>
+ * 查询成功后以会话 id 保存已通过安全校验的 SQL，翻页时改写 SQL 直接通过 JDBC 查询，不再经过大模型。
+ * 查询没有显式排序、且结果中有取值唯一的主键或唯一键列时，按该列做 keyset 分页，顺序翻页只需一次索引定位；
+ * 否则保留查询原有的排序做 OFFSET 分页。原 SQL 中的 LIMIT（没有或超过 maxRows 时为 maxRows）作为整个会话的
+ * 总行数上限，键列唯一性校验和 keyset 分页都在带这个 LIMIT 的派生表上进行，不会扫描整张表，
+ * 翻页看到的也是首次查询返回的那些行。
+ */
+@Slf4j
+@Service
+public class ResultSessionService {
+
+    public static final String KEYSET = "keyset";
+    public static final String OFFSET = "offset";
+
+    private final DatabaseTool databaseTool;
+
+    private final Text2SqlProperties.Session config;
+
+    private final int maxRows;
+
+    private final LruTtlCache<String, ResultSession> sessions;
+
+    public ResultSessionService(DatabaseTool databaseTool, Text2SqlProperties properties) {
+        this.databaseTool = databaseTool;
+        this.config = properties.getSession();
+        this.maxRows = properties.getExecution().getMaxRows();
+        this.sessions = new LruTtlCache<>(config.getMaxSessions(), config.getTtl());
+    }
+
+    /**
+     * 为已通过安全校验的 SQL 创建会话，未启用或 SQL 无法改写时返回 null
+     *
+     * @param columns 首次查询结果的列名，用于选择 keyset 分页的键列
+     */
+    public String create(String sql, Collection<String> columns) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        SelectStatement statement;
+        try {
+            // 与首次执行时一样收紧 LIMIT，会话的总行数不超过首次查询返回的行数
+            statement = SelectStatement.parse(SelectStatement.parse(sql).limitTo(maxRows));
+        } catch (IllegalArgumentException e) {
+            log.debug("SQL 无法分页，不创建结果会话: {}", e.getMessage());
+            return null;
+        }
+        String id = UUID.randomUUID().toString();
+        sessions.put(id, new ResultSession(statement, List.copyOf(columns), config.getPageSize()));
+        return id;
+    }
+
+    /**
+     * 获取会话的第 page 页，会话不存在或已过期时返回 null
+     */
+    public ResultPage getPage(String sessionId, int page) {
+        ResultSession session = sessions.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+        // 每次访问重新计时，正在翻页的会话不会过期
+        sessions.put(sessionId, session);
+
+        int pageSize = session.pageSize;
+        if (page < 1) {
+            return ResultPage.error(page, pageSize, "页码必须从 1 开始");
+        }
+
+        SelectStatement statement = session.statement;
+        long offset = (long) (page - 1) * pageSize;
+        long remaining = statement.getLimit() == null ? Long.MAX_VALUE : statement.getLimit() - offset;
+        if (remaining <= 0) {
+            return ResultPage.success(page, pageSize, false, session.pagination(), List.of());
+        }
+        int wanted = (int) Math.min(pageSize, remaining);
+        // 多取一行判断是否还有下一页
+        int fetch = remaining > wanted ? wanted + 1 : wanted;
+
+        try {
+            String keyColumn = keyColumn(session);
+            List<Map<String, Object>> rows;
+            if (keyColumn == null) {
+                rows = databaseTool.queryForList(statement.getBody() + "\nLIMIT ? OFFSET ?",
+                        fetch, offset + statement.getOffset());
+            } else {
+                rows = fetchByKey(session, keyColumn, page, offset, fetch);
+                if (rows.size() >= wanted) {
+                    session.pageEndKeys.put(page, rows.get(wanted - 1).get(keyColumn));
+                }
+            }
+
+            boolean hasMore = rows.size() > wanted;
+            return ResultPage.success(page, pageSize, hasMore, session.pagination(),
+                    hasMore ? rows.subList(0, wanted) : rows);
+        } catch (DataAccessException e) {
+            log.error("结果会话翻页失败: {}", sessionId, e);
+            return ResultPage.error(page, pageSize, "翻页查询失败，" + e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /**
+     * 关闭会话
+     */
+    public void close(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    /**
+     * 按键列排序取一页：已知上一页最后一行的键值时从该值之后开始读取，否则退回到按键列排序的 OFFSET
+     */
+    private List<Map<String, Object>> fetchByKey(ResultSession session, String keyColumn, int page,
+                                                 long offset, int fetch) {
+        String key = "paged." + quoteIdentifier(keyColumn);
+        String source = "SELECT * FROM " + derivedTable(session.statement);
+        Object after = page == 1 ? null : session.pageEndKeys.get(page - 1);
+        if (page == 1) {
+            return databaseTool.queryForList(source + " ORDER BY " + key + " LIMIT ?", fetch);
+        }
+        if (after != null) {
+            return databaseTool.queryForList(source + " WHERE " + key + " > ? ORDER BY " + key + " LIMIT ?",
+                    after, fetch);
+        }
+        return databaseTool.queryForList(source + " ORDER BY " + key + " LIMIT ? OFFSET ?", fetch, offset);
+    }
+
+    /**
+     * 首次翻页时确定 keyset 分页使用的键列，不适用 keyset 分页时返回 null
+     * <p>
+     * 候选列为结果中与某张表的主键或唯一键同名的列，需要在会话的全部结果行上验证取值非空且唯一，
+     * 只验证第一个候选列，失败时使用 OFFSET 分页。
+     */
+    private String keyColumn(ResultSession session) {
+        synchronized (session) {
+            if (session.planned) {
+                return session.keyColumn;
+            }
+            SelectStatement statement = session.statement;
+            if (!statement.isOrdered() && statement.getOffset() == 0) {
+                Set<String> keyColumns = databaseTool.getSnapshot().getTables().values().stream()
+                        .flatMap(table -> table.getKeyColumns().stream())
+                        .map(column -> column.toLowerCase(Locale.ROOT))
+                        .collect(Collectors.toSet());
+                String candidate = session.columns.stream()
+                        .filter(column -> keyColumns.contains(column.toLowerCase(Locale.ROOT)))
+                        .findFirst()
+                        .orElse(null);
+                if (candidate != null && isUniqueKey(statement, candidate)) {
+                    session.keyColumn = candidate;
+                }
+            }
+            session.planned = true;
+            log.debug("结果会话分页方式: {}，键列: {}", session.pagination(), session.keyColumn);
+            return session.keyColumn;
+        }
+    }
+
+    private boolean isUniqueKey(SelectStatement statement, String column) {
+        String sql = "SELECT COUNT(*) AS total_rows, COUNT(DISTINCT paged." + quoteIdentifier(column)
+                + ") AS distinct_keys FROM " + derivedTable(statement);
+        try {
+            Map<String, Object> counts = databaseTool.queryForList(sql).get(0);
+            return ((Number) counts.get("total_rows")).longValue() == ((Number) counts.get("distinct_keys")).longValue();
+        } catch (DataAccessException e) {
+            // 例如结果中有重名列，无法作为派生表
+            log.debug("无法验证键列 {}，使用 OFFSET 分页: {}", column, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 保留原 LIMIT 的派生表
+     */
+    private static String derivedTable(SelectStatement statement) {
+        return "(\n" + statement.withLimit(statement.getLimit(), statement.getOffset()) + "\n) AS paged";
+    }
+
+    private static String quoteIdentifier(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    /**
+     * 单个结果会话
+     */
+    private static class ResultSession {
+        private final SelectStatement statement;
+        private final List<String> columns;
+        private final int pageSize;
+
+        // 每页最后一行的键值，用于下一页的 keyset 条件
+        private final Map<Integer, Object> pageEndKeys = new ConcurrentHashMap<>();
+
+        private volatile boolean planned;
+        private volatile String keyColumn;
+
+        private ResultSession(SelectStatement statement, List<String> columns, int pageSize) {
+            this.statement = statement;
+            this.columns = columns;
+            this.pageSize = pageSize;
+        }
+
+        private String pagination() {
+            return keyColumn != null ? KEYSET : OFFSET;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 多端点路由的 ChatModel
+ * <p>
+ * 持有多个 OpenAI 兼容的端点，按每个端点延迟的指数加权移动平均（EWMA）排序，每次调用发给最快的健康端点；
+ * 错误率的 EWMA 达到阈值的端点在冷却时间内不作为首选。启用对冲时，首选端点超过其 p95 延迟仍未返回，
+ * 就向次选端点发出同样的请求，取先成功的结果并中断另一个。
+ * <p>
+ * 带工具的请求不对冲，避免模型发起的工具调用被执行两次。
+ */
+@Slf4j
+public class RoutingChatModel implements ChatModel, MeterBinder, DisposableBean {
+
+    static final String SUCCESS = "success";
+    static final String ERROR = "error";
+    static final String HEDGED = "hedged";
+    static final String CANCELLED = "cancelled";
+
+    // 路由层自己换端点，单个端点的调用不再重试
+    private static final RetryTemplate NO_RETRY = RetryTemplate.builder().maxAttempts(1).build();
+
+    private final List<Endpoint> endpoints;
+
+    private final Text2SqlProperties.Routing config;
+
+    private final Text2SqlMetrics metrics;
+
+    private final ThreadPoolExecutor hedgeExecutor;
+
+    public RoutingChatModel(List<Endpoint> endpoints, Text2SqlProperties.Routing config, Text2SqlMetrics metrics) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("至少需要配置一个模型端点");
+        }
+        this.endpoints = List.copyOf(endpoints);
+        this.config = config;
+        this.metrics = metrics;
+        this.endpoints.forEach(endpoint -> endpoint.init(config, metrics));
+        this.hedgeExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new CustomizableThreadFactory("llm-route-"));
+    }
+
+    /**
+     * 按配置创建 OpenAI 兼容端点的模型，默认的模型名和温度由端点配置决定
+     */
+    public static ChatModel openAiModel(Text2SqlProperties.RoutingEndpoint endpoint,
+                                        ToolCallingManager toolCallingManager) {
+        OpenAiApi api = OpenAiApi.builder()
+                .baseUrl(endpoint.getBaseUrl())
+                .apiKey(endpoint.getApiKey())
+                .build();
+        return OpenAiChatModel.builder()
+                .openAiApi(api)
+                .defaultOptions(OpenAiChatOptions.builder()
+                        .model(endpoint.getModel())
+                        .temperature(endpoint.getTemperature())
+                        .build())
+                .toolCallingManager(toolCallingManager)
+                .retryTemplate(NO_RETRY)
+                .build();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        List<Endpoint> ranked = rank();
+        if (config.isHedgeEnabled() && ranked.size() > 1 && !hasTools(prompt)) {
+            return hedgedCall(prompt, ranked.get(0), ranked.get(1));
+        }
+
+        int attempts = Math.max(1, Math.min(config.getMaxAttempts(), ranked.size()));
+        RuntimeException failure = null;
+        for (Endpoint endpoint : ranked.subList(0, attempts)) {
+            try {
+                return endpoint.call(prompt);
+            } catch (RuntimeException e) {
+                log.warn("模型端点 {} 调用失败: {}", endpoint.getName(), e.getMessage());
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        Endpoint endpoint = rank().get(0);
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return endpoint.model.stream(prompt)
+                    .doOnComplete(() -> endpoint.succeeded(System.nanoTime() - start))
+                    .doOnError(e -> endpoint.failed());
+        });
+    }
+
+    /**
+     * 不携带具体模型名，由各端点使用自己的默认配置
+     */
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return ToolCallingChatOptions.builder().build();
+    }
+
+    /**
+     * 健康的端点按延迟排在前面，不健康的端点排在最后，只在前面的端点都失败时使用
+     */
+    List<Endpoint> rank() {
+        long now = System.currentTimeMillis();
+        List<Endpoint> ranked = new ArrayList<>(endpoints);
+        ranked.sort(Comparator.comparing((Endpoint endpoint) -> !endpoint.isHealthy(now))
+                .thenComparingDouble(Endpoint::getLatencyMillis));
+        return ranked;
+    }
+
+    private ChatResponse hedgedCall(Prompt prompt, Endpoint primary, Endpoint backup) {
+        CompletionService<ChatResponse> completion = new ExecutorCompletionService<>(hedgeExecutor);
+        Map<Future<ChatResponse>, Endpoint> inFlight = new LinkedHashMap<>();
+        // 结果已确定后，落后请求因中断产生的异常不计入错误率
+        AtomicBoolean settled = new AtomicBoolean();
+        inFlight.put(completion.submit(() -> primary.call(prompt, settled::get)), primary);
+        long delayMillis = hedgeDelayMillis(primary);
+        boolean hedged = false;
+        RuntimeException failure = null;
+        try {
+            while (!inFlight.isEmpty() || !hedged) {
+                Future<ChatResponse> done = hedged
+                        ? completion.take()
+                        : completion.poll(delayMillis, TimeUnit.MILLISECONDS);
+                if (done != null) {
+                    inFlight.remove(done);
+                    try {
+                        return done.get();
+                    } catch (ExecutionException e) {
+                        failure = e.getCause() instanceof RuntimeException runtime
+                                ? runtime
+                                : new IllegalStateException(e.getCause());
+                        log.warn("模型端点调用失败: {}", failure.getMessage());
+                    }
+                }
+                if (!hedged) {
+                    // 首选端点超时未返回或已失败，向次选端点发出请求
+                    hedged = true;
+                    if (done == null) {
+                        metrics.recordLlmRoute(backup.getName(), HEDGED);
+                        log.debug("模型端点 {} 超过 {}ms 未返回，对冲到 {}", primary.getName(), delayMillis,
+                                backup.getName());
+                    }
+                    inFlight.put(completion.submit(() -> backup.call(prompt, settled::get)), backup);
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("模型调用被中断", e);
+        } finally {
+            // 中断落后的请求，其结果不再需要
+            settled.set(true);
+            inFlight.forEach((future, endpoint) -> {
+                if (future.cancel(true)) {
+                    metrics.recordLlmRoute(endpoint.getName(), CANCELLED);
+                }
+            });
+        }
+    }
+
+    /**
+     * 对冲等待时间：首选端点的 p95 延迟，限制在配置的上下限之间
+     */
+    private long hedgeDelayMillis(Endpoint primary) {
+        long min = config.getHedgeMinDelay().toMillis();
+        long max = config.getHedgeMaxDelay().toMillis();
+        long p95 = primary.p95Millis();
+        return p95 < 0 ? max : Math.max(min, Math.min(max, p95));
+    }
+
+    private static boolean hasTools(Prompt prompt) {
+        return prompt.getOptions() instanceof ToolCallingChatOptions options
+                && (!options.getToolCallbacks().isEmpty() || !options.getToolNames().isEmpty());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Endpoint endpoint : endpoints) {
+            Gauge.builder("text2sql.llm.endpoint.latency", endpoint, Endpoint::getLatencyMillis)
+                    .description("模型端点延迟的 EWMA")
+                    .baseUnit("milliseconds")
+                    .tag("endpoint", endpoint.getName())
+                    .register(registry);
+            Gauge.builder("text2sql.llm.endpoint.error.rate", endpoint, Endpoint::getErrorRate)
+                    .description("模型端点错误率的 EWMA")
+                    .tag("endpoint", endpoint.getName())
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * 单个模型端点及其延迟和错误率统计
+     */
+    public static class Endpoint {
+
+        // 计算 p95 时保留的最近延迟样本数
+        private static final int WINDOW = 100;
+
+        @Getter
+        private final String name;
+
+        private final ChatModel model;
+
+        private final long[] recent = new long[WINDOW];
+
+        private Text2SqlProperties.Routing config;
+
+        private Text2SqlMetrics metrics;
+
+        private long samples;
+
+        private double latencyMillis;
+
+        private double errorRate;
+
+        private long lastFailureAt;
+
+        public Endpoint(String name, ChatModel model) {
+            this.name = name;
+            this.model = model;
+        }
+
+        private void init(Text2SqlProperties.Routing config, Text2SqlMetrics metrics) {
+            this.config = config;
+            this.metrics = metrics;
+        }
+
+        ChatResponse call(Prompt prompt) {
+            return call(prompt, () -> false);
+        }
+
+        /**
+         * @param abandoned 调用失败时结果是否已不再需要，不再需要时失败不计入错误率
+         */
+        ChatResponse call(Prompt prompt, BooleanSupplier abandoned) {
+            long start = System.nanoTime();
+            ChatResponse response;
+            try {
+                response = model.call(prompt);
+            } catch (RuntimeException e) {
+                if (!abandoned.getAsBoolean()) {
+                    failed();
+                }
+                throw e;
+            }
+            succeeded(System.nanoTime() - start);
+            return response;
+        }
+
+        synchronized void succeeded(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            double alpha = config.getEwmaAlpha();
+            latencyMillis = samples == 0 ? millis : alpha * millis + (1 - alpha) * latencyMillis;
+            errorRate = (1 - alpha) * errorRate;
+            recent[(int) (samples % WINDOW)] = millis;
+            samples++;
+            metrics.recordLlmRoute(name, SUCCESS);
+        }
+
+        synchronized void failed() {
+            double alpha = config.getEwmaAlpha();
+            errorRate = alpha + (1 - alpha) * errorRate;
+            lastFailureAt = System.currentTimeMillis();
+            metrics.recordLlmRoute(name, ERROR);
+        }
+
+        /**
+         * 错误率低于阈值，或距最近一次失败已超过冷却时间
+         */
+        synchronized boolean isHealthy(long now) {
+            return errorRate < config.getErrorRateThreshold()
+                    || now - lastFailureAt >= config.getCooldown().toMillis();
+        }
+
+        /**
+         * 延迟的 EWMA，还没有成功调用时为 0，使新端点优先获得流量以积累样本
+         */
+        public synchronized double getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public synchronized double getErrorRate() {
+            return errorRate;
+        }
+
+        /**
+         * 最近调用的 p95 延迟，没有样本时为 -1
+         */
+        synchronized long p95Millis() {
+            if (samples == 0) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(recent, (int) Math.min(samples, WINDOW));
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(0.95 * sorted.length) - 1];
+        }
+    }
+}
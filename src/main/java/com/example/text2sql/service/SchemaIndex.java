@@ -0,0 +1,172 @@
+package com.example.text2sql.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 基于 BM25 的表结构词法索引
+ * 以表为文档，索引表名、表注释、列名和列注释，完全在本地计算，不依赖向量服务
+ */
+public class SchemaIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // 表名比列名、注释更能说明表的用途，按权重重复计入词频
+    private static final int TABLE_NAME_WEIGHT = 3;
+    private static final int TABLE_COMMENT_WEIGHT = 2;
+
+    private final long version;
+    private final Map<String, Map<String, Integer>> termFrequencies = new LinkedHashMap<>();
+    private final Map<String, Integer> documentLengths = new HashMap<>();
+    private final Map<String, Integer> documentFrequencies = new HashMap<>();
+    private final double averageDocumentLength;
+
+    private SchemaIndex(long version) {
+        this.version = version;
+        this.averageDocumentLength = 0;
+    }
+
+    private SchemaIndex(SchemaSnapshot snapshot) {
+        this.version = snapshot.getVersion();
+        long totalLength = 0;
+        for (SchemaSnapshot.TableSchema table : snapshot.getTables().values()) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            addTerms(frequencies, table.getName(), TABLE_NAME_WEIGHT);
+            addTerms(frequencies, table.getComment(), TABLE_COMMENT_WEIGHT);
+            for (Map<String, Object> column : table.getColumns()) {
+                addTerms(frequencies, (String) column.get("COLUMN_NAME"), 1);
+                addTerms(frequencies, (String) column.get("COLUMN_COMMENT"), 1);
+            }
+
+            int length = frequencies.values().stream().mapToInt(Integer::intValue).sum();
+            termFrequencies.put(table.getName(), frequencies);
+            documentLengths.put(table.getName(), length);
+            frequencies.keySet().forEach(term -> documentFrequencies.merge(term, 1, Integer::sum));
+            totalLength += length;
+        }
+        this.averageDocumentLength = termFrequencies.isEmpty() ? 0 : (double) totalLength / termFrequencies.size();
+    }
+
+    /**
+     * 为 Schema 快照构建索引
+     */
+    public static SchemaIndex build(SchemaSnapshot snapshot) {
+        return new SchemaIndex(snapshot);
+    }
+
+    /**
+     * 空索引，用于 Schema 快照尚未构建时
+     */
+    public static SchemaIndex empty() {
+        return new SchemaIndex(-1);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 按 BM25 得分排序返回与查询相关的表，只包含得分大于 0 的表
+     */
+    public List<TableScore> search(String query) {
+        List<String> queryTerms = tokenize(query);
+        int documentCount = termFrequencies.size();
+        List<TableScore> scores = new ArrayList<>();
+
+        for (Map.Entry<String, Map<String, Integer>> document : termFrequencies.entrySet()) {
+            Map<String, Integer> frequencies = document.getValue();
+            double lengthNorm = K1 * (1 - B + B * documentLengths.get(document.getKey()) / averageDocumentLength);
+            double score = 0;
+            for (String term : queryTerms) {
+                Integer frequency = frequencies.get(term);
+                if (frequency == null) {
+                    continue;
+                }
+                int df = documentFrequencies.get(term);
+                double idf = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+                score += idf * frequency * (K1 + 1) / (frequency + lengthNorm);
+            }
+            if (score > 0) {
+                scores.add(new TableScore(document.getKey(), score));
+            }
+        }
+
+        scores.sort(Comparator.comparingDouble(TableScore::getScore).reversed());
+        return scores;
+    }
+
+    private static void addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        for (String term : tokenize(text)) {
+            frequencies.merge(term, weight, Integer::sum);
+        }
+    }
+
+    /**
+     * 分词：英文和数字按非字母数字字符（包括下划线）切分，并去掉复数 s；
+     * 中文没有分词器可用，按单字和相邻双字切分
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        char previousCjk = 0;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (isCjk(c)) {
+                flushWord(word, terms);
+                terms.add(String.valueOf(c));
+                if (previousCjk != 0) {
+                    terms.add("" + previousCjk + c);
+                }
+                previousCjk = c;
+            } else if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+                previousCjk = 0;
+            } else {
+                flushWord(word, terms);
+                previousCjk = 0;
+            }
+        }
+        flushWord(word, terms);
+        return terms;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> terms) {
+        if (word.isEmpty()) {
+            return;
+        }
+        String term = word.toString();
+        if (term.length() > 3 && term.endsWith("s")) {
+            term = term.substring(0, term.length() - 1);
+        }
+        terms.add(term);
+        word.setLength(0);
+    }
+
+    private static boolean isCjk(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    /**
+     * 表及其相关性得分
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class TableScore {
+        private final String tableName;
+        private final double score;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 基于检索的 Schema 裁剪服务
+ * 按问题检索最相关的 top-k 张表，并沿外键补充被引用的表和连接多张选中表的关联表，只把这部分表结构放进提示词
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SchemaRetriever {
+
+    private final DatabaseTool databaseTool;
+
+    private final BusinessRuleService businessRuleService;
+
+    private final Text2SqlProperties properties;
+
+    private volatile SchemaIndex index = SchemaIndex.empty();
+
+    /**
+     * 获取与问题相关的表结构 DDL，没有匹配的表时返回完整 Schema
+     */
+    public String retrieveSchema(String question) {
+        SchemaSnapshot snapshot = databaseTool.getSnapshot();
+        Set<String> tables = selectTables(question);
+        if (tables.isEmpty()) {
+            log.debug("没有与问题匹配的表，使用完整 Schema: {}", question);
+            return snapshot.getDatabaseDdl();
+        }
+
+        return tablesDdl(snapshot, tables);
+    }
+
+    /**
+     * 获取已选中表的 DDL，忽略快照中不存在的表名；一张表都找不到时按问题检索
+     */
+    public String retrieveSchema(String question, Collection<String> tableNames) {
+        String schema = tablesDdl(databaseTool.getSnapshot(), tableNames);
+        return schema.isEmpty() ? retrieveSchema(question) : schema;
+    }
+
+    /**
+     * 选出与问题相关的表：top-k 检索结果，加上它们通过外键引用的表，以及引用其中两张以上表的关联表
+     */
+    public Set<String> selectTables(String question) {
+        Text2SqlProperties.Retrieval config = properties.getRetrieval();
+        SchemaSnapshot snapshot = databaseTool.getSnapshot();
+
+        // 表数量不超过 top-k 时无需裁剪
+        if (snapshot.getTables().size() <= config.getTopK()) {
+            return snapshot.getTables().keySet();
+        }
+
+        Set<String> selected = new LinkedHashSet<>();
+        rankTables(question).stream()
+                .limit(config.getTopK())
+                .forEach(score -> selected.add(score.getTableName()));
+
+        if (config.isForeignKeyExpansion()) {
+            for (String table : List.copyOf(selected)) {
+                SchemaSnapshot.TableSchema tableSchema = snapshot.getTable(table);
+                if (tableSchema != null) {
+                    selected.addAll(tableSchema.getReferencedTables());
+                }
+            }
+            // 关联表只引用选中的表而不被它们引用，需要按反向外键补充
+            selected.addAll(snapshot.getJoinTables(selected));
+        }
+
+        log.debug("问题 [{}] 选中的表: {}", question, selected);
+        return selected;
+    }
+
+    /**
+     * 按相关性得分对所有表排序
+     * 查询会先替换同义词，并补充问题中业务术语对应的表名、字段名解释
+     */
+    public List<SchemaIndex.TableScore> rankTables(String question) {
+        StringBuilder query = new StringBuilder(businessRuleService.replaceSynonyms(question));
+        for (String explanation : businessRuleService.findBusinessTermExplanations(question)) {
+            query.append(' ').append(explanation);
+        }
+        return currentIndex().search(query.toString());
+    }
+
+    private static String tablesDdl(SchemaSnapshot snapshot, Collection<String> tableNames) {
+        StringBuilder schema = new StringBuilder();
+        for (String table : tableNames) {
+            SchemaSnapshot.TableSchema tableSchema = snapshot.getTable(table);
+            if (tableSchema != null) {
+                schema.append(tableSchema.getDdl());
+            }
+        }
+        return schema.toString();
+    }
+
+    /**
+     * 获取与当前 Schema 快照版本一致的索引，快照变化后重建
+     */
+    private SchemaIndex currentIndex() {
+        SchemaSnapshot snapshot = databaseTool.getSnapshot();
+        SchemaIndex current = index;
+        if (current.getVersion() != snapshot.getVersion()) {
+            current = SchemaIndex.build(snapshot);
+            index = current;
+            log.debug("重建 Schema 检索索引，版本: {}", snapshot.getVersion());
+        }
+        return current;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.text2sql.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 数据库 Schema 快照
+ * 一次性构建、不可变，可在多线程间无锁共享
+ */
+@Getter
+public class SchemaSnapshot {
+
+    /**
+     * 快照版本号，每次重建递增
+     */
+    private final long version;
+
+    /**
+     * 构建快照时的 Schema 指纹，用于判断快照是否过期
+     */
+    private final String fingerprint;
+
+    /**
+     * 快照构建时间
+     */
+    private final Instant builtAt;
+
+    /**
+     * 按表名排序的表结构
+     */
+    private final Map<String, TableSchema> tables;
+
+    /**
+     * 所有表拼接后的 DDL
+     */
+    private final String databaseDdl;
+
+    /**
+     * 小写表名到表结构的索引，按表名查找时不区分大小写
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<String, TableSchema> tablesByLowerName;
+
+    /**
+     * 反向外键索引：表名到通过外键引用它的表
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<String, List<String>> referencingTables;
+
+    public SchemaSnapshot(long version, String fingerprint, Instant builtAt,
+                          Map<String, TableSchema> tables, String databaseDdl) {
+        this.version = version;
+        this.fingerprint = fingerprint;
+        this.builtAt = builtAt;
+        this.tables = tables;
+        this.databaseDdl = databaseDdl;
+        this.tablesByLowerName = new HashMap<>();
+        this.referencingTables = new HashMap<>();
+        tables.forEach((name, table) -> {
+            tablesByLowerName.putIfAbsent(name.toLowerCase(Locale.ROOT), table);
+            for (String referenced : new LinkedHashSet<>(table.getReferencedTables())) {
+                referencingTables.computeIfAbsent(referenced, k -> new ArrayList<>()).add(name);
+            }
+        });
+    }
+
+    /**
+     * 获取指定表结构，表名不区分大小写，不存在时返回 null
+     */
+    public TableSchema getTable(String tableName) {
+        if (tableName == null) {
+            return null;
+        }
+        TableSchema table = tables.get(tableName);
+        return table != null ? table : tablesByLowerName.get(tableName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 通过外键引用给定表中至少两张的表，例如连接员工表和项目表的项目成员表
+     */
+    public Set<String> getJoinTables(Collection<String> tableNames) {
+        Set<String> selected = new HashSet<>(tableNames);
+        Map<String, Integer> counts = new HashMap<>();
+        Set<String> joinTables = new LinkedHashSet<>();
+        for (String tableName : selected) {
+            for (String referencing : referencingTables.getOrDefault(tableName, List.of())) {
+                if (!selected.contains(referencing) && counts.merge(referencing, 1, Integer::sum) == 2) {
+                    joinTables.add(referencing);
+                }
+            }
+        }
+        return joinTables;
+    }
+
+    /**
+     * 单表结构
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class TableSchema {
+        private final String name;
+        private final String comment;
+        private final String type;
+        private final String ddl;
+        private final List<Map<String, Object>> columns;
+
+        /**
+         * 当前表通过外键引用的表
+         */
+        private final List<String> referencedTables;
+
+        public boolean isBaseTable() {
+            return "BASE TABLE".equals(type);
+        }
+
+        /**
+         * 主键列和唯一键列的列名
+         */
+        public List<String> getKeyColumns() {
+            return columns.stream()
+                    .filter(column -> "PRI".equals(column.get("COLUMN_KEY")) || "UNI".equals(column.get("COLUMN_KEY")))
+                    .map(column -> (String) column.get("COLUMN_NAME"))
+                    .toList();
+        }
+    }
+}
@@ -1,18 +1,33 @@
 package com.example.text2sql.service;
 
+import com.example.text2sql.config.Text2SqlProperties;
+import com.example.text2sql.util.SingleFlight;
+import com.example.text2sql.util.SqlSafetyValidator;
+import lombok.Data;
+import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.ResponseEntity;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static com.example.text2sql.util.SqlUtils.isSqlSafe;
 
 /**
  * 基于步骤的 Text2SQL 服务
@@ -25,12 +40,59 @@ public class StepBasedText2SqlService {
 
     @Qualifier("mcpChatClient")
     private final ChatClient mcpChatClient;
+
+    @Qualifier("chatClient")
+    private final ChatClient chatClient;
     
     private final BusinessRuleService businessRuleService;
 
+    private final DatabaseTool databaseTool;
+
+    private final Text2SqlProperties properties;
+
+    private final GeneratedSqlCache<List<Text2SqlStepResult.StepResult>> stepResultCache;
+
+    private final StepGraphExecutor stepGraphExecutor;
+
+    private final SchemaRetriever schemaRetriever;
+
+    private final LocalTableSelector localTableSelector;
+
+    private final SingleFlight<Text2SqlStepResult> stepQueryCoalescer;
+
+    private final Text2SqlMetrics metrics;
+
+    private final ResultSessionService resultSessionService;
+
+    private final QueryCostGate queryCostGate;
+
     private static final String SQL_PATTERN = "(SELECT.*?)(?=\\n\\n|$)";
+    // 步骤2结果中表名之间的分隔符，模型可能用反引号括起表名
+    private static final Pattern TABLE_LIST_SEPARATOR = Pattern.compile("[,，、`\\s]+");
     private static final String SQL_EXTRACTION_FAILED = "无法从内容中提取有效的SQL语句";
     private static final String SQL_UNSAFE_MSG = "生成的 SQL 包含危险操作";
+    private static final String SQL_COST_EXCEEDED_MSG = "SQL 执行代价超出阈值，未执行";
+    private static final String NON_DATABASE_QUERY_MSG = "非数据库查询，请输入与数据库相关的问题";
+
+    // 单次调用模式提示模板：一次输出步骤1-4的结果
+    private static final String SINGLE_CALL_PROMPT = """
+            你是一个专业的 SQL 生成助手。请基于数据库结构，一次性完成问题改写、数据表选取、信息推理和 SQL 生成。
+            
+            数据库结构信息：
+            {schema}
+            
+            业务规则参考：{businessRules}
+            
+            用户查询：{userQuery}
+            
+            要求：
+            1. databaseQuery：只有当问题是与上述表相关的数据库查询时才为 true，问候、闲聊、技术问题或与现有表无关的问题为 false
+            2. rewrittenQuery：改写后的查询描述，简洁明了，突出查询的核心需求
+            3. selectedTables：查询需要用到的表名，必须是上述结构中存在的表
+            4. inference：按"- 需要查询的字段/筛选条件/表关联关系/排序规则/分组统计/结果限制/业务含义"逐行说明，每行一句话
+            5. sql：只使用 SELECT 的 MySQL 查询语句，使用正确的表名和字段名，使用 LIMIT 限制结果数量（最多1000条）
+            6. sqlComment：按"> 1. **查询目的**: ..."的格式逐条说明查询目的、字段、表关联、筛选、分组、排序、性能和业务价值
+            """;
 
     // 步骤1: 问题改写提示模板
     private static final String STEP1_PROMPT = """
@@ -38,18 +100,19 @@ public class StepBasedText2SqlService {
             
             用户查询：{userQuery}
             
+            相关表结构：
+            {schema}
+            
             判断规则：
             1. 数据库查询特征词：查询、统计、查找、获取、显示、列出、计算、汇总、分析、筛选、排序、分组、连接、关联
             2. 非数据库查询特征：问候语、自我介绍、聊天、天气、新闻、娱乐、技术问题、编程问题、系统问题
             
-            请使用 getDatabaseSchema MCP工具查询数据库表结构
-            
             判断流程：
             1. 检查是否包含数据库查询特征词
             2. 检查是否涉及数据库里面的业务实体
             3. 检查是否包含数据操作意图
             4. 排除明显的非数据库查询内容
-            5. 使用MCP工具查询实际表结构，判断查询是否可行
+            5. 根据上面的相关表结构判断查询是否可行
             
             请严格按照以下格式返回，不要包含任何其他内容：
             
@@ -67,22 +130,25 @@ public class StepBasedText2SqlService {
             2. 对于数据库查询，改写后的描述要简洁明了，突出查询的核心需求
             3. 使用标准的数据库查询术语
             4. 不要包含任何分析过程或额外说明
-            5. 必须使用MCP工具查询数据库结构后再做判断
+            5. 必须根据上面的表结构做判断
             """;
 
     // 步骤2: 数据表选取提示模板
     private static final String STEP2_PROMPT = """
-            基于改写后的查询，请使用 MCP 工具选择相关的数据表。
+            基于改写后的查询，选择相关的数据表。
             
             改写后的查询：{rewrittenQuery}
             
+            候选表结构：
+            {schema}
+            
             请严格按照以下格式返回，不要包含任何其他内容：
             数据表选取，选择表为：表名1, 表名2, ...
             
             请：
-            1. 使用 getTableNames() 获取所有可用表
-            2. 分析查询需求，选择相关表
-            3. 使用 getTableSchema(tableName) 获取选中表的结构
+            1. 分析查询需求，从候选表中选择相关表
+            2. 候选表不能满足需求时，再使用 getTableNames() 和 getTableSchema(tableName) 查找其他表
+            3. 只列出表名，表名之间用英文逗号分隔
             4. 必须严格按照"数据表选取，选择表为："的格式
             5. 不要包含任何分析过程或额外说明
             """;
@@ -123,6 +189,9 @@ public class StepBasedText2SqlService {
             选中表：{selectedTables}
             推理结果：{inferenceResult}
             
+            选中表结构：
+            {schema}
+            
             请严格按照以下格式返回：
             
             查询SQL生成，生成SQL查询语句为：
@@ -145,7 +214,7 @@ public class StepBasedText2SqlService {
             1. 第一行必须是"查询SQL生成，生成SQL查询语句为："开头
             2. 生成的SQL语句必须用"```sql"和"```"包围
             3. 生成标准的SQL查询语句，只使用SELECT查询
-            4. 使用正确的表名和字段名，遵循数据库命名规范
+            4. 使用选中表结构中的表名和字段名，遵循数据库命名规范
             5. 根据推理结果添加适当的WHERE条件、JOIN、GROUP BY等
             6. 使用LIMIT限制结果数量（最多1000条）
             7. 确保SQL语法正确，符合MySQL标准
@@ -154,7 +223,13 @@ public class StepBasedText2SqlService {
             10. 不要包含任何其他格式或额外说明
             """;
 
-    // 步骤5: SQL执行提示模板
+    // 步骤4重新生成时附加的执行计划反馈
+    private static final String STEP4_COST_FEEDBACK = """
+            
+            {costFeedback}
+            """;
+
+    // 步骤5: SQL执行提示模板，仅在 text2sql.execution.mode=tool 时使用
     private static final String STEP5_PROMPT = """
             请使用 executeQuery 工具执行以下 SQL 查询：
             
@@ -183,83 +258,327 @@ public class StepBasedText2SqlService {
     /**
      * 执行步骤的简化方法（无后处理函数）
      */
-    private Text2SqlStepResult.StepResult executeStep(int stepNumber,
-                                                      String promptTemplate, Map<String, Object> variables) {
-        return executeStep(stepNumber, promptTemplate, variables, null);
+    private Text2SqlStepResult.StepResult executeStep(int stepNumber, String promptTemplate,
+                                                      Map<String, Object> variables, StepContext context) {
+        return executeStep(stepNumber, promptTemplate, variables, null, context);
     }
 
     /**
      * 执行步骤的通用方法
      */
-    private Text2SqlStepResult.StepResult executeStep(int stepNumber, String promptTemplate, Map<String, Object> variables, Function<String, String> function) {
+    private Text2SqlStepResult.StepResult executeStep(int stepNumber, String promptTemplate, Map<String, Object> variables,
+                                                      Function<String, String> function, StepContext context) {
+        long start = System.nanoTime();
         try {
-            System.out.println("执行步骤" + stepNumber);
-
             PromptTemplate template = new PromptTemplate(promptTemplate);
             String promptText = template.create(variables).getContents();
 
-            String result = mcpChatClient.prompt()
-                    .user(promptText)
-                    .call()
-                    .content();
+            String result = callModel(stepNumber, promptText, context);
 
             if (function != null) {
                 result = function.apply(result);
             }
 
-            System.out.println(result);
-
+            metrics.recordStep(stepNumber, System.nanoTime() - start, true);
             return Text2SqlStepResult.StepResult.success(result);
         } catch (Exception e) {
             log.error("步骤{}执行失败", stepNumber, e);
-            return Text2SqlStepResult.StepResult.error(e.getMessage());
+            metrics.recordStep(stepNumber, System.nanoTime() - start, false);
+            return stepError(e);
         }
     }
 
+    /**
+     * 调用模型，需要逐 token 推送时使用流式调用
+     */
+    private String callModel(int stepNumber, String promptText, StepContext context) {
+        long start = System.nanoTime();
+        if (!context.listener.isTokenStreaming()) {
+            ChatResponse response = null;
+            try {
+                response = mcpChatClient.prompt()
+                        .user(promptText)
+                        .call()
+                        .chatResponse();
+            } finally {
+                metrics.recordModelCall("step" + stepNumber, System.nanoTime() - start, response);
+            }
+            context.recordModelCall(response);
+            return response.getResult().getOutput().getText();
+        }
+
+        StringBuilder content = new StringBuilder();
+        ChatResponse lastResponse = null;
+        try {
+            lastResponse = mcpChatClient.prompt()
+                    .user(promptText)
+                    .stream()
+                    .chatResponse()
+                    .doOnNext(response -> {
+                        if (response.getResult() != null && response.getResult().getOutput().getText() != null) {
+                            String token = response.getResult().getOutput().getText();
+                            content.append(token);
+                            context.listener.onToken(stepNumber, token);
+                        }
+                    })
+                    .blockLast();
+        } finally {
+            metrics.recordModelCall("step" + stepNumber, System.nanoTime() - start, lastResponse);
+        }
+        context.recordModelCall(lastResponse);
+        return content.toString();
+    }
+
     /**
      * 处理查询请求，返回5个步骤的结果
      */
     public Text2SqlStepResult processQueryWithSteps(String userQuery) {
-        log.info("开始处理步骤化 Text2SQL 查询: {}", userQuery);
+        return processQueryWithSteps(userQuery, properties.getPipeline().getMode(), Text2SqlStepListener.NONE);
+    }
 
-        // 步骤1: 问题改写
-        Text2SqlStepResult.StepResult step1 = executeStep1(userQuery);
-        if (step1.isError()) {
-            return Text2SqlStepResult.create(step1, null, null, null, null);
+    /**
+     * 按指定模式处理查询请求，每个步骤结束时通知监听器，返回5个步骤的结果
+     */
+    public Text2SqlStepResult processQueryWithSteps(String userQuery, Text2SqlProperties.PipelineMode mode,
+                                                    Text2SqlStepListener listener) {
+        return processQueryWithSteps(userQuery, mode, properties.getExecution().getResultFormat(), listener);
+    }
+
+    /**
+     * 按指定模式处理查询请求，步骤5的结果以指定格式返回
+     * 不需要逐步推送进度时，同时到达的相同问题合并为一次处理；推送进度时被限流拒绝的步骤在结果中带有 reason
+     *
+     * @throws LlmOverloadedException 不推送进度且有步骤的大模型调用被限流拒绝时抛出，
+     *                                等待合并结果的相同请求不接收这个异常，而是自行重新处理
+     */
+    public Text2SqlStepResult processQueryWithSteps(String userQuery, Text2SqlProperties.PipelineMode mode,
+                                                    Text2SqlProperties.ResultFormat format,
+                                                    Text2SqlStepListener listener) {
+        long start = System.nanoTime();
+        Text2SqlStepResult result;
+        try {
+            result = listener == Text2SqlStepListener.NONE
+                    ? stepQueryCoalescer.execute(format + ":" + stepResultCache.key(mode.name(), userQuery), () -> {
+                        Text2SqlStepResult processed = doProcessQueryWithSteps(userQuery, mode, format, listener);
+                        processed.throwIfOverloaded();
+                        return processed;
+                    })
+                    : doProcessQueryWithSteps(userQuery, mode, format, listener);
+        } catch (LlmOverloadedException e) {
+            metrics.recordRequest("steps", System.nanoTime() - start, false);
+            throw e;
+        }
+        metrics.recordRequest("steps", System.nanoTime() - start,
+                result.getStep5SqlExecution() != null && !result.getStep5SqlExecution().isError());
+        return result;
+    }
+
+    private Text2SqlStepResult doProcessQueryWithSteps(String userQuery, Text2SqlProperties.PipelineMode mode,
+                                                       Text2SqlProperties.ResultFormat format,
+                                                       Text2SqlStepListener listener) {
+        log.info("开始处理步骤化 Text2SQL 查询({}): {}", mode, userQuery);
+        StepContext context = new StepContext(listener, format);
+
+        // 相同模式下的相同问题复用步骤1-4的结果，只需重新执行SQL
+        List<Text2SqlStepResult.StepResult> cachedSteps = stepResultCache.get(mode.name(), userQuery);
+        if (cachedSteps != null) {
+            for (int i = 0; i < cachedSteps.size(); i++) {
+                notify(context, i + 1, cachedSteps.get(i));
+            }
+            Text2SqlStepResult.StepResult step5 = notify(context, 5,
+                    executeStep5(cachedSteps.get(3).getContent(), context));
+            return context.complete(mode, attachSession(Text2SqlStepResult.create(cachedSteps.get(0),
+                    cachedSteps.get(1), cachedSteps.get(2), cachedSteps.get(3), step5)));
+        }
+
+        Text2SqlStepResult result = mode == Text2SqlProperties.PipelineMode.SINGLE_CALL
+                ? runSingleCall(userQuery, context)
+                : runSteps(userQuery, context);
+
+        if (result.getStep5SqlExecution() != null && !result.getStep5SqlExecution().isError()) {
+            stepResultCache.put(mode.name(), userQuery, List.of(result.getStep1ProblemRewriting(), result.getStep2TableSelection(),
+                    result.getStep3InformationInference(), result.getStep4SqlGeneration()));
+        }
+        return context.complete(mode, attachSession(result));
+    }
+
+    /**
+     * 步骤5执行成功时为步骤4生成的 SQL 创建结果会话
+     */
+    private Text2SqlStepResult attachSession(Text2SqlStepResult result) {
+        Text2SqlStepResult.StepResult step5 = result.getStep5SqlExecution();
+        if (step5 != null && !step5.isError()) {
+            String sql = extractSqlFromContent(result.getStep4SqlGeneration().getContent());
+            List<String> columns = List.of();
+            if (step5.getColumnar() != null) {
+                columns = step5.getColumnar().getColumns().stream().map(ColumnarResult.Column::getName).toList();
+            } else if (step5.getData() != null && !step5.getData().isEmpty()) {
+                columns = List.copyOf(step5.getData().get(0).keySet());
+            }
+            result.setSessionId(resultSessionService.create(sql, columns));
+        }
+        return result;
+    }
+
+    /**
+     * 不使用缓存，分别以5次调用和单次调用模式处理同一查询，对比耗时和 token 消耗
+     */
+    public Map<String, Text2SqlStepResult> compareModes(String userQuery) {
+        Map<String, Text2SqlStepResult> results = new LinkedHashMap<>();
+        for (Text2SqlProperties.PipelineMode mode : Text2SqlProperties.PipelineMode.values()) {
+            StepContext context = new StepContext(Text2SqlStepListener.NONE,
+                    properties.getExecution().getResultFormat());
+            Text2SqlStepResult result = mode == Text2SqlProperties.PipelineMode.SINGLE_CALL
+                    ? runSingleCall(userQuery, context)
+                    : runSteps(userQuery, context);
+            results.put(mode.name(), context.complete(mode, result));
+        }
+        return results;
+    }
+
+    /**
+     * 5次调用模式：每个步骤单独调用一次模型
+     * <p>
+     * 步骤按依赖关系组成一个小型 DAG 并发执行：与表无关的业务规则分析和步骤2并行；
+     * 开启推测选表时，步骤2基于原始问题与步骤1同时开始，步骤1判定为非数据库查询时取消。
+     */
+    private Text2SqlStepResult runSteps(String userQuery, StepContext context) {
+        StepGraph graph = stepGraphExecutor.newGraph();
+        try {
+            // 步骤1: 问题改写
+            StepGraph.Node<Text2SqlStepResult.StepResult> step1Node =
+                    graph.node("step1", () -> executeStep1(userQuery, context));
+            StepGraph.Node<Text2SqlStepResult.StepResult> speculativeStep2Node =
+                    properties.getPipeline().isSpeculativeTableSelection()
+                            ? graph.node("step2", () -> executeStep2(userQuery, context))
+                            : null;
+
+            Text2SqlStepResult.StepResult step1 = step1Node.join();
+            if (step1.isError()) {
+                graph.cancelAll();
+                return Text2SqlStepResult.create(notify(context, 1, step1), null, null, null, null);
+            }
+
+            // 检查步骤1是否判断为数据库查询
+            if (isNonDatabaseQuery(step1.getContent())) {
+                graph.cancelAll();
+                // 将步骤1标记为失败
+                Text2SqlStepResult.StepResult failedStep1 = Text2SqlStepResult.StepResult.error(NON_DATABASE_QUERY_MSG);
+                return Text2SqlStepResult.create(notify(context, 1, failedStep1), null, null, null, null);
+            }
+            notify(context, 1, step1);
+
+            // 步骤2: 数据表选取，与表无关的业务规则分析同时进行
+            StepGraph.Node<Text2SqlStepResult.StepResult> step2Node = speculativeStep2Node != null
+                    ? speculativeStep2Node
+                    : graph.node("step2", List.of(step1Node), () -> executeStep2(step1.getContent(), context));
+            StepGraph.Node<QueryRuleAnalysis> rulesNode =
+                    graph.node("businessRules", List.of(step1Node), () -> analyzeQueryRules(step1.getContent()));
+
+            Text2SqlStepResult.StepResult step2 = notify(context, 2, step2Node.join());
+            if (step2.isError()) {
+                return Text2SqlStepResult.create(step1, step2, null, null, null);
+            }
+
+            // 步骤3: 信息推理
+            Text2SqlStepResult.StepResult step3 = notify(context, 3, graph.node("step3", List.of(step2Node, rulesNode),
+                    () -> executeStep3(step1.getContent(), step2.getContent(), rulesNode.join(), context)).join());
+            if (step3.isError()) {
+                return Text2SqlStepResult.create(step1, step2, step3, null, null);
+            }
+
+            // 步骤4: SQL生成
+            Text2SqlStepResult.StepResult step4 = notify(context, 4, graph.node("step4",
+                    () -> executeStep4(step1.getContent(), step2.getContent(), step3.getContent(), context)).join());
+            if (step4.isError()) {
+                return Text2SqlStepResult.create(step1, step2, step3, step4, null);
+            }
+
+            // 步骤5: SQL执行
+            Text2SqlStepResult.StepResult step5 = notify(context, 5,
+                    graph.node("step5", () -> executeStep5(step4.getContent(), context)).join());
+
+            return Text2SqlStepResult.create(step1, step2, step3, step4, step5);
+        } finally {
+            graph.cancelAll();
+            context.recordTimings(graph.getTimings());
         }
+    }
 
-        // 检查步骤1是否判断为数据库查询
-        if (isNonDatabaseQuery(step1.getContent())) {
-            // 将步骤1标记为失败
-            Text2SqlStepResult.StepResult failedStep1 = Text2SqlStepResult.StepResult.error(
-                    "非数据库查询，请输入与数据库相关的问题");
-            return Text2SqlStepResult.create(failedStep1, null, null, null, null);
+    /**
+     * 单次调用模式：一次结构化输出得到步骤1-4的结果，再在本地执行步骤5
+     * <p>
+     * 与问题相关的表结构直接注入提示词，不再触发工具调用；各步骤的错误语义与5次调用模式一致。
+     */
+    private Text2SqlStepResult runSingleCall(String userQuery, StepContext context) {
+        SingleCallOutput output;
+        try {
+            String promptText = new PromptTemplate(SINGLE_CALL_PROMPT).create(Map.of(
+                    "schema", schemaRetriever.retrieveSchema(userQuery),
+                    "businessRules", generateBusinessRules(userQuery, null),
+                    "userQuery", userQuery)).getContents();
+            long start = System.nanoTime();
+            ResponseEntity<ChatResponse, SingleCallOutput> response = null;
+            try {
+                response = chatClient.prompt()
+                        .user(promptText)
+                        .call()
+                        .responseEntity(SingleCallOutput.class);
+            } finally {
+                metrics.recordModelCall("single_call", System.nanoTime() - start,
+                        response != null ? response.response() : null);
+            }
+            context.recordModelCall(response.response());
+            output = response.entity();
+        } catch (Exception e) {
+            log.error("单次调用模式执行失败", e);
+            return Text2SqlStepResult.create(notify(context, 1, stepError(e)),
+                    null, null, null, null);
+        }
+
+        // 步骤1: 问题改写
+        if (output == null || !output.isDatabaseQuery() || isBlank(output.getRewrittenQuery())) {
+            Text2SqlStepResult.StepResult failedStep1 = Text2SqlStepResult.StepResult.error(NON_DATABASE_QUERY_MSG);
+            return Text2SqlStepResult.create(notify(context, 1, failedStep1), null, null, null, null);
         }
+        Text2SqlStepResult.StepResult step1 = notify(context, 1,
+                Text2SqlStepResult.StepResult.success("问题改写，改写为：" + output.getRewrittenQuery()));
 
         // 步骤2: 数据表选取
-        Text2SqlStepResult.StepResult step2 = executeStep2(step1.getContent());
-        if (step2.isError()) {
-            return Text2SqlStepResult.create(step1, step2, null, null, null);
+        if (output.getSelectedTables() == null || output.getSelectedTables().isEmpty()) {
+            return Text2SqlStepResult.create(step1,
+                    notify(context, 2, Text2SqlStepResult.StepResult.error("未能选取相关数据表")), null, null, null);
         }
+        Text2SqlStepResult.StepResult step2 = notify(context, 2, Text2SqlStepResult.StepResult.success(
+                "数据表选取，选择表为：" + String.join(", ", output.getSelectedTables())));
 
         // 步骤3: 信息推理
-        Text2SqlStepResult.StepResult step3 = executeStep3(step1.getContent(), step2.getContent());
-        if (step3.isError()) {
-            return Text2SqlStepResult.create(step1, step2, step3, null, null);
+        if (isBlank(output.getInference())) {
+            return Text2SqlStepResult.create(step1, step2,
+                    notify(context, 3, Text2SqlStepResult.StepResult.error("未能完成信息推理")), null, null);
         }
+        Text2SqlStepResult.StepResult step3 = notify(context, 3, Text2SqlStepResult.StepResult.success(
+                "信息推理，本次推理参考业务信息是：\n\n" + output.getInference()));
 
         // 步骤4: SQL生成
-        Text2SqlStepResult.StepResult step4 = executeStep4(step1.getContent(), step2.getContent(),
-                step3.getContent());
-        if (step4.isError()) {
-            return Text2SqlStepResult.create(step1, step2, step3, step4, null);
+        if (isBlank(output.getSql())) {
+            return Text2SqlStepResult.create(step1, step2, step3,
+                    notify(context, 4, Text2SqlStepResult.StepResult.error(SQL_EXTRACTION_FAILED)), null);
         }
+        String step4Content = "查询SQL生成，生成SQL查询语句为：\n\n```sql\n" + output.getSql().trim() + "\n```"
+                + (isBlank(output.getSqlComment()) ? "" : "\n\n**SQL智能注释**\n" + output.getSqlComment());
+        Text2SqlStepResult.StepResult step4 = notify(context, 4, Text2SqlStepResult.StepResult.success(step4Content));
 
         // 步骤5: SQL执行
-        Text2SqlStepResult.StepResult step5 = executeStep5(step4.getContent());
+        Text2SqlStepResult.StepResult step5 = notify(context, 5, executeStep5(step4.getContent(), context));
 
         return Text2SqlStepResult.create(step1, step2, step3, step4, step5);
+    }
 
+    private Text2SqlStepResult.StepResult notify(StepContext context, int stepNumber,
+                                                 Text2SqlStepResult.StepResult result) {
+        context.listener.onStepCompleted(stepNumber, result);
+        return result;
     }
 
     /**
@@ -281,34 +600,59 @@ public class StepBasedText2SqlService {
     /**
      * 执行步骤1: 问题改写
      */
-    private Text2SqlStepResult.StepResult executeStep1(String userQuery) {
-        return executeStep(1, STEP1_PROMPT, Map.of("userQuery", userQuery));
+    private Text2SqlStepResult.StepResult executeStep1(String userQuery, StepContext context) {
+        return executeStep(1, STEP1_PROMPT, Map.of(
+                "userQuery", userQuery,
+                "schema", schemaRetriever.retrieveSchema(userQuery)), context);
     }
 
     /**
      * 执行步骤2: 数据表选取
+     * 本地选表置信度足够时直接采用，否则调用大模型
      */
-    private Text2SqlStepResult.StepResult executeStep2(String rewrittenQuery) {
-        return executeStep(2, STEP2_PROMPT, Map.of("rewrittenQuery", rewrittenQuery));
+    private Text2SqlStepResult.StepResult executeStep2(String rewrittenQuery, StepContext context) {
+        if (properties.getTableSelection().isLocalEnabled()) {
+            long start = System.nanoTime();
+            LocalTableSelector.Selection selection = localTableSelector.select(rewrittenQuery);
+            localTableSelector.recordOutcome(selection.isConfident());
+            if (selection.isConfident()) {
+                metrics.recordStep(2, System.nanoTime() - start, true);
+                return Text2SqlStepResult.StepResult.success(
+                        "数据表选取，选择表为：" + String.join(", ", selection.getTables()));
+            }
+            log.debug("本地选表置信度不足 ({})，回退到大模型", String.format("%.2f", selection.getConfidence()));
+        }
+        return executeStep(2, STEP2_PROMPT, Map.of(
+                "rewrittenQuery", rewrittenQuery,
+                "schema", schemaRetriever.retrieveSchema(rewrittenQuery)), context);
     }
 
     /**
      * 执行步骤3: 信息推理
+     * 与表无关的规则分析已在选表期间完成，这里只补充与选中表相关的规则
      */
-    private Text2SqlStepResult.StepResult executeStep3(String rewrittenQuery, String selectedTables) {
+    private Text2SqlStepResult.StepResult executeStep3(String rewrittenQuery, String selectedTables,
+                                                       QueryRuleAnalysis analysis, StepContext context) {
         // 生成业务规则参考信息
-        String businessRules = generateBusinessRules(rewrittenQuery, selectedTables);
+        String businessRules = generateBusinessRules(rewrittenQuery, selectedTables, analysis);
         
         return executeStep(3, STEP3_PROMPT,
                 Map.of("rewrittenQuery", rewrittenQuery, 
                        "selectedTables", selectedTables,
-                       "businessRules", businessRules));
+                       "businessRules", businessRules), context);
     }
-    
+
     /**
      * 生成业务规则参考信息
      */
-    private String generateBusinessRules(String query, String selectedTables) {
+    String generateBusinessRules(String query, String selectedTables) {
+        return generateBusinessRules(query, selectedTables, analyzeQueryRules(query));
+    }
+
+    /**
+     * 分析只依赖查询本身的业务规则（时间、业务逻辑、聚合方式），可以在选表之前完成
+     */
+    private QueryRuleAnalysis analyzeQueryRules(String query) {
         StringBuilder rules = new StringBuilder();
         
         // 时间推理 - 简化输出
@@ -318,7 +662,7 @@ public class StepBasedText2SqlService {
         }
         
         // 业务逻辑推理 - 简化输出
-        String businessLogic = businessRuleService.getBusinessLogic(query, selectedTables);
+        String businessLogic = businessRuleService.getBusinessLogic(query, null);
         if (!businessLogic.isEmpty()) {
             // 提取关键信息，去掉"推理:"等前缀
             String simplifiedLogic = businessLogic.replaceAll("(时间推理|状态推理|排序推理|分组推理|限制推理): ", "").trim();
@@ -326,6 +670,22 @@ public class StepBasedText2SqlService {
                 rules.append("业务规则: ").append(simplifiedLogic).append("; ");
             }
         }
+
+        // 聚合规则推理 - 简化输出
+        String aggregation = "";
+        String aggregationRule = businessRuleService.getAggregationRule(query, null);
+        if (!aggregationRule.isEmpty() && !aggregationRule.contains("未指定指标")) {
+            aggregation = "聚合方式: " + aggregationRule + "; ";
+        }
+
+        return new QueryRuleAnalysis(rules.toString(), aggregation);
+    }
+
+    /**
+     * 结合选中的表生成业务规则参考信息
+     */
+    private String generateBusinessRules(String query, String selectedTables, QueryRuleAnalysis analysis) {
+        StringBuilder rules = new StringBuilder(analysis.queryRules);
         
         // 字段需求推理 - 简化输出
         if (selectedTables != null && !selectedTables.isEmpty()) {
@@ -354,10 +714,7 @@ public class StepBasedText2SqlService {
         }
         
         // 聚合规则推理 - 简化输出
-        String aggregationRule = businessRuleService.getAggregationRule(query, selectedTables);
-        if (!aggregationRule.isEmpty() && !aggregationRule.contains("未指定指标")) {
-            rules.append("聚合方式: ").append(aggregationRule).append("; ");
-        }
+        rules.append(analysis.aggregationRule);
         
         String result = rules.toString().trim();
         // 去掉最后的分号
@@ -372,36 +729,138 @@ public class StepBasedText2SqlService {
      * 执行步骤4: SQL生成
      */
     private Text2SqlStepResult.StepResult executeStep4(String rewrittenQuery, String selectedTables,
-                                                       String inferenceResult) {
+                                                       String inferenceResult, StepContext context) {
         Map<String, Object> variables = Map.of(
                 "rewrittenQuery", rewrittenQuery,
                 "selectedTables", selectedTables,
-                "inferenceResult", inferenceResult
+                "inferenceResult", inferenceResult,
+                "schema", schemaRetriever.retrieveSchema(rewrittenQuery, parseSelectedTables(selectedTables))
         );
-        return executeStep(4, STEP4_PROMPT, variables);
+        Text2SqlStepResult.StepResult step4 = executeStep(4, STEP4_PROMPT, variables, context);
+
+        // 执行计划代价超出阈值时，带着计划摘要重新生成，步骤5仍会再次检查
+        for (int i = 0; i < queryCostGate.maxRegenerations() && !step4.isError(); i++) {
+            String sql = extractSqlFromContent(step4.getContent());
+            if (sql == null || !SqlSafetyValidator.validate(sql).isSafe()) {
+                break;
+            }
+            QueryPlan plan = evaluatePlan(sql, context);
+            if (plan == null || !plan.isRejected()) {
+                break;
+            }
+            log.info("步骤4生成的 SQL 执行代价超出阈值，第 {} 次重新生成", i + 1);
+            Map<String, Object> retryVariables = new LinkedHashMap<>(variables);
+            retryVariables.put("costFeedback", queryCostGate.regenerationFeedback(sql, plan));
+            step4 = executeStep(4, STEP4_PROMPT + STEP4_COST_FEEDBACK, retryVariables, context);
+        }
+        return step4;
+    }
+
+    /**
+     * 估算 SQL 的执行计划，同一请求中相同的 SQL 只估算一次
+     */
+    private QueryPlan evaluatePlan(String sql, StepContext context) {
+        if (!sql.equals(context.plannedSql)) {
+            context.plan = queryCostGate.evaluate(sql);
+            context.plannedSql = sql;
+        }
+        return context.plan;
     }
 
     /**
      * 执行步骤5: SQL执行
      */
-    private Text2SqlStepResult.StepResult executeStep5(String sqlContent) {
+    private Text2SqlStepResult.StepResult executeStep5(String sqlContent, StepContext context) {
         // 从步骤4的内容中提取SQL语句
         String sql = extractSqlFromContent(sqlContent);
         if (sql == null || sql.trim().isEmpty()) {
             throw new IllegalArgumentException(SQL_EXTRACTION_FAILED);
         }
 
-        if (!isSqlSafe(sql)) {
-            throw new IllegalArgumentException(SQL_UNSAFE_MSG);
+        SqlSafetyValidator.Verdict verdict = SqlSafetyValidator.validate(sql);
+        if (!verdict.isSafe()) {
+            metrics.recordSafetyRejection(verdict);
+            throw new IllegalArgumentException(SQL_UNSAFE_MSG + "：" + verdict.getReason());
+        }
+
+        QueryPlan plan = evaluatePlan(sql, context);
+        if (plan != null && plan.isRejected()) {
+            return Text2SqlStepResult.StepResult.error(SQL_COST_EXCEEDED_MSG + "：" + plan.getSummary());
         }
 
-        return executeStep(5, STEP5_PROMPT, Map.of("sqlQuery", sql));
+        if (properties.getExecution().getMode() == Text2SqlProperties.ExecutionMode.TOOL) {
+            return executeStep(5, STEP5_PROMPT, Map.of("sqlQuery", sql), context);
+        }
+
+        long start = System.nanoTime();
+        try {
+            log.debug("执行步骤5: {}", sql);
+            Text2SqlStepResult.StepResult result;
+            if (context.format == Text2SqlProperties.ResultFormat.COLUMNAR) {
+                ColumnarResult columnar = databaseTool.executeQueryColumnar(sql);
+                result = Text2SqlStepResult.StepResult.success(renderExecutionResult(columnar), columnar);
+            } else {
+                List<Map<String, Object>> rows = databaseTool.executeQuery(sql);
+                result = Text2SqlStepResult.StepResult.success(renderExecutionResult(rows), rows);
+            }
+            metrics.recordStep(5, System.nanoTime() - start, true);
+            return result;
+        } catch (DataAccessException e) {
+            log.error("步骤5执行失败", e);
+            metrics.recordStep(5, System.nanoTime() - start, false);
+            return Text2SqlStepResult.StepResult.error("执行失败，" + e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /**
+     * 将查询结果渲染为步骤5的展示内容：记录数 + Markdown 表格
+     */
+    static String renderExecutionResult(List<Map<String, Object>> rows) {
+        List<String> columns = rows.isEmpty() ? List.of() : List.copyOf(rows.get(0).keySet());
+        return renderExecutionResult(rows.size(), columns, (row, column) -> rows.get(row).get(columns.get(column)));
+    }
+
+    /**
+     * 将列式查询结果渲染为步骤5的展示内容
+     */
+    static String renderExecutionResult(ColumnarResult result) {
+        List<String> columns = result.getColumns().stream().map(ColumnarResult.Column::getName).toList();
+        return renderExecutionResult(result.getRowCount(), columns, result::getValue);
+    }
+
+    private static String renderExecutionResult(int rowCount, List<String> columns, CellReader cells) {
+        StringBuilder content = new StringBuilder();
+        content.append("执行成功，找到 ").append(rowCount).append(" 条记录\n\n");
+        if (rowCount == 0) {
+            return content.append("无查询结果").toString();
+        }
+
+        content.append('|');
+        for (String column : columns) {
+            content.append(' ').append(escapeMarkdownCell(column)).append(" |");
+        }
+        content.append("\n|");
+        content.append("---------|".repeat(columns.size()));
+        for (int row = 0; row < rowCount; row++) {
+            content.append("\n|");
+            for (int column = 0; column < columns.size(); column++) {
+                content.append(' ').append(escapeMarkdownCell(cells.get(row, column))).append(" |");
+            }
+        }
+        return content.toString();
+    }
+
+    private static String escapeMarkdownCell(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        return value.toString().replace("|", "\\|").replace("\r", " ").replace("\n", " ");
     }
 
     /**
      * 从内容中提取SQL语句
      */
-    private String extractSqlFromContent(String content) {
+    static String extractSqlFromContent(String content) {
         if (content == null || content.trim().isEmpty()) {
             log.warn("内容为空，无法提取SQL语句");
             return null;
@@ -426,4 +885,140 @@ public class StepBasedText2SqlService {
             return null;
         }
     }
+
+    /**
+     * 从步骤2的结果"数据表选取，选择表为：表名1, 表名2"中解析表名
+     */
+    static Set<String> parseSelectedTables(String selectedTables) {
+        Set<String> tables = new LinkedHashSet<>();
+        if (selectedTables == null) {
+            return tables;
+        }
+        String list = selectedTables.substring(selectedTables.lastIndexOf('：') + 1);
+        for (String table : TABLE_LIST_SEPARATOR.split(list.trim())) {
+            if (!table.isEmpty()) {
+                tables.add(table);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * 把步骤异常转换为错误结果，大模型调用被限流拒绝时保留拒绝原因
+     */
+    private static Text2SqlStepResult.StepResult stepError(Exception e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof LlmOverloadedException overloaded) {
+                return Text2SqlStepResult.StepResult.overloaded(overloaded);
+            }
+        }
+        return Text2SqlStepResult.StepResult.error(e.getMessage());
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * 单次请求的执行上下文：进度监听器以及模型调用次数、token 消耗和耗时统计
+     */
+    private static class StepContext {
+        private final Text2SqlStepListener listener;
+        private final Text2SqlProperties.ResultFormat format;
+        private final long startNanos = System.nanoTime();
+        private final AtomicInteger modelCalls = new AtomicInteger();
+        private final AtomicLong totalTokens = new AtomicLong();
+        private final Map<String, Long> stepTimings = new ConcurrentHashMap<>();
+
+        // 最近一次估算执行计划的 SQL 及其结果
+        private volatile String plannedSql;
+        private volatile QueryPlan plan;
+
+        private StepContext(Text2SqlStepListener listener, Text2SqlProperties.ResultFormat format) {
+            this.listener = listener;
+            this.format = format;
+        }
+
+        private void recordModelCall(ChatResponse response) {
+            modelCalls.incrementAndGet();
+            if (response != null && response.getMetadata() != null && response.getMetadata().getUsage() != null) {
+                Integer tokens = response.getMetadata().getUsage().getTotalTokens();
+                if (tokens != null) {
+                    totalTokens.addAndGet(tokens);
+                }
+            }
+        }
+
+        private void recordTimings(Map<String, Long> timings) {
+            stepTimings.putAll(timings);
+        }
+
+        private Text2SqlStepResult complete(Text2SqlProperties.PipelineMode mode, Text2SqlStepResult result) {
+            result.setMode(mode.name());
+            result.setTotalMillis((System.nanoTime() - startNanos) / 1_000_000);
+            result.setModelCalls(modelCalls.get());
+            result.setTotalTokens(totalTokens.get());
+            result.setStepTimings(stepTimings.isEmpty() ? null : new TreeMap<>(stepTimings));
+            result.setPlan(plan);
+            return result;
+        }
+    }
+
+    /**
+     * 按行列下标读取单元格，使按行和列式结果共用同一套渲染逻辑
+     */
+    @FunctionalInterface
+    private interface CellReader {
+        Object get(int row, int column);
+    }
+
+    /**
+     * 与表无关的业务规则分析结果
+     */
+    private static class QueryRuleAnalysis {
+        private final String queryRules;
+        private final String aggregationRule;
+
+        private QueryRuleAnalysis(String queryRules, String aggregationRule) {
+            this.queryRules = queryRules;
+            this.aggregationRule = aggregationRule;
+        }
+    }
+
+    /**
+     * 单次调用模式的结构化输出
+     */
+    @Data
+    @NoArgsConstructor
+    public static class SingleCallOutput {
+        /**
+         * 是否为与现有表相关的数据库查询
+         */
+        private boolean databaseQuery;
+
+        /**
+         * 改写后的查询描述
+         */
+        private String rewrittenQuery;
+
+        /**
+         * 选中的表名
+         */
+        private List<String> selectedTables;
+
+        /**
+         * 信息推理结果，每行一个要点
+         */
+        private String inference;
+
+        /**
+         * 生成的 SELECT 语句
+         */
+        private String sql;
+
+        /**
+         * SQL 智能注释
+         */
+        private String sqlComment;
+    }
 }
@@ -0,0 +1,134 @@
+package com.example.text2sql.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 单次请求内的步骤依赖图
+ * 每个节点在其依赖节点全部完成后提交到有界线程池执行，并记录各节点耗时
+ */
+public class StepGraph {
+
+    private final Executor executor;
+    private final List<Node<?>> nodes = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> timings = new ConcurrentHashMap<>();
+
+    StepGraph(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 添加没有依赖的节点，立即开始执行
+     */
+    public <T> Node<T> node(String name, Supplier<T> task) {
+        return node(name, List.of(), task);
+    }
+
+    /**
+     * 添加节点，在所有依赖节点完成后开始执行
+     */
+    public <T> Node<T> node(String name, List<Node<?>> dependencies, Supplier<T> task) {
+        Node<T> node = new Node<>(name, task);
+        CompletableFuture<?>[] upstream = dependencies.stream()
+                .map(dependency -> dependency.future)
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(upstream).whenComplete((ignored, error) -> {
+            if (error != null) {
+                node.future.completeExceptionally(error);
+            } else if (!node.future.isDone()) {
+                executor.execute(node::run);
+            }
+        });
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * 取消所有尚未完成的节点，正在执行的节点会被中断
+     */
+    public void cancelAll() {
+        nodes.forEach(Node::cancel);
+    }
+
+    /**
+     * 各节点耗时（毫秒），只包含已执行完成的节点
+     */
+    public Map<String, Long> getTimings() {
+        return Map.copyOf(timings);
+    }
+
+    /**
+     * 图中的一个步骤节点
+     */
+    public class Node<T> {
+        private final String name;
+        private final Supplier<T> task;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private Thread runner;
+        private boolean cancelled;
+
+        private Node(String name, Supplier<T> task) {
+            this.name = name;
+            this.task = task;
+        }
+
+        /**
+         * 等待节点完成并返回结果，节点抛出的运行时异常原样抛出
+         */
+        public T join() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * 取消节点：未开始的不再执行，正在执行的被中断
+         */
+        public void cancel() {
+            synchronized (this) {
+                if (future.isDone()) {
+                    return;
+                }
+                cancelled = true;
+                if (runner != null) {
+                    runner.interrupt();
+                }
+            }
+            future.completeExceptionally(new CancellationException("步骤 " + name + " 已取消"));
+        }
+
+        private void run() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            long start = System.nanoTime();
+            try {
+                future.complete(task.get());
+                timings.put(name, (System.nanoTime() - start) / 1_000_000);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    // 清除取消时设置的中断标记，避免影响线程池中的下一个任务
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+}
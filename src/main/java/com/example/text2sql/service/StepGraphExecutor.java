@@ -0,0 +1,46 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 步骤依赖图的有界执行线程池
+ * 不注册为 Executor Bean，避免影响 Spring Boot 默认的 applicationTaskExecutor
+ */
+@Slf4j
+@Component
+public class StepGraphExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor pool;
+
+    public StepGraphExecutor(Text2SqlProperties properties) {
+        Text2SqlProperties.Pipeline config = properties.getPipeline();
+        this.pool = new ThreadPoolExecutor(config.getThreads(), config.getThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                new CustomizableThreadFactory("step-graph-"),
+                // 队列满时由提交线程直接执行，起到背压作用
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 为一次请求创建新的步骤依赖图
+     */
+    public StepGraph newGraph() {
+        // 步骤在线程池中执行时沿用请求的大模型调用方
+        return new StepGraph(task -> pool.execute(LlmCaller.wrap(task)));
+    }
+
+    @Override
+    public void destroy() {
+        log.info("关闭步骤执行线程池");
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.util.SqlSafetyValidator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Text2SQL 监控指标
+ * 统一定义各环节的指标名称和标签，通过 /actuator/prometheus 暴露。
+ * 耗时类指标的直方图由 management.metrics.distribution.percentiles-histogram.text2sql 开启。
+ */
+@Component
+@RequiredArgsConstructor
+public class Text2SqlMetrics {
+
+    public static final String REQUEST_DURATION = "text2sql.request.duration";
+    public static final String STEP_DURATION = "text2sql.step.duration";
+    public static final String LLM_DURATION = "text2sql.llm.duration";
+    public static final String LLM_TOKENS = "text2sql.llm.tokens";
+    public static final String TOOL_DURATION = "text2sql.tool.duration";
+    public static final String SQL_DURATION = "text2sql.sql.duration";
+    public static final String SQL_ROWS = "text2sql.sql.rows";
+    public static final String SQL_REJECTED = "text2sql.sql.rejected";
+    public static final String SQL_GUARD = "text2sql.sql.guard";
+    public static final String LLM_ROUTE = "text2sql.llm.route";
+    public static final String LLM_SHED = "text2sql.llm.limiter.rejected";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 记录一次完整请求的耗时
+     *
+     * @param api 入口，query 或 steps
+     */
+    public void recordRequest(String api, long nanos, boolean success) {
+        Timer.builder(REQUEST_DURATION)
+                .description("Text2SQL 请求总耗时")
+                .tag("api", api)
+                .tag("outcome", outcome(success))
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录步骤化查询中一个步骤的耗时
+     */
+    public void recordStep(int stepNumber, long nanos, boolean success) {
+        Timer.builder(STEP_DURATION)
+                .description("步骤化查询各步骤耗时")
+                .tag("step", String.valueOf(stepNumber))
+                .tag("outcome", outcome(success))
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次大模型调用的耗时和 token 用量，response 为 null 表示调用失败
+     *
+     * @param operation 调用用途，例如 step1、single_call
+     */
+    public void recordModelCall(String operation, long nanos, ChatResponse response) {
+        Timer.builder(LLM_DURATION)
+                .description("大模型调用耗时，包含模型发起的工具调用")
+                .tag("operation", operation)
+                .tag("outcome", outcome(response != null))
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+
+        if (response == null || response.getMetadata() == null || response.getMetadata().getUsage() == null) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        recordTokens(operation, "prompt", usage.getPromptTokens());
+        recordTokens(operation, "completion", usage.getCompletionTokens());
+    }
+
+    /**
+     * 执行并记录一次工具调用的耗时
+     */
+    public <T> T recordTool(String tool, Supplier<T> invocation) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = invocation.get();
+            success = true;
+            return result;
+        } finally {
+            Timer.builder(TOOL_DURATION)
+                    .description("数据库工具调用耗时")
+                    .tag("tool", tool)
+                    .tag("outcome", outcome(success))
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 记录一次 SQL 执行的耗时，成功时同时记录结果行数
+     *
+     * @param mode 读取方式，buffered 为整体加载，stream 为逐行流式读取
+     */
+    public void recordSqlExecution(String mode, long nanos, long rows, boolean success) {
+        Timer.builder(SQL_DURATION)
+                .description("SQL 执行耗时")
+                .tag("mode", mode)
+                .tag("outcome", outcome(success))
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (success) {
+            DistributionSummary.builder(SQL_ROWS)
+                    .description("SQL 结果行数")
+                    .baseUnit("rows")
+                    .tag("mode", mode)
+                    .register(meterRegistry)
+                    .record(rows);
+        }
+    }
+
+    /**
+     * 记录一次未通过安全校验的 SQL
+     */
+    public void recordSafetyRejection(SqlSafetyValidator.Verdict verdict) {
+        Counter.builder(SQL_REJECTED)
+                .description("未通过安全校验的 SQL 数量")
+                .tag("reason", verdict.getCategory())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录一次执行防护动作
+     *
+     * @param action limit_injected、limit_clamped、timeout、memory_exceeded 或 cost_rejected
+     */
+    public void recordGuard(String action) {
+        Counter.builder(SQL_GUARD)
+                .description("执行防护改写 LIMIT、中止或拒绝查询的次数")
+                .tag("action", action)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录一次多端点路由中单个端点的调用结果
+     *
+     * @param result success、error、hedged（发出对冲请求）或 cancelled（对冲中落后被取消）
+     */
+    public void recordLlmRoute(String endpoint, String result) {
+        Counter.builder(LLM_ROUTE)
+                .description("多端点路由中各端点的调用次数")
+                .tag("endpoint", endpoint)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录一次被限流拒绝的大模型调用
+     *
+     * @param reason   concurrency 或 budget
+     * @param priority interactive 或 batch
+     */
+    public void recordLlmShed(String reason, String priority) {
+        Counter.builder(LLM_SHED)
+                .description("被限流拒绝的大模型调用数")
+                .tag("reason", reason)
+                .tag("priority", priority)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void recordTokens(String operation, String type, Integer tokens) {
+        if (tokens == null || tokens <= 0) {
+            return;
+        }
+        Counter.builder(LLM_TOKENS)
+                .description("大模型 token 消耗")
+                .baseUnit("tokens")
+                .tag("operation", operation)
+                .tag("type", type)
+                .register(meterRegistry)
+                .increment(tokens);
+    }
+
+    private static String outcome(boolean success) {
+        return success ? "success" : "error";
+    }
+}
@@ -17,13 +17,80 @@ public class Text2SqlResult {
     private boolean success;
     private String sql;
     private List<Map<String, Object>> data;
+
+    /**
+     * 列式结果，以列式格式返回时代替 data
+     */
+    private ColumnarResult columnar;
+
     private String error;
 
+    /**
+     * SQL 生成耗时（毫秒）
+     */
+    private Long generationMillis;
+
+    /**
+     * SQL 执行耗时（毫秒）
+     */
+    private Long executionMillis;
+
+    /**
+     * 结果会话 id，用于不经过大模型翻页，未创建会话时为 null
+     */
+    private String sessionId;
+
+    /**
+     * 执行计划摘要，SQL 因代价超出阈值被拒绝时可据此查看原因
+     */
+    private QueryPlan plan;
+
     public static Text2SqlResult success(String sql, List<Map<String, Object>> data) {
-        return new Text2SqlResult(true, sql, data, null);
+        return new Text2SqlResult(true, sql, data, null, null, null, null, null, null);
+    }
+
+    public static Text2SqlResult success(String sql, ColumnarResult columnar) {
+        return new Text2SqlResult(true, sql, null, columnar, null, null, null, null, null);
     }
 
     public static Text2SqlResult error(String error) {
-        return new Text2SqlResult(false, null, null, error);
+        return new Text2SqlResult(false, null, null, null, error, null, null, null, null);
+    }
+
+    /**
+     * 结果行数
+     */
+    public int rowCount() {
+        return columnar != null ? columnar.getRowCount() : data.size();
+    }
+
+    /**
+     * 结果的列名，按行的结果为空时无法得到列名，返回空列表
+     */
+    public List<String> columnNames() {
+        if (columnar != null) {
+            return columnar.getColumns().stream().map(ColumnarResult.Column::getName).toList();
+        }
+        return data.isEmpty() ? List.of() : List.copyOf(data.get(0).keySet());
+    }
+
+    /**
+     * 转换为列式结果，返回新对象，不修改当前结果
+     */
+    public Text2SqlResult toColumnar() {
+        if (!success || columnar != null) {
+            return this;
+        }
+        return new Text2SqlResult(true, sql, null, ColumnarResult.fromRows(data), null,
+                generationMillis, executionMillis, sessionId, plan);
+    }
+
+    /**
+     * 附加各阶段耗时
+     */
+    public Text2SqlResult withTimings(long generationMillis, long executionMillis) {
+        this.generationMillis = generationMillis;
+        this.executionMillis = executionMillis;
+        return this;
     }
 }
\ No newline at end of file
@@ -1,5 +1,31 @@
 package com.example.text2sql.service;
 
+import com.example.text2sql.config.Text2SqlProperties;
+
 public interface Text2SqlService {
     Text2SqlResult processQuery(String userQuery);
+
+    /**
+     * 处理查询并以指定格式返回结果，默认实现在按行查询后转换格式
+     */
+    default Text2SqlResult processQuery(String userQuery, Text2SqlProperties.ResultFormat format) {
+        Text2SqlResult result = processQuery(userQuery);
+        return format == Text2SqlProperties.ResultFormat.COLUMNAR ? result.toColumnar() : result;
+    }
+
+    /**
+     * 只生成并校验 SQL，不执行查询
+     *
+     * @param userQuery 用户自然语言查询
+     * @return 通过安全校验的 SQL
+     * @throws IllegalArgumentException 无法生成 SQL 或 SQL 不安全时抛出
+     */
+    String prepareSql(String userQuery);
+
+    /**
+     * 以指定格式执行已通过 {@link #prepareSql} 校验的 SQL
+     *
+     * @throws org.springframework.dao.DataAccessException 执行失败时抛出
+     */
+    Text2SqlResult executeSql(String sql, Text2SqlProperties.ResultFormat format);
 }
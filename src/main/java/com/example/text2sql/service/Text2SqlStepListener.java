@@ -0,0 +1,33 @@
+package com.example.text2sql.service;
+
+/**
+ * 步骤化 Text2SQL 的进度监听器
+ * 用于在整个流程结束前把已完成的步骤和模型输出的 token 推送给调用方
+ */
+public interface Text2SqlStepListener {
+
+    /**
+     * 不关心进度的默认监听器
+     */
+    Text2SqlStepListener NONE = new Text2SqlStepListener() {
+    };
+
+    /**
+     * 是否需要逐 token 接收模型输出，为 true 时步骤使用流式调用
+     */
+    default boolean isTokenStreaming() {
+        return false;
+    }
+
+    /**
+     * 模型输出了新的 token
+     */
+    default void onToken(int stepNumber, String token) {
+    }
+
+    /**
+     * 某个步骤执行结束
+     */
+    default void onStepCompleted(int stepNumber, Text2SqlStepResult.StepResult result) {
+    }
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+import java.util.Map;
 
 /**
  * Text2SQL 步骤化结果封装类
@@ -38,6 +40,41 @@ public class Text2SqlStepResult {
      */
     private StepResult step5SqlExecution;
 
+    /**
+     * 处理模式 (STEPS, SINGLE_CALL)
+     */
+    private String mode;
+
+    /**
+     * 端到端耗时（毫秒）
+     */
+    private Long totalMillis;
+
+    /**
+     * 模型调用次数
+     */
+    private Integer modelCalls;
+
+    /**
+     * 模型返回的 token 消耗总数，模型未返回用量时为 0
+     */
+    private Long totalTokens;
+
+    /**
+     * 各步骤节点耗时（毫秒）
+     */
+    private Map<String, Long> stepTimings;
+
+    /**
+     * 结果会话 id，用于不经过大模型翻页，步骤5未成功时为 null
+     */
+    private String sessionId;
+
+    /**
+     * 步骤5执行前估算的执行计划摘要，未启用代价检查或 EXPLAIN 失败时为 null
+     */
+    private QueryPlan plan;
+
     /**
      * 单个步骤结果
      */
@@ -58,6 +95,21 @@ public class Text2SqlStepResult {
          */
         private String status;
 
+        /**
+         * 结构化的查询结果行，仅步骤5在本地执行 SQL 时填充
+         */
+        private List<Map<String, Object>> data;
+
+        /**
+         * 列式查询结果，以列式格式返回时代替 data
+         */
+        private ColumnarResult columnar;
+
+        /**
+         * 错误原因：大模型调用被限流拒绝时为 concurrency 或 budget，其他情况为 null
+         */
+        private String reason;
+
         /**
          * 判断步骤是否完成
          */
@@ -69,9 +121,26 @@ public class Text2SqlStepResult {
          * 创建成功的步骤结果
          */
         public static Text2SqlStepResult.StepResult success(String content) {
+            return success(content, (List<Map<String, Object>>) null);
+        }
+
+        /**
+         * 创建带结构化结果行的成功步骤结果
+         */
+        public static Text2SqlStepResult.StepResult success(String content, List<Map<String, Object>> data) {
             Text2SqlStepResult.StepResult stepResult = new Text2SqlStepResult.StepResult();
             stepResult.setContent(content != null ? content.trim() : "");
             stepResult.setStatus(SUCCESS_STATUS);
+            stepResult.setData(data);
+            return stepResult;
+        }
+
+        /**
+         * 创建带列式结果的成功步骤结果
+         */
+        public static Text2SqlStepResult.StepResult success(String content, ColumnarResult columnar) {
+            Text2SqlStepResult.StepResult stepResult = success(content);
+            stepResult.setColumnar(columnar);
             return stepResult;
         }
 
@@ -84,6 +153,40 @@ public class Text2SqlStepResult {
             stepResult.setStatus(ERROR_STATUS);
             return stepResult;
         }
+
+        /**
+         * 创建大模型调用被限流拒绝的步骤结果
+         */
+        public static Text2SqlStepResult.StepResult overloaded(LlmOverloadedException e) {
+            Text2SqlStepResult.StepResult stepResult = error(e.getMessage());
+            stepResult.setReason(e.getReason());
+            return stepResult;
+        }
+    }
+
+    /**
+     * 查找第一个因大模型调用被限流拒绝而失败的步骤，没有时返回 null
+     */
+    public StepResult findOverloadedStep() {
+        for (StepResult step : new StepResult[]{step1ProblemRewriting, step2TableSelection,
+                step3InformationInference, step4SqlGeneration, step5SqlExecution}) {
+            if (step != null && step.isError() && step.getReason() != null) {
+                return step;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 有步骤因大模型调用被限流拒绝而失败时抛出对应的异常，由接口层返回 429
+     *
+     * @throws LlmOverloadedException 有步骤被限流拒绝时抛出
+     */
+    public void throwIfOverloaded() {
+        StepResult step = findOverloadedStep();
+        if (step != null) {
+            throw new LlmOverloadedException(step.getReason(), step.getContent());
+        }
     }
 
     /**
@@ -0,0 +1,180 @@
+package com.example.text2sql.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick 多模式匹配器
+ * <p>
+ * 构建后不可变，可在多线程间共享。一次扫描即可找出文本中所有关键字的全部出现位置（包括相互重叠的），
+ * 扫描耗时只与文本长度和命中次数有关，与关键字数量无关。
+ */
+public final class AhoCorasickMatcher {
+
+    // 每个状态的出边按字符排序，匹配时二分查找
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    // 在该状态结束的关键字，没有则为 null
+    private final String[] keywords;
+    // 沿失败链最近的、有关键字结束的状态，没有则为 -1
+    private final int[] outputLinks;
+
+    private AhoCorasickMatcher(Collection<String> dictionary) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<String> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminal.add(null);
+        for (String keyword : dictionary) {
+            if (keyword == null || keyword.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                Integer next = trie.get(state).get(keyword.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    terminal.add(null);
+                    trie.get(state).put(keyword.charAt(i), next);
+                }
+                state = next;
+            }
+            terminal.set(state, keyword);
+        }
+
+        int size = trie.size();
+        edgeChars = new char[size][];
+        edgeTargets = new int[size][];
+        fail = new int[size];
+        keywords = terminal.toArray(new String[0]);
+        outputLinks = new int[size];
+        for (int state = 0; state < size; state++) {
+            TreeMap<Character, Integer> edges = trie.get(state);
+            edgeChars[state] = new char[edges.size()];
+            edgeTargets[state] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                edgeChars[state][i] = edge.getKey();
+                edgeTargets[state][i++] = edge.getValue();
+            }
+        }
+
+        // 按广度优先计算失败指针和输出链接
+        outputLinks[0] = -1;
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[0]) {
+            fail[child] = 0;
+            outputLinks[child] = -1;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < edgeChars[state].length; i++) {
+                char c = edgeChars[state][i];
+                int child = edgeTargets[state][i];
+                int f = fail[state];
+                int next;
+                while ((next = transition(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next < 0 ? 0 : next;
+                outputLinks[child] = keywords[fail[child]] != null ? fail[child] : outputLinks[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * 基于关键字集合构建匹配器
+     */
+    public static AhoCorasickMatcher of(Collection<String> keywords) {
+        return new AhoCorasickMatcher(keywords);
+    }
+
+    /**
+     * 扫描文本，按结束位置顺序回调每一次命中
+     */
+    public void scan(CharSequence text, MatchHandler handler) {
+        if (text == null) {
+            return;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = transition(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = next < 0 ? 0 : next;
+            for (int s = keywords[state] != null ? state : outputLinks[state]; s >= 0; s = outputLinks[s]) {
+                String keyword = keywords[s];
+                handler.onMatch(i + 1 - keyword.length(), i + 1, keyword);
+            }
+        }
+    }
+
+    /**
+     * 返回文本中所有命中，按结束位置排序
+     */
+    public List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        scan(text, (start, end, keyword) -> matches.add(new Match(start, end, keyword)));
+        return matches;
+    }
+
+    /**
+     * 返回文本中出现过的关键字
+     */
+    public Set<String> findKeywords(CharSequence text) {
+        Set<String> found = new HashSet<>();
+        scan(text, (start, end, keyword) -> found.add(keyword));
+        return found;
+    }
+
+    private int transition(int state, char c) {
+        char[] chars = edgeChars[state];
+        int low = 0;
+        int high = chars.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (chars[mid] < c) {
+                low = mid + 1;
+            } else if (chars[mid] > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[state][mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 命中回调，区间为 [start, end)
+     */
+    @FunctionalInterface
+    public interface MatchHandler {
+        void onMatch(int start, int end, String keyword);
+    }
+
+    /**
+     * 一次命中，区间为 [start, end)
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Match {
+        private final int start;
+        private final int end;
+        private final String keyword;
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.text2sql.util;
+
+import lombok.Getter;
+
+/**
+ * 单条 SELECT 语句的顶层子句信息
+ * <p>
+ * 只识别最外层（括号深度为 0）的 ORDER BY 和末尾的 LIMIT 子句，子查询、窗口函数、字符串字面量、
+ * 反引号标识符、块注释和行注释中的内容都会被跳过。调用方应先通过 {@link SqlSafetyValidator} 校验 SQL。
+ */
+@Getter
+public final class SelectStatement {
+
+    /**
+     * 原始语句
+     */
+    private final String sql;
+
+    /**
+     * 去掉顶层 LIMIT 子句和末尾分号后的语句
+     */
+    private final String body;
+
+    /**
+     * 顶层是否有 ORDER BY
+     */
+    private final boolean ordered;
+
+    /**
+     * 顶层 LIMIT 的行数，没有 LIMIT 时为 null
+     */
+    private final Long limit;
+
+    /**
+     * 顶层 LIMIT 的偏移量，没有时为 0
+     */
+    private final long offset;
+
+    private SelectStatement(String sql, String body, boolean ordered, Long limit, long offset) {
+        this.sql = sql;
+        this.body = body;
+        this.ordered = ordered;
+        this.limit = limit;
+        this.offset = offset;
+    }
+
+    /**
+     * 解析 SQL 的顶层子句
+     *
+     * @throws IllegalArgumentException LIMIT 子句不是 "LIMIT n"、"LIMIT m, n" 或 "LIMIT n OFFSET m" 形式时抛出
+     */
+    public static SelectStatement parse(String sql) {
+        int length = sql.length();
+        int depth = 0;
+        boolean ordered = false;
+        int limitStart = -1;
+        int previousWordStart = -1;
+        int previousWordEnd = -1;
+        // 最后一个有效内容之后的位置，末尾的空白、分号和注释不计入
+        int end = 0;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            int commentEnd = skipComment(sql, i);
+            if (commentEnd > i) {
+                i = commentEnd;
+                continue;
+            }
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i, c, length);
+            } else if (c == '(') {
+                depth++;
+                i++;
+            } else if (c == ')') {
+                depth--;
+                i++;
+            } else if (isWordChar(c)) {
+                int start = i;
+                while (i < length && isWordChar(sql.charAt(i))) {
+                    i++;
+                }
+                if (depth == 0) {
+                    if (matches(sql, start, i, "BY") && previousWordStart >= 0
+                            && matches(sql, previousWordStart, previousWordEnd, "ORDER")) {
+                        ordered = true;
+                    } else if (matches(sql, start, i, "LIMIT")) {
+                        limitStart = start;
+                    }
+                    previousWordStart = start;
+                    previousWordEnd = i;
+                }
+            } else {
+                i++;
+                if (Character.isWhitespace(c) || c == ';') {
+                    continue;
+                }
+            }
+            end = i;
+        }
+
+        if (limitStart < 0) {
+            return new SelectStatement(sql, sql.substring(0, end), ordered, null, 0);
+        }
+
+        // LIMIT n / LIMIT m, n / LIMIT n OFFSET m
+        String clause = stripComments(sql, limitStart + "LIMIT".length(), end);
+        String[] parts = clause.trim().split("\\s*,\\s*|\\s+");
+        try {
+            long limit;
+            long offset = 0;
+            if (parts.length == 1) {
+                limit = Long.parseLong(parts[0]);
+            } else if (parts.length == 2) {
+                offset = Long.parseLong(parts[0]);
+                limit = Long.parseLong(parts[1]);
+            } else if (parts.length == 3 && parts[1].equalsIgnoreCase("OFFSET")) {
+                limit = Long.parseLong(parts[0]);
+                offset = Long.parseLong(parts[2]);
+            } else {
+                throw new NumberFormatException();
+            }
+            return new SelectStatement(sql, sql.substring(0, limitStart).trim(), ordered, limit, offset);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无法识别的 LIMIT 子句: " + sql.substring(limitStart, end));
+        }
+    }
+
+    /**
+     * 在语句末尾加上新的 LIMIT 子句
+     */
+    public String withLimit(long limit, long offset) {
+        return body + "\nLIMIT " + limit + (offset > 0 ? " OFFSET " + offset : "");
+    }
+
+    /**
+     * 返回最多 maxRows 行的语句：没有顶层 LIMIT 时追加，顶层 LIMIT 更大时收紧并保留偏移量，否则原样返回。
+     * 子查询中的 LIMIT 不决定最终返回的行数，不做修改。
+     */
+    public String limitTo(long maxRows) {
+        if (limit != null && limit <= maxRows) {
+            return sql;
+        }
+        return withLimit(maxRows, offset);
+    }
+
+    /**
+     * 跳过从 start 开始的注释：块注释、"#" 行注释和后跟空白的 "--" 行注释（与 MySQL 一致），
+     * 返回注释之后的位置，start 处不是注释时返回 start
+     */
+    private static int skipComment(String sql, int start) {
+        char c = sql.charAt(start);
+        char next = start + 1 < sql.length() ? sql.charAt(start + 1) : 0;
+        if (c == '/' && next == '*') {
+            int close = sql.indexOf("*/", start + 2);
+            return close < 0 ? sql.length() : close + 2;
+        }
+        if (c == '#' || (c == '-' && next == '-'
+                && (start + 2 >= sql.length() || Character.isWhitespace(sql.charAt(start + 2))))) {
+            int newline = sql.indexOf('\n', start);
+            return newline < 0 ? sql.length() : newline + 1;
+        }
+        return start;
+    }
+
+    /**
+     * 取出 [start, end) 之间的内容，注释替换为空格
+     */
+    private static String stripComments(String sql, int start, int end) {
+        StringBuilder result = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            int commentEnd = skipComment(sql, i);
+            if (commentEnd > i) {
+                result.append(' ');
+                i = commentEnd;
+            } else {
+                result.append(sql.charAt(i++));
+            }
+        }
+        return result.toString();
+    }
+
+    private static int skipQuoted(String sql, int start, char quote, int end) {
+        int i = start + 1;
+        while (i < end) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < end && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return end;
+    }
+
+    private static boolean matches(String sql, int start, int end, String word) {
+        return end - start == word.length() && sql.regionMatches(true, start, word, 0, word.length());
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.text2sql.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并：相同键的并发请求共享同一次计算
+ * <p>
+ * 第一个到达的请求在自己的线程中执行计算，计算期间到达的相同请求等待并获得同一个结果（或同一个异常）；
+ * 计算结束后立即移除，之后的请求重新计算，因此不会返回过期结果。
+ * <p>
+ * 等待最多 maxWait，超时后等待的请求自行计算。执行计算的请求被取消、中断，
+ * 或因只属于它自己的原因（例如调用方预算用完）失败时，等待的请求不接收这个异常，而是重新计算。
+ *
+ * @param <V> 计算结果类型
+ */
+public class SingleFlight<V> {
+
+    private static final Duration DEFAULT_MAX_WAIT = Duration.ofMinutes(2);
+
+    private final String name;
+    private final Duration maxWait;
+    private final Predicate<Throwable> callerSpecific;
+    private final ConcurrentHashMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public SingleFlight(String name) {
+        this(name, DEFAULT_MAX_WAIT, e -> false);
+    }
+
+    /**
+     * @param maxWait        等待相同键计算结果的最长时间
+     * @param callerSpecific 判断异常是否只与执行计算的请求有关，这类异常不传给等待的请求
+     */
+    public SingleFlight(String name, Duration maxWait, Predicate<Throwable> callerSpecific) {
+        this.name = name;
+        this.maxWait = maxWait;
+        this.callerSpecific = callerSpecific;
+    }
+
+    /**
+     * 执行计算，相同键已有计算在进行时等待其结果
+     *
+     * @throws CancellationException 等待期间当前线程被中断时抛出，线程的中断状态会被保留
+     */
+    public V execute(String key, Supplier<V> supplier) {
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        while (true) {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+            if (existing == null) {
+                return compute(key, created, supplier);
+            }
+
+            coalesced.incrementAndGet();
+            try {
+                return existing.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("等待相同请求的计算结果时被中断");
+            } catch (TimeoutException e) {
+                // 执行计算的请求迟迟没有结束，不再等待，自行计算
+                executions.incrementAndGet();
+                return supplier.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (!isCallerSpecific(cause)) {
+                    throw rethrow(cause, e);
+                }
+                // 执行计算的请求自己的失败，重新竞争执行计算
+            } catch (CancellationException e) {
+                // 执行计算的请求已被取消，重新竞争执行计算
+            }
+            // 已结束的计算可能还没来得及移除，直接移除避免再次等到它
+            inFlight.remove(key, existing);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * 合并统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("inFlight", inFlight.size());
+        stats.put("executions", executions.get());
+        stats.put("coalesced", coalesced.get());
+        return stats;
+    }
+
+    private V compute(String key, CompletableFuture<V> created, Supplier<V> supplier) {
+        executions.incrementAndGet();
+        try {
+            V value = supplier.get();
+            if (Thread.currentThread().isInterrupted()) {
+                // 执行计算的请求已被取消，结果可能不完整，等待的请求重新计算
+                created.completeExceptionally(new CancellationException("执行计算的请求已被取消"));
+            } else {
+                created.complete(value);
+            }
+            return value;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private boolean isCallerSpecific(Throwable cause) {
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof CancellationException || t instanceof InterruptedException || callerSpecific.test(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static RuntimeException rethrow(Throwable cause, ExecutionException e) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause != null ? cause : e);
+    }
+}
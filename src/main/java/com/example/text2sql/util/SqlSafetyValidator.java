@@ -0,0 +1,225 @@
+package com.example.text2sql.util;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 基于词法分析的 SQL 安全校验
+ * <p>
+ * 一次扫描完成全部检查，只对真实的关键字和标识符做判断：字符串字面量、反引号标识符和块注释中的内容不会被误判，
+ * {@code update_time}、{@code created_by} 这类列名也不会命中危险关键字。
+ * 扫描过程中不创建子串，只有校验失败时才拼接错误信息。
+ */
+public final class SqlSafetyValidator {
+
+    // 危险操作黑名单，仅匹配完整的关键字
+    private static final String[] DANGEROUS_KEYWORDS = {
+        "DROP", "DELETE", "UPDATE", "INSERT", "ALTER", "CREATE",
+        "TRUNCATE", "EXEC", "EXECUTE", "CALL", "MERGE", "REPLACE",
+        "UNION", "INFORMATION_SCHEMA"
+    };
+
+    // 系统库黑名单，作为 "库名." 限定符出现时拦截
+    private static final String[] SYSTEM_TABLES = {
+        "information_schema", "mysql", "performance_schema",
+        "sys", "test", "tmp"
+    };
+
+    private static final Verdict SAFE = new Verdict(true, "safe", "SQL语句安全");
+    private static final Verdict EMPTY = new Verdict(false, "empty", "SQL语句不能为空");
+    private static final Verdict NOT_SELECT = new Verdict(false, "not_select", "只允许执行SELECT查询语句");
+    private static final Verdict INJECTION = new Verdict(false, "injection", "检测到SQL注入攻击模式");
+    private static final Verdict MULTIPLE_STATEMENTS = new Verdict(false, "multiple_statements", "只允许执行单条SQL语句");
+    private static final Verdict UNTERMINATED = new Verdict(false, "unterminated", "SQL语句存在未闭合的字符串、标识符或注释");
+
+    private static final int WORD = 1;
+    private static final int LITERAL = 2;
+    private static final int IDENTIFIER = 3;
+    private static final int SYMBOL = 4;
+
+    private SqlSafetyValidator() {
+    }
+
+    /**
+     * 校验 SQL 安全性，返回包含失败原因的校验结果
+     */
+    public static Verdict validate(String sql) {
+        if (sql == null) {
+            return EMPTY;
+        }
+
+        int length = sql.length();
+        int tokenCount = 0;
+        boolean statementEnded = false;
+        // 最近三个 token 的类型和位置，用于识别 OR 1=1 这类恒真条件
+        int kind1 = 0, start1 = 0, end1 = 0;
+        int kind2 = 0, start2 = 0, end2 = 0;
+        int kind3 = 0, start3 = 0, end3 = 0;
+
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            int start = i;
+            int kind;
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(sql, i, c);
+                kind = LITERAL;
+            } else if (c == '`') {
+                i = skipQuoted(sql, i, c);
+                kind = IDENTIFIER;
+            } else if (c == '#' || (c == '-' && charAt(sql, i + 1) == '-')) {
+                // 行注释会截断后续条件，是典型的注入手法
+                return INJECTION;
+            } else if (c == '/' && charAt(sql, i + 1) == '*') {
+                // MySQL 会执行 /*! ... */ 中的内容
+                if (charAt(sql, i + 2) == '!') {
+                    return INJECTION;
+                }
+                int end = sql.indexOf("*/", i + 2);
+                if (end < 0) {
+                    return UNTERMINATED;
+                }
+                i = end + 2;
+                continue;
+            } else if (isWordChar(c)) {
+                while (i < length && isWordChar(sql.charAt(i))) {
+                    i++;
+                }
+                kind = Character.isDigit(c) ? LITERAL : WORD;
+            } else {
+                i++;
+                kind = SYMBOL;
+            }
+            if (i < 0) {
+                return UNTERMINATED;
+            }
+
+            if (tokenCount++ == 0 && !(kind == WORD && matches(sql, start, i, "SELECT"))) {
+                return NOT_SELECT;
+            }
+
+            if (kind == WORD) {
+                String keyword = dangerousKeyword(sql, start, i);
+                if (keyword != null) {
+                    return new Verdict(false, "dangerous_operation", "检测到危险操作: " + keyword);
+                }
+            }
+
+            if ((kind == WORD || kind == IDENTIFIER) && nextNonWhitespace(sql, i) == '.') {
+                String systemTable = kind == WORD
+                        ? systemTable(sql, start, i)
+                        : systemTable(sql, start + 1, i - 1);
+                if (systemTable != null) {
+                    return new Verdict(false, "system_table", "禁止访问系统表: " + systemTable);
+                }
+            }
+
+            if (statementEnded) {
+                return MULTIPLE_STATEMENTS;
+            }
+
+            // OR/AND 后跟 "字面量 = 相同字面量" 视为恒真条件
+            if (kind == LITERAL && kind1 == SYMBOL && sql.charAt(start1) == '=' && kind2 == LITERAL
+                    && kind3 == WORD && (matches(sql, start3, end3, "OR") || matches(sql, start3, end3, "AND"))
+                    && i - start == end2 - start2 && sql.regionMatches(true, start, sql, start2, i - start)) {
+                return INJECTION;
+            }
+
+            if (kind == SYMBOL && c == ';') {
+                statementEnded = true;
+            }
+
+            kind3 = kind2; start3 = start2; end3 = end2;
+            kind2 = kind1; start2 = start1; end2 = end1;
+            kind1 = kind; start1 = start; end1 = i;
+        }
+
+        return tokenCount == 0 ? EMPTY : SAFE;
+    }
+
+    /**
+     * 返回引号后的位置，引号未闭合时返回 -1
+     * 字符串支持反斜杠转义和双写引号，反引号标识符只支持双写
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i += 2;
+            } else if (c == quote) {
+                if (charAt(sql, i + 1) != quote) {
+                    return i + 1;
+                }
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static String dangerousKeyword(String sql, int start, int end) {
+        for (String keyword : DANGEROUS_KEYWORDS) {
+            if (matches(sql, start, end, keyword)) {
+                // REPLACE(...) 和 INSERT(...) 是字符串函数
+                if ((keyword.equals("REPLACE") || keyword.equals("INSERT")) && nextNonWhitespace(sql, end) == '(') {
+                    return null;
+                }
+                return keyword;
+            }
+        }
+        return null;
+    }
+
+    private static String systemTable(String sql, int start, int end) {
+        for (String systemTable : SYSTEM_TABLES) {
+            if (matches(sql, start, end, systemTable)) {
+                return systemTable;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(String sql, int start, int end, String word) {
+        return end - start == word.length() && sql.regionMatches(true, start, word, 0, word.length());
+    }
+
+    private static char nextNonWhitespace(String sql, int from) {
+        for (int i = from; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private static char charAt(String sql, int index) {
+        return index < sql.length() ? sql.charAt(index) : 0;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * 校验结果
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Verdict {
+        private final boolean safe;
+        /**
+         * 稳定的分类标识，用于监控指标标签
+         */
+        private final String category;
+        private final String reason;
+    }
+}
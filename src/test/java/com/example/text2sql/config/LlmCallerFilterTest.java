@@ -0,0 +1,52 @@
+package com.example.text2sql.config;
+
+import com.example.text2sql.service.LlmCaller;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LlmCallerFilterTest {
+
+    private final Text2SqlProperties properties = new Text2SqlProperties();
+
+    @Test
+    public void testHeaderIgnoredFromUntrustedClient() throws Exception {
+        // 客户端自行设置的请求头不能换来新的预算
+        assertEquals("ip:203.0.113.7", callerOf("203.0.113.7", "tenant-a"));
+        assertEquals("ip:203.0.113.7", callerOf("203.0.113.7", null));
+    }
+
+    @Test
+    public void testHeaderTrustedFromGateway() throws Exception {
+        properties.getLimiter().setTrustedProxies(List.of("10.0.0.5"));
+        assertEquals("tenant-a", callerOf("10.0.0.5", "tenant-a"));
+        assertEquals("ip:10.0.0.5", callerOf("10.0.0.5", " "));
+        assertEquals("ip:203.0.113.7", callerOf("203.0.113.7", "tenant-a"));
+        assertSame(LlmCaller.ANONYMOUS, LlmCaller.current());
+    }
+
+    private String callerOf(String remoteAddr, String header) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/query");
+        request.setRemoteAddr(remoteAddr);
+        if (header != null) {
+            request.addHeader("X-Caller-Id", header);
+        }
+        AtomicReference<LlmCaller> caller = new AtomicReference<>();
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse res) {
+                caller.set(LlmCaller.current());
+            }
+        };
+        new LlmCallerFilter(properties).doFilter(request, new MockHttpServletResponse(), chain);
+        return caller.get().getId();
+    }
+}
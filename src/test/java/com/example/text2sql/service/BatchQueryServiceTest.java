@@ -0,0 +1,102 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchQueryServiceTest {
+
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final Text2SqlMetrics metrics = new Text2SqlMetrics(registry);
+
+    private final SchemaSnapshot snapshot = new SchemaSnapshot(1, "test", Instant.now(), Map.of(), "");
+
+    private final DatabaseTool databaseTool = new DatabaseTool(null, metrics, null, null) {
+        @Override
+        public SchemaSnapshot getSnapshot() {
+            return snapshot;
+        }
+    };
+
+    @Test
+    public void testBatchWaitsForLimiterInsteadOfShedding() {
+        Text2SqlProperties properties = new Text2SqlProperties();
+        properties.getLimiter().setInitialLimit(8);
+        properties.getLimiter().setTokensPerMinute(0);
+        LlmConcurrencyLimiter limiter = new LlmConcurrencyLimiter(properties, metrics);
+        // 按初始上限分给批量请求 4 个许可，之后上限收紧到只剩 2 个批量份额
+        FakeText2SqlService text2SqlService = new FakeText2SqlService(limiter);
+        BatchQueryService batchQueryService = new BatchQueryService(text2SqlService, databaseTool,
+                metrics, new ObjectMapper(), limiter, properties);
+        while (limiter.getLimit() >= 6) {
+            limiter.acquire(LlmCaller.ANONYMOUS).release(LATENCY, true, 0);
+        }
+
+        try {
+            List<String> questions = IntStream.range(0, 20).mapToObj(i -> "问题" + i).toList();
+            List<BatchItemResult> items = new ArrayList<>();
+            BatchSummary summary = batchQueryService.process(questions, Text2SqlProperties.ResultFormat.ROWS,
+                    items::add);
+
+            assertEquals(20, summary.getSucceeded(), () -> items.stream()
+                    .filter(item -> !item.getResult().isSuccess())
+                    .map(item -> item.getResult().getError())
+                    .toList().toString());
+            assertTrue(registry.find(Text2SqlMetrics.LLM_SHED).counters().isEmpty());
+            assertEquals(2, text2SqlService.maxBatchInFlight.get());
+            assertEquals(0, limiter.getInFlight());
+        } finally {
+            batchQueryService.destroy();
+        }
+    }
+
+    /**
+     * 每次生成 SQL 像 ChatClient 一样申请一次限流许可，并记录批量调用的最大并发
+     */
+    private static class FakeText2SqlService implements Text2SqlService {
+        private final LlmConcurrencyLimiter limiter;
+        private final AtomicInteger maxBatchInFlight = new AtomicInteger();
+
+        FakeText2SqlService(LlmConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        @Override
+        public Text2SqlResult processQuery(String userQuery) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String prepareSql(String userQuery) {
+            LlmConcurrencyLimiter.Permit permit = limiter.acquire(LlmCaller.current());
+            try {
+                maxBatchInFlight.accumulateAndGet(limiter.getBatchInFlight(), Math::max);
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                permit.release(LATENCY, false, 0);
+            }
+            return "SELECT 1";
+        }
+
+        @Override
+        public Text2SqlResult executeSql(String sql, Text2SqlProperties.ResultFormat format) {
+            return Text2SqlResult.success(sql, List.of());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.text2sql.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BusinessRuleServiceTest {
+
+    private final BusinessRuleService businessRuleService = new BusinessRuleService();
+
+    @Test
+    public void testNormalizeQuestion() {
+        // 空白、标点和全角字符不影响结果
+        assertEquals(businessRuleService.normalizeQuestion("查询所有员工信息"),
+                businessRuleService.normalizeQuestion(" 查询 所有员工信息？ "));
+        assertEquals("查询前10名员工", businessRuleService.normalizeQuestion("查询前１０名员工！"));
+        assertEquals("abc", businessRuleService.normalizeQuestion("ＡＢＣ"));
+
+        // 同义词替换为标准术语，较长的同义词优先
+        assertEquals(businessRuleService.normalizeQuestion("各部门平均工资"),
+                businessRuleService.normalizeQuestion("各部门平均薪水"));
+        assertEquals("员工邮箱", businessRuleService.normalizeQuestion("员工邮箱地址"));
+
+        assertEquals("", businessRuleService.normalizeQuestion(null));
+    }
+
+    @Test
+    public void testNormalizeQuestionKeepsOperators() {
+        // 比较符号和小数点改变问题含义，不能被当作标点去除
+        assertNotEquals(businessRuleService.normalizeQuestion("工资>5000的员工"),
+                businessRuleService.normalizeQuestion("工资<5000的员工"));
+        assertNotEquals(businessRuleService.normalizeQuestion("工资>=5000的员工"),
+                businessRuleService.normalizeQuestion("工资=5000的员工"));
+        assertNotEquals(businessRuleService.normalizeQuestion("预算超过3.5万的部门"),
+                businessRuleService.normalizeQuestion("预算超过35万的部门"));
+        assertEquals("工资>5000的员工", businessRuleService.normalizeQuestion("工资 ＞ 5000 的员工。"));
+    }
+
+    @Test
+    public void testNormalizeQuestionKeepsDistinctValues() {
+        // 单词之间的空白和引号内的取值会区分不同的问题
+        assertNotEquals(businessRuleService.normalizeQuestion("查询员工 Li Na 的工资"),
+                businessRuleService.normalizeQuestion("查询员工 Lina 的工资"));
+        assertNotEquals(businessRuleService.normalizeQuestion("姓名为\"张 三\"的员工"),
+                businessRuleService.normalizeQuestion("姓名为\"张三\"的员工"));
+        assertEquals("查询员工li na的工资", businessRuleService.normalizeQuestion("查询员工  Li   Na 的工资"));
+
+        // 引号样式统一，引号内的大小写和同义词不变
+        assertEquals(businessRuleService.normalizeQuestion("姓名为\"张三\"的员工"),
+                businessRuleService.normalizeQuestion("姓名为“张三”的员工"));
+        assertEquals("名为\"Ｌi 薪水\"的员工", businessRuleService.normalizeQuestion("名为 “Ｌi 薪水” 的员工"));
+    }
+
+    @Test
+    public void testRuleInference() {
+        // 相对时间表达式
+        assertTrue(businessRuleService.parseTimeExpression("最近3年入职的员工").startsWith("时间范围: "));
+        assertEquals("无法解析的时间表达式: 近年", businessRuleService.parseTimeExpression("近年"));
+
+        // 多个触发词命中时按规则顺序输出
+        assertEquals("排序推理: 需要添加ORDER BY子句进行排序\n限制推理: 需要添加LIMIT子句限制返回结果数量",
+                businessRuleService.getBusinessLogic("工资前5条", null));
+        assertEquals("需要name字段\n需要salary字段",
+                businessRuleService.getFieldRequirements("员工姓名和薪水", "employees"));
+        assertEquals("计数类指标，建议使用COUNT聚合函数", businessRuleService.getAggregationRule("部门人数", null));
+
+        // 同义词形式出现的业务术语
+        assertEquals(List.of("salary字段，使用decimal(10,2)类型存储"),
+                businessRuleService.findBusinessTermExplanations("薪资"));
+    }
+
+    @Test
+    public void testUpdateDictionary() {
+        long version = businessRuleService.getDictionary().getVersion();
+        assertEquals("平均月薪", businessRuleService.normalizeQuestion("平均月薪"));
+
+        // 新增同义词后整体替换词典快照
+        BusinessDictionary.Definition definition = BusinessDictionary.readDefault();
+        definition.getSynonyms().put("月薪", "工资");
+        businessRuleService.updateDictionary(definition);
+
+        assertTrue(businessRuleService.getDictionary().getVersion() > version);
+        assertEquals("平均工资", businessRuleService.normalizeQuestion("平均月薪"));
+        assertEquals("salary字段，使用decimal(10,2)类型存储", businessRuleService.getBusinessTermExplanation("月薪"));
+    }
+}
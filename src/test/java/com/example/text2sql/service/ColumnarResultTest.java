@@ -0,0 +1,51 @@
+package com.example.text2sql.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarResultTest {
+
+    @Test
+    public void testTypedColumns() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", (long) i);
+            row.put("score", i / 2.0);
+            row.put("salary", BigDecimal.valueOf(i, 2));
+            // 最后一行为 NULL，整数列退化为 Object[]
+            row.put("manager_id", i == 99 ? null : i);
+            rows.add(row);
+        }
+
+        ColumnarResult result = ColumnarResult.fromRows(rows);
+        assertEquals(100, result.getRowCount());
+        assertEquals("long", result.getColumns().get(0).getType());
+        assertEquals("decimal", result.getColumns().get(2).getType());
+        assertTrue(result.getValues().get(0) instanceof long[]);
+        assertTrue(result.getValues().get(1) instanceof double[]);
+        assertTrue(result.getValues().get(2) instanceof Object[]);
+        assertTrue(result.getValues().get(3) instanceof Object[]);
+        assertEquals(98L, result.getValue(98, 3));
+        assertNull(result.getValue(99, 3));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", 1L);
+        row.put("name", "张三");
+        row.put("email", null);
+        List<Map<String, Object>> rows = List.of(row);
+
+        assertEquals(rows, ColumnarResult.fromRows(rows).toRows());
+        assertEquals(0, ColumnarResult.fromRows(List.of()).getRowCount());
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LlmConcurrencyLimiterTest {
+
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final LlmCaller alice = new LlmCaller("alice", LlmCaller.Priority.INTERACTIVE);
+
+    private LlmConcurrencyLimiter createLimiter(int initialLimit, long tokensPerMinute) {
+        return createLimiter(initialLimit, tokensPerMinute, Duration.ofMillis(50));
+    }
+
+    private LlmConcurrencyLimiter createLimiter(int initialLimit, long tokensPerMinute, Duration batchMaxWait) {
+        Text2SqlProperties properties = new Text2SqlProperties();
+        properties.getLimiter().setInitialLimit(initialLimit);
+        properties.getLimiter().setTokensPerMinute(tokensPerMinute);
+        properties.getLimiter().setBatchMaxWait(batchMaxWait);
+        return new LlmConcurrencyLimiter(properties, new Text2SqlMetrics(registry));
+    }
+
+    @Test
+    public void testShedsWhenLimitReached() {
+        LlmConcurrencyLimiter limiter = createLimiter(2, 0);
+        LlmConcurrencyLimiter.Permit first = limiter.acquire(alice);
+        limiter.acquire(alice);
+
+        LlmOverloadedException e = assertThrows(LlmOverloadedException.class, () -> limiter.acquire(alice));
+        assertEquals(LlmConcurrencyLimiter.CONCURRENCY, e.getReason());
+        assertEquals(1, registry.get(Text2SqlMetrics.LLM_SHED)
+                .tag("reason", LlmConcurrencyLimiter.CONCURRENCY).counter().count());
+
+        // 释放后可以再次申请，重复释放不影响计数
+        first.release(LATENCY, false, 0);
+        first.release(LATENCY, false, 0);
+        assertEquals(1, limiter.getInFlight());
+        limiter.acquire(alice);
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    public void testBatchLeavesRoomForInteractive() {
+        LlmConcurrencyLimiter limiter = createLimiter(4, 0);
+        LlmCaller batch = alice.asBatch();
+        limiter.acquire(batch);
+        limiter.acquire(batch);
+
+        // 批量调用等待 batchMaxWait 后仍没有空出的许可才被拒绝
+        long start = System.nanoTime();
+        assertThrows(LlmOverloadedException.class, () -> limiter.acquire(batch));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+        limiter.acquire(alice);
+        limiter.acquire(alice);
+        assertEquals(2, limiter.getBatchInFlight());
+        assertEquals(4, limiter.getInFlight());
+    }
+
+    @Test
+    public void testBatchWaitsForPermitAndBudget() throws Exception {
+        LlmConcurrencyLimiter limiter = createLimiter(2, 600_000, Duration.ofSeconds(5));
+        LlmCaller batch = alice.asBatch();
+        LlmConcurrencyLimiter.Permit first = limiter.acquire(batch);
+
+        // 并发已满时批量调用等待许可释放
+        CompletableFuture<LlmConcurrencyLimiter.Permit> second =
+                CompletableFuture.supplyAsync(() -> limiter.acquire(batch));
+        Thread.sleep(50);
+        assertFalse(second.isDone());
+        first.release(LATENCY, false, 0);
+        second.get(5, TimeUnit.SECONDS).release(LATENCY, false, 610_000);
+
+        // 预算透支后交互调用立即被拒绝，批量调用等待预算补充（约 1 秒）
+        assertThrows(LlmOverloadedException.class, () -> limiter.acquire(alice));
+        limiter.acquire(batch).release(LATENCY, false, 0);
+        assertTrue(registry.find(Text2SqlMetrics.LLM_SHED).tag("priority", "batch").counters().isEmpty());
+    }
+
+    @Test
+    public void testLimitAdaptsToLoad() {
+        LlmConcurrencyLimiter limiter = createLimiter(10, 0);
+
+        // 遇到限流时乘性减小
+        limiter.acquire(alice).release(LATENCY, true, 0);
+        assertEquals(9, limiter.getLimit());
+
+        // 上限被用满且调用正常时加性增大
+        for (int round = 0; round < 5; round++) {
+            LlmConcurrencyLimiter.Permit[] permits = new LlmConcurrencyLimiter.Permit[limiter.getLimit()];
+            for (int i = 0; i < permits.length; i++) {
+                permits[i] = limiter.acquire(alice);
+            }
+            for (LlmConcurrencyLimiter.Permit permit : permits) {
+                permit.release(LATENCY, false, 0);
+            }
+        }
+        assertTrue(limiter.getLimit() >= 11, "limit = " + limiter.getLimit());
+
+        // 延迟突然升高说明模型服务开始排队
+        int before = limiter.getLimit();
+        limiter.acquire(alice).release(LATENCY * 10, false, 0);
+        assertTrue(limiter.getLimit() < before);
+    }
+
+    @Test
+    public void testTokenBudgetPerCaller() {
+        LlmConcurrencyLimiter limiter = createLimiter(8, 1000);
+        limiter.acquire(alice).release(LATENCY, false, 1500);
+
+        LlmOverloadedException e = assertThrows(LlmOverloadedException.class, () -> limiter.acquire(alice));
+        assertEquals(LlmConcurrencyLimiter.BUDGET, e.getReason());
+        // 其他调用方的预算不受影响
+        limiter.acquire(new LlmCaller("bob", LlmCaller.Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void testStreamHoldsPermitOnlyWhileSubscribed() {
+        LlmConcurrencyLimiter limiter = createLimiter(2, 0);
+        LlmLimiterAdvisor advisor = new LlmLimiterAdvisor(limiter);
+        ChatClientRequest request = new ChatClientRequest(new Prompt("各部门人数"), Map.of());
+
+        // 组装后没有订阅的流不占用许可
+        Flux<ChatClientResponse> pending = advisor.adviseStream(request, streamChain(Flux.never()));
+        assertEquals(0, limiter.getInFlight());
+
+        Disposable subscription = pending.subscribe();
+        assertEquals(1, limiter.getInFlight());
+        subscription.dispose();
+        assertEquals(0, limiter.getInFlight());
+
+        advisor.adviseStream(request, streamChain(Flux.empty())).blockLast();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private static StreamAdvisorChain streamChain(Flux<ChatClientResponse> responses) {
+        return new StreamAdvisorChain() {
+            @Override
+            public Flux<ChatClientResponse> nextStream(ChatClientRequest request) {
+                return responses;
+            }
+
+            @Override
+            public List<StreamAdvisor> getStreamAdvisors() {
+                return List.of();
+            }
+
+            @Override
+            public StreamAdvisorChain copy(StreamAdvisor after) {
+                return this;
+            }
+        };
+    }
+}
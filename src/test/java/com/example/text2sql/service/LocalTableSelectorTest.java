@@ -0,0 +1,74 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalTableSelectorTest {
+
+    private final SchemaSnapshot snapshot = SchemaIndexTest.snapshot();
+
+    private final DatabaseTool databaseTool = new DatabaseTool(null, null, null, null) {
+        @Override
+        public SchemaSnapshot getSnapshot() {
+            return snapshot;
+        }
+    };
+
+    private final Text2SqlProperties properties = new Text2SqlProperties();
+
+    private final LocalTableSelector localTableSelector = new LocalTableSelector(
+            new SchemaRetriever(databaseTool, new BusinessRuleService(), properties), databaseTool, properties);
+
+    @Test
+    public void testConfidentSelection() {
+        LocalTableSelector.Selection selection = localTableSelector.select("各部门预算");
+        assertEquals(List.of("departments"), selection.getTables());
+        assertTrue(selection.getConfidence() >= properties.getTableSelection().getMinConfidence());
+        assertTrue(selection.isConfident());
+    }
+
+    @Test
+    public void testMultipleTablesWithJoinTable() {
+        LocalTableSelector.Selection selection = localTableSelector.select("员工姓名和项目名称");
+        assertTrue(selection.getTables().containsAll(List.of("employees", "projects", "project_members")));
+        assertTrue(selection.isConfident());
+    }
+
+    @Test
+    public void testLowConfidenceFallsBackToModel() {
+        // "名称"同时匹配部门表和项目表，区分度不足
+        LocalTableSelector.Selection ambiguous = localTableSelector.select("名称");
+        assertTrue(ambiguous.getConfidence() < properties.getTableSelection().getMinConfidence());
+        assertFalse(ambiguous.isConfident());
+
+        // 提高阈值后，同样的选表结果也交给大模型
+        double confidence = localTableSelector.select("各部门预算").getConfidence();
+        properties.getTableSelection().setMinConfidence(confidence + 0.01);
+        LocalTableSelector.Selection selection = localTableSelector.select("各部门预算");
+        assertEquals(List.of("departments"), selection.getTables());
+        assertFalse(selection.isConfident());
+    }
+
+    @Test
+    public void testNoMatchingTable() {
+        LocalTableSelector.Selection selection = localTableSelector.select("weather");
+        assertTrue(selection.getTables().isEmpty());
+        assertEquals(0, selection.getConfidence());
+        assertFalse(selection.isConfident());
+    }
+
+    @Test
+    public void testFallbackRate() {
+        localTableSelector.recordOutcome(true);
+        localTableSelector.recordOutcome(true);
+        localTableSelector.recordOutcome(true);
+        localTableSelector.recordOutcome(false);
+        assertEquals(3L, localTableSelector.stats().get("localSelections"));
+        assertEquals(1L, localTableSelector.stats().get("modelFallbacks"));
+        assertEquals(0.25, localTableSelector.stats().get("fallbackRate"));
+    }
+}
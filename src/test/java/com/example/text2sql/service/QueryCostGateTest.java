@@ -0,0 +1,71 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryCostGateTest {
+
+    private final QueryCostGate costGate = new QueryCostGate(null, new ObjectMapper(), new Text2SqlProperties(),
+            new Text2SqlMetrics(new SimpleMeterRegistry()));
+
+    @Test
+    public void testCartesianJoinRejected() throws Exception {
+        // employees 与 project_members 之间缺少连接条件，通过 hash join 得到笛卡尔积
+        String explain = """
+                {"query_block": {"select_id": 1, "cost_info": {"query_cost": "250123.40"}, "nested_loop": [
+                  {"table": {"table_name": "e", "access_type": "ALL",
+                             "rows_examined_per_scan": 10000, "rows_produced_per_join": 10000}},
+                  {"table": {"table_name": "pm", "access_type": "ALL", "using_join_buffer": "hash join",
+                             "rows_examined_per_scan": 500, "rows_produced_per_join": 5000000}},
+                  {"table": {"table_name": "p", "access_type": "eq_ref", "key": "PRIMARY",
+                             "rows_examined_per_scan": 1, "rows_produced_per_join": 5000000}}
+                ]}}
+                """;
+        QueryPlan plan = costGate.analyze(explain);
+
+        assertTrue(plan.isRejected());
+        assertEquals(250123.4, plan.getCost(), 0.001);
+        // p 按主键查找，对前面连接产生的每一行扫描一次；pm 通过连接缓冲只扫描一次
+        assertEquals(10000 + 500 + 5000000, plan.getExaminedRows());
+        assertEquals(5000000, plan.getJoinRows());
+        assertEquals(3, plan.getTables().size());
+        assertTrue(plan.getSummary().contains("全表扫描：e(约 10000 行)、pm(约 500 行)"));
+        assertTrue(plan.getSummary().contains("连接未使用索引：pm"));
+    }
+
+    @Test
+    public void testIndexedLookupAccepted() throws Exception {
+        String explain = """
+                {"query_block": {"select_id": 1, "cost_info": {"query_cost": "1.00"},
+                  "table": {"table_name": "employees", "access_type": "const", "key": "PRIMARY",
+                            "rows_examined_per_scan": 1, "rows_produced_per_join": 1}}}
+                """;
+        QueryPlan plan = costGate.analyze(explain);
+
+        assertFalse(plan.isRejected());
+        assertEquals(1, plan.getExaminedRows());
+        assertEquals("PRIMARY", plan.getTables().get(0).getKey());
+        assertFalse(plan.getSummary().contains("全表扫描"));
+    }
+
+    @Test
+    public void testDependentSubqueryRepeated() throws Exception {
+        // 相关子查询对外层产生的每一行执行一次
+        String explain = """
+                {"query_block": {"select_id": 1, "cost_info": {"query_cost": "2010.00"},
+                  "table": {"table_name": "d", "access_type": "ALL",
+                            "rows_examined_per_scan": 20, "rows_produced_per_join": 20,
+                            "attached_subqueries": [{"dependent": true, "cacheable": false, "query_block": {
+                              "select_id": 2, "table": {"table_name": "e", "access_type": "ALL",
+                                                       "rows_examined_per_scan": 10000, "rows_produced_per_join": 1000}}}]}}}
+                """;
+        QueryPlan plan = costGate.analyze(explain);
+
+        assertEquals(20 + 20 * 10000, plan.getExaminedRows());
+        assertFalse(plan.isRejected());
+    }
+}
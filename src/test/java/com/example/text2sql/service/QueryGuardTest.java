@@ -0,0 +1,51 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryGuardTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private QueryGuard createGuard(int maxRows, DataSize maxResultSize) {
+        Text2SqlProperties properties = new Text2SqlProperties();
+        properties.getExecution().setMaxRows(maxRows);
+        properties.getExecution().setMaxResultSize(maxResultSize);
+        return new QueryGuard(properties, new Text2SqlMetrics(registry));
+    }
+
+    @Test
+    public void testLimit() {
+        QueryGuard guard = createGuard(100, DataSize.ofMegabytes(1));
+
+        assertEquals("SELECT * FROM (SELECT * FROM orders LIMIT 5000) o\nLIMIT 100",
+                guard.limit("SELECT * FROM (SELECT * FROM orders LIMIT 5000) o"));
+        assertEquals("SELECT * FROM orders\nLIMIT 100", guard.limit("SELECT * FROM orders LIMIT 5000"));
+        assertEquals("SELECT * FROM orders LIMIT 10", guard.limit("SELECT * FROM orders LIMIT 10"));
+        // 无法识别的 LIMIT 不改写，由 Statement 的 maxRows 兜底
+        assertEquals("SELECT * FROM orders LIMIT @n", guard.limit("SELECT * FROM orders LIMIT @n"));
+
+        assertEquals(1, registry.get(Text2SqlMetrics.SQL_GUARD)
+                .tag("action", QueryGuard.LIMIT_INJECTED).counter().count());
+        assertEquals(1, registry.get(Text2SqlMetrics.SQL_GUARD)
+                .tag("action", QueryGuard.LIMIT_CLAMPED).counter().count());
+    }
+
+    @Test
+    public void testMemoryBudget() {
+        QueryGuard.MemoryBudget budget = createGuard(100, DataSize.ofBytes(1000)).newBudget();
+        budget.charge("a".repeat(400));
+        assertEquals(840, budget.getUsed());
+
+        DataRetrievalFailureException e = assertThrows(DataRetrievalFailureException.class,
+                () -> budget.charge("b".repeat(100)));
+        assertTrue(e.getMessage().contains("内存预算"));
+        assertEquals(1, registry.get(Text2SqlMetrics.SQL_GUARD)
+                .tag("action", QueryGuard.MEMORY_EXCEEDED).counter().count());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.text2sql.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryJobTest {
+
+    @Test
+    public void testStepsVisibleWhileRunning() {
+        QueryJob job = new QueryJob(QueryJob.Type.STEPS, "各部门人数");
+        assertTrue(job.start());
+        assertEquals(QueryJob.Status.RUNNING, job.getStatus());
+
+        job.stepCompleted(1, Text2SqlStepResult.StepResult.success("改写后的问题"));
+        job.stepCompleted(2, Text2SqlStepResult.StepResult.success("employees"));
+
+        Text2SqlStepResult partial = job.getStepResult();
+        assertEquals("改写后的问题", partial.getStep1ProblemRewriting().getContent());
+        assertEquals("employees", partial.getStep2TableSelection().getContent());
+        assertNull(partial.getStep3InformationInference());
+        assertNull(job.getFinishedAt());
+    }
+
+    @Test
+    public void testCancelledJobDoesNotStart() {
+        QueryJob job = new QueryJob(QueryJob.Type.QUERY, "各部门人数");
+        assertTrue(job.cancel());
+        assertFalse(job.start());
+        assertFalse(job.cancel());
+        assertEquals(QueryJob.Status.CANCELLED, job.getStatus());
+        assertNotNull(job.getFinishedAt());
+    }
+
+    @Test
+    public void testResultAfterCancelIsDiscarded() {
+        QueryJob job = new QueryJob(QueryJob.Type.QUERY, "各部门人数");
+        job.start();
+        job.cancel();
+        job.succeed(Text2SqlResult.error("查询被中断"));
+        assertEquals(QueryJob.Status.CANCELLED, job.getStatus());
+        assertNull(job.getResult());
+    }
+
+    @Test
+    public void testFailedStepReportedAsError() {
+        QueryJob job = new QueryJob(QueryJob.Type.STEPS, "各部门人数");
+        job.start();
+        job.succeed(Text2SqlStepResult.create(Text2SqlStepResult.StepResult.success("改写后的问题"),
+                Text2SqlStepResult.StepResult.error("没有找到相关的表"), null, null, null));
+        assertEquals(QueryJob.Status.FAILED, job.getStatus());
+        assertEquals("没有找到相关的表", job.getError());
+    }
+
+    @Test
+    public void testOverloadedStepKeepsReason() {
+        QueryJob job = new QueryJob(QueryJob.Type.STEPS, "各部门人数");
+        job.start();
+        Text2SqlStepResult stepResult = Text2SqlStepResult.create(
+                Text2SqlStepResult.StepResult.success("改写后的问题"),
+                Text2SqlStepResult.StepResult.overloaded(
+                        new LlmOverloadedException(LlmConcurrencyLimiter.BUDGET, "调用方 token 预算已用完")),
+                null, null, null);
+        job.succeed(stepResult);
+
+        assertEquals(QueryJob.Status.FAILED, job.getStatus());
+        assertEquals("调用方 token 预算已用完", job.getError());
+        assertEquals(LlmConcurrencyLimiter.BUDGET, job.getErrorReason());
+
+        LlmOverloadedException e = assertThrows(LlmOverloadedException.class, stepResult::throwIfOverloaded);
+        assertEquals(LlmConcurrencyLimiter.BUDGET, e.getReason());
+    }
+
+    @Test
+    public void testOrdinaryFailureHasNoReason() {
+        QueryJob job = new QueryJob(QueryJob.Type.QUERY, "各部门人数");
+        job.start();
+        job.fail("查询处理失败: 连接超时");
+        assertNull(job.getErrorReason());
+        assertDoesNotThrow(Text2SqlStepResult.create(Text2SqlStepResult.StepResult.error("没有找到相关的表"),
+                null, null, null, null)::throwIfOverloaded);
+    }
+}
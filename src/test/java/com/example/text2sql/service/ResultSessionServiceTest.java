@@ -0,0 +1,163 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultSessionServiceTest {
+
+    private final SchemaSnapshot snapshot = new SchemaSnapshot(1, "test", Instant.now(), Map.of("employees",
+            new SchemaSnapshot.TableSchema("employees", "员工信息表", "BASE TABLE", "",
+                    List.of(Map.of("COLUMN_NAME", "id", "COLUMN_KEY", "PRI"),
+                            Map.of("COLUMN_NAME", "name", "COLUMN_KEY", "")),
+                    List.of())), "");
+
+    private final FakeDatabaseTool databaseTool = new FakeDatabaseTool(snapshot);
+
+    private final ResultSessionService resultSessionService = resultSessionService();
+
+    @Test
+    public void testKeysetPagingStaysWithinOriginalLimit() {
+        String sessionId = resultSessionService.create("SELECT id, name FROM employees LIMIT 25",
+                List.of("id", "name"));
+
+        ResultPage page1 = resultSessionService.getPage(sessionId, 1);
+        assertEquals(ResultSessionService.KEYSET, page1.getPagination());
+        assertTrue(page1.isHasMore());
+        assertEquals(10, page1.getData().size());
+        // 唯一性校验只统计首次查询返回的 25 行
+        assertTrue(databaseTool.queries.get(0).sql().startsWith("SELECT COUNT(*)"));
+        assertTrue(databaseTool.queries.get(0).sql().contains("FROM employees\nLIMIT 25\n) AS paged"));
+
+        ResultPage page2 = resultSessionService.getPage(sessionId, 2);
+        Query query = databaseTool.last();
+        assertTrue(query.sql().contains("LIMIT 25\n) AS paged WHERE paged.`id` > ?"));
+        assertEquals(List.of(10L, 11), query.args());
+        assertTrue(page2.isHasMore());
+
+        // 最后一页只取剩下的 5 行
+        ResultPage page3 = resultSessionService.getPage(sessionId, 3);
+        assertEquals(List.of(20L, 5), databaseTool.last().args());
+        assertFalse(page3.isHasMore());
+        assertEquals(5, page3.getData().size());
+
+        // 超出 LIMIT 的页不再查询
+        int queries = databaseTool.queries.size();
+        ResultPage page4 = resultSessionService.getPage(sessionId, 4);
+        assertTrue(page4.getData().isEmpty());
+        assertFalse(page4.isHasMore());
+        assertEquals(queries, databaseTool.queries.size());
+    }
+
+    @Test
+    public void testKeysetFallsBackToOffsetWithoutPreviousPage() {
+        String sessionId = resultSessionService.create("SELECT id, name FROM employees LIMIT 25",
+                List.of("id", "name"));
+
+        // 直接跳到第3页，没有第2页最后一行的键值
+        ResultPage page3 = resultSessionService.getPage(sessionId, 3);
+        assertEquals(ResultSessionService.KEYSET, page3.getPagination());
+        Query query = databaseTool.last();
+        assertTrue(query.sql().contains("LIMIT 25\n) AS paged ORDER BY paged.`id` LIMIT ? OFFSET ?"));
+        assertEquals(List.of(5, 20L), query.args());
+    }
+
+    @Test
+    public void testOrderedQueryUsesOffsetPaging() {
+        String sessionId = resultSessionService.create("SELECT id, name FROM employees ORDER BY name LIMIT 15",
+                List.of("id", "name"));
+
+        ResultPage page2 = resultSessionService.getPage(sessionId, 2);
+        assertEquals(ResultSessionService.OFFSET, page2.getPagination());
+        assertFalse(page2.isHasMore());
+        // 有显式排序时不做唯一性校验
+        assertEquals(1, databaseTool.queries.size());
+        assertEquals("SELECT id, name FROM employees ORDER BY name\nLIMIT ? OFFSET ?", databaseTool.last().sql());
+        assertEquals(List.of(5, 10L), databaseTool.last().args());
+    }
+
+    @Test
+    public void testSessionWithoutLimitIsCappedAtMaxRows() {
+        String sessionId = resultSessionService.create("SELECT id, name FROM employees", List.of("id", "name"));
+
+        resultSessionService.getPage(sessionId, 1);
+        assertTrue(databaseTool.queries.get(0).sql().contains("FROM employees\nLIMIT 30\n) AS paged"));
+        ResultPage page3 = resultSessionService.getPage(sessionId, 3);
+        assertFalse(page3.isHasMore());
+        assertEquals(10, page3.getData().size());
+    }
+
+    @Test
+    public void testDuplicateKeysUseOffsetPaging() {
+        databaseTool.distinctKeys = 20;
+        String sessionId = resultSessionService.create("SELECT id, name FROM employees LIMIT 25",
+                List.of("id", "name"));
+
+        ResultPage page1 = resultSessionService.getPage(sessionId, 1);
+        assertEquals(ResultSessionService.OFFSET, page1.getPagination());
+        assertEquals("SELECT id, name FROM employees\nLIMIT ? OFFSET ?", databaseTool.last().sql());
+    }
+
+    private ResultSessionService resultSessionService() {
+        Text2SqlProperties properties = new Text2SqlProperties();
+        properties.getSession().setPageSize(10);
+        properties.getExecution().setMaxRows(30);
+        return new ResultSessionService(databaseTool, properties);
+    }
+
+    private record Query(String sql, List<Object> args) {
+    }
+
+    /**
+     * 记录执行的 SQL，唯一性校验返回固定计数，取数查询按请求的行数返回 id 连续的行
+     */
+    private static class FakeDatabaseTool extends DatabaseTool {
+        private final SchemaSnapshot snapshot;
+        private final List<Query> queries = new ArrayList<>();
+        private long distinctKeys = 25;
+
+        FakeDatabaseTool(SchemaSnapshot snapshot) {
+            super(null, null, null, null);
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public SchemaSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        @Override
+        public List<Map<String, Object>> queryForList(String sql, Object... args) {
+            queries.add(new Query(sql, Arrays.asList(args)));
+            if (sql.startsWith("SELECT COUNT(*)")) {
+                return List.of(Map.of("total_rows", 25L, "distinct_keys", distinctKeys));
+            }
+            long first = 1;
+            int fetch = 0;
+            for (Object arg : args) {
+                if (arg instanceof Integer rows) {
+                    fetch = rows;
+                } else if (arg instanceof Long value) {
+                    // keyset 条件的键值或 OFFSET，两者都表示之前已读取的行数
+                    first = value + 1;
+                }
+            }
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (long id = first; id < first + fetch; id++) {
+                rows.add(Map.of("id", id, "name", "员工" + id));
+            }
+            return rows;
+        }
+
+        private Query last() {
+            return queries.get(queries.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutingChatModelTest {
+
+    private final List<StubServer> servers = new ArrayList<>();
+
+    private RoutingChatModel model;
+
+    @AfterEach
+    public void tearDown() {
+        if (model != null) {
+            model.destroy();
+        }
+        servers.forEach(server -> server.http.stop(0));
+    }
+
+    @Test
+    public void testRoutesToFasterEndpoint() {
+        StubServer slow = start("slow", 300, 200);
+        StubServer fast = start("fast", 10, 200);
+        model = routing(config(), slow, fast);
+
+        // 两个端点都还没有样本时各试一次，之后都发给较快的端点
+        for (int i = 0; i < 4; i++) {
+            model.call(new Prompt("各部门人数"));
+        }
+
+        assertEquals(1, slow.requests.get());
+        assertEquals(3, fast.requests.get());
+        assertEquals("fast", model.rank().get(0).getName());
+    }
+
+    @Test
+    public void testFailsOverAndSkipsUnhealthyEndpoint() {
+        StubServer broken = start("broken", 0, 500);
+        StubServer healthy = start("healthy", 10, 200);
+        Text2SqlProperties.Routing config = config();
+        config.setEwmaAlpha(0.5);
+        model = routing(config, broken, healthy);
+
+        assertEquals("healthy", text(model.call(new Prompt("各部门人数"))));
+        assertEquals("healthy", text(model.call(new Prompt("各部门人数"))));
+
+        // 第一次失败后错误率达到阈值，第二次不再发给出错的端点
+        assertEquals(1, broken.requests.get());
+        assertEquals(2, healthy.requests.get());
+        assertEquals("healthy", model.rank().get(0).getName());
+    }
+
+    @Test
+    public void testHedgedRequestReturnsFirstResponse() {
+        StubServer slow = start("slow", 5000, 200);
+        StubServer fast = start("fast", 10, 200);
+        Text2SqlProperties.Routing config = config();
+        config.setHedgeEnabled(true);
+        config.setHedgeMinDelay(Duration.ofMillis(100));
+        config.setHedgeMaxDelay(Duration.ofMillis(100));
+        model = routing(config, slow, fast);
+
+        long start = System.nanoTime();
+        ChatResponse response = model.call(new Prompt("各部门人数"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("fast", text(response));
+        assertEquals(1, slow.requests.get());
+        assertEquals(1, fast.requests.get());
+        assertTrue(elapsedMillis < 3000, "对冲请求应在首选端点返回前完成: " + elapsedMillis + "ms");
+        // 落后的请求被中断，不计入错误率
+        assertEquals(0, model.rank().stream().mapToDouble(RoutingChatModel.Endpoint::getErrorRate).sum());
+    }
+
+    private Text2SqlProperties.Routing config() {
+        Text2SqlProperties.Routing config = new Text2SqlProperties.Routing();
+        config.setEnabled(true);
+        return config;
+    }
+
+    private RoutingChatModel routing(Text2SqlProperties.Routing config, StubServer... stubs) {
+        List<RoutingChatModel.Endpoint> endpoints = new ArrayList<>();
+        for (StubServer stub : stubs) {
+            Text2SqlProperties.RoutingEndpoint endpoint = new Text2SqlProperties.RoutingEndpoint();
+            endpoint.setName(stub.name);
+            endpoint.setBaseUrl("http://localhost:" + stub.http.getAddress().getPort());
+            endpoint.setApiKey("test-key");
+            endpoint.setModel("stub-model");
+            endpoints.add(new RoutingChatModel.Endpoint(stub.name,
+                    RoutingChatModel.openAiModel(endpoint, ToolCallingManager.builder().build())));
+        }
+        return new RoutingChatModel(endpoints, config, new Text2SqlMetrics(new SimpleMeterRegistry()));
+    }
+
+    private StubServer start(String name, long delayMillis, int status) {
+        try {
+            StubServer stub = new StubServer(name, HttpServer.create(new InetSocketAddress("localhost", 0), 0));
+            stub.http.setExecutor(Executors.newCachedThreadPool());
+            stub.http.createContext("/v1/chat/completions", exchange -> stub.handle(exchange, delayMillis, status));
+            stub.http.start();
+            servers.add(stub);
+            return stub;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String text(ChatResponse response) {
+        return response.getResult().getOutput().getText();
+    }
+
+    /**
+     * 返回 OpenAI chat completions 格式响应的本地 HTTP 服务，回复内容为服务名称
+     */
+    private static class StubServer {
+        private final String name;
+        private final HttpServer http;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        StubServer(String name, HttpServer http) {
+            this.name = name;
+            this.http = http;
+        }
+
+        void handle(HttpExchange exchange, long delayMillis, int status) throws IOException {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String body = status == 200
+                    ? """
+                    {"id": "chatcmpl-1", "object": "chat.completion", "created": 1, "model": "stub-model",
+                     "choices": [{"index": 0, "message": {"role": "assistant", "content": "%s"}, "finish_reason": "stop"}],
+                     "usage": {"prompt_tokens": 10, "completion_tokens": 1, "total_tokens": 11}}
+                    """.formatted(name)
+                    : "{\"error\": {\"message\": \"stub failure\", \"type\": \"server_error\"}}";
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            try (OutputStream out = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(status, bytes.length);
+                out.write(bytes);
+            } catch (IOException e) {
+                // 客户端已中断请求
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.text2sql.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaIndexTest {
+
+    private final SchemaIndex index = SchemaIndex.build(snapshot());
+
+    @Test
+    public void testSearchByColumnComment() {
+        List<SchemaIndex.TableScore> scores = index.search("各部门预算");
+        assertFalse(scores.isEmpty());
+        assertEquals("departments", scores.get(0).getTableName());
+    }
+
+    @Test
+    public void testSearchByTableName() {
+        List<SchemaIndex.TableScore> scores = index.search("project members");
+        assertEquals("project_members", scores.get(0).getTableName());
+    }
+
+    @Test
+    public void testSearchWithoutMatch() {
+        assertTrue(index.search("weather").isEmpty());
+        assertTrue(index.search(null).isEmpty());
+    }
+
+    @Test
+    public void testTokenize() {
+        assertEquals(List.of("project", "member"), SchemaIndex.tokenize("project_members"));
+        assertEquals(List.of("员", "工", "员工"), SchemaIndex.tokenize("员工"));
+    }
+
+    @Test
+    public void testGetTableIgnoresCase() {
+        SchemaSnapshot snapshot = snapshot();
+        assertEquals("employees", snapshot.getTable("Employees").getName());
+        assertEquals("employees", snapshot.getTable("EMPLOYEES").getName());
+        assertNull(snapshot.getTable("employee"));
+    }
+
+    @Test
+    public void testJoinTables() {
+        SchemaSnapshot snapshot = snapshot();
+        assertEquals(Set.of("project_members"), snapshot.getJoinTables(List.of("employees", "projects")));
+        // 只引用其中一张选中表时不补充
+        assertTrue(snapshot.getJoinTables(List.of("employees", "departments")).isEmpty());
+        assertTrue(snapshot.getJoinTables(List.of("employees", "projects", "project_members")).isEmpty());
+    }
+
+    static SchemaSnapshot snapshot() {
+        Map<String, SchemaSnapshot.TableSchema> tables = new LinkedHashMap<>();
+        tables.put("departments", table("departments", "部门信息表", List.of(),
+                column("id", "部门ID"), column("name", "部门名称"), column("budget", "部门预算")));
+        tables.put("employees", table("employees", "员工信息表", List.of(),
+                column("id", "员工ID"), column("name", "员工姓名"), column("salary", "工资")));
+        tables.put("project_members", table("project_members", "项目成员关系表", List.of("employees", "projects"),
+                column("project_id", "项目ID"), column("employee_id", "员工ID"), column("role", "在项目中的角色")));
+        tables.put("projects", table("projects", "项目信息表", List.of(),
+                column("id", "项目ID"), column("name", "项目名称"), column("status", "项目状态")));
+        return new SchemaSnapshot(1, "test", Instant.now(), tables, "");
+    }
+
+    @SafeVarargs
+    private static SchemaSnapshot.TableSchema table(String name, String comment, List<String> references,
+                                                    Map<String, Object>... columns) {
+        return new SchemaSnapshot.TableSchema(name, comment, "BASE TABLE", "CREATE TABLE `" + name + "`;\n",
+                List.of(columns), references);
+    }
+
+    private static Map<String, Object> column(String name, String comment) {
+        return Map.of("COLUMN_NAME", name, "COLUMN_COMMENT", comment);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.config.Text2SqlProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaRetrieverTest {
+
+    private final SchemaSnapshot snapshot = SchemaIndexTest.snapshot();
+
+    private final DatabaseTool databaseTool = new DatabaseTool(null, null, null, null) {
+        @Override
+        public SchemaSnapshot getSnapshot() {
+            return snapshot;
+        }
+    };
+
+    private final SchemaRetriever schemaRetriever = schemaRetriever();
+
+    @Test
+    public void testRetrieveSchemaOnlyContainsRelevantTables() {
+        String schema = schemaRetriever.retrieveSchema("各部门预算");
+        assertTrue(schema.contains("CREATE TABLE `departments`"));
+        assertFalse(schema.contains("CREATE TABLE `projects`"));
+    }
+
+    @Test
+    public void testRetrieveSchemaOfSelectedTables() {
+        assertEquals("CREATE TABLE `employees`;\nCREATE TABLE `projects`;\n",
+                schemaRetriever.retrieveSchema("员工参与的项目", List.of("Employees", "projects", "missing")));
+        // 选中的表都不存在时按问题检索
+        assertEquals(schemaRetriever.retrieveSchema("各部门预算"),
+                schemaRetriever.retrieveSchema("各部门预算", List.of("missing")));
+    }
+
+    @Test
+    public void testParseSelectedTables() {
+        assertEquals(Set.of("employees", "departments"),
+                StepBasedText2SqlService.parseSelectedTables("数据表选取，选择表为：`employees`, departments，employees"));
+        assertTrue(StepBasedText2SqlService.parseSelectedTables(null).isEmpty());
+    }
+
+    private SchemaRetriever schemaRetriever() {
+        // 测试快照只有4张表，top-k 小于表数量时才会裁剪
+        Text2SqlProperties properties = new Text2SqlProperties();
+        properties.getRetrieval().setTopK(2);
+        return new SchemaRetriever(databaseTool, new BusinessRuleService(), properties);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.text2sql.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StepGraphTest {
+
+    // 单线程执行，后一个节点与前一个节点复用同一个工作线程
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final StepGraph graph = new StepGraph(executor);
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCancelledNodeNeverRuns() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StepGraph.Node<String> blocker = graph.node("blocker", () -> {
+            await(release);
+            return "done";
+        });
+        AtomicBoolean queuedRan = new AtomicBoolean();
+        AtomicBoolean dependentRan = new AtomicBoolean();
+        // 排队等待工作线程的节点和等待依赖的节点都还没有开始
+        StepGraph.Node<String> queued = graph.node("queued", () -> {
+            queuedRan.set(true);
+            return "queued";
+        });
+        StepGraph.Node<String> dependent = graph.node("dependent", List.of(blocker), () -> {
+            dependentRan.set(true);
+            return "dependent";
+        });
+
+        queued.cancel();
+        dependent.cancel();
+        release.countDown();
+
+        assertEquals("done", blocker.join());
+        assertThrows(CancellationException.class, queued::join);
+        assertThrows(CancellationException.class, dependent::join);
+        // 等工作线程处理完队列中的任务
+        executor.submit(() -> null).get(5, TimeUnit.SECONDS);
+        assertFalse(queuedRan.get());
+        assertFalse(dependentRan.get());
+        assertFalse(graph.getTimings().containsKey("queued"));
+    }
+
+    @Test
+    public void testCancelInterruptsRunningNode() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        StepGraph.Node<String> running = graph.node("running", () -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                // 步骤按惯例恢复中断标记后返回
+                Thread.currentThread().interrupt();
+            }
+            return "interrupted";
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        running.cancel();
+
+        // 同一个工作线程执行的下一个任务看不到上一个节点的中断标记
+        boolean nextInterrupted = executor.submit(() -> Thread.currentThread().isInterrupted())
+                .get(5, TimeUnit.SECONDS);
+        assertTrue(interrupted.get());
+        assertFalse(nextInterrupted);
+    }
+
+    @Test
+    public void testUpstreamFailureReachesDependents() {
+        StepGraph.Node<String> upstream = graph.node("upstream", () -> {
+            throw new IllegalStateException("步骤1失败");
+        });
+        AtomicBoolean ran = new AtomicBoolean();
+        StepGraph.Node<String> dependent = graph.node("dependent", List.of(upstream), () -> {
+            ran.set(true);
+            return "dependent";
+        });
+        StepGraph.Node<String> transitive = graph.node("transitive", List.of(dependent), () -> "transitive");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, dependent::join);
+        assertEquals("步骤1失败", e.getMessage());
+        assertThrows(IllegalStateException.class, transitive::join);
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void testJoinRethrowsOriginalException() {
+        IllegalArgumentException failure = new IllegalArgumentException("生成的 SQL 不安全");
+        StepGraph.Node<String> node = graph.node("step4", () -> {
+            throw failure;
+        });
+
+        assertSame(failure, assertThrows(IllegalArgumentException.class, node::join));
+        assertEquals("ok", graph.node("step5", () -> "ok").join());
+        assertEquals(List.of("step5"), List.copyOf(graph.getTimings().keySet()));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
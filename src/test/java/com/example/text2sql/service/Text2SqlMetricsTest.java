@@ -0,0 +1,61 @@
+package com.example.text2sql.service;
+
+import com.example.text2sql.util.SqlSafetyValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Text2SqlMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final Text2SqlMetrics metrics = new Text2SqlMetrics(registry);
+
+    @Test
+    public void testModelCallTokens() {
+        ChatResponse response = new ChatResponse(List.of(),
+                ChatResponseMetadata.builder().usage(new DefaultUsage(120, 30)).build());
+        metrics.recordModelCall("step1", 5_000_000, response);
+        metrics.recordModelCall("step1", 5_000_000, response);
+
+        assertEquals(240, registry.get(Text2SqlMetrics.LLM_TOKENS)
+                .tags("operation", "step1", "type", "prompt").counter().count());
+        assertEquals(60, registry.get(Text2SqlMetrics.LLM_TOKENS)
+                .tags("operation", "step1", "type", "completion").counter().count());
+        assertEquals(2, registry.get(Text2SqlMetrics.LLM_DURATION)
+                .tags("operation", "step1", "outcome", "success").timer().count());
+
+        // 调用失败时只记录耗时
+        metrics.recordModelCall("step2", 1_000_000, null);
+        assertEquals(1, registry.get(Text2SqlMetrics.LLM_DURATION)
+                .tags("operation", "step2", "outcome", "error").timer().count());
+    }
+
+    @Test
+    public void testToolFailureIsRecorded() {
+        assertEquals("ok", metrics.recordTool("getDatabaseSchema", () -> "ok"));
+        assertThrows(IllegalStateException.class, () -> metrics.recordTool("executeQuery", () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(1, registry.get(Text2SqlMetrics.TOOL_DURATION)
+                .tags("tool", "getDatabaseSchema", "outcome", "success").timer().count());
+        assertEquals(1, registry.get(Text2SqlMetrics.TOOL_DURATION)
+                .tags("tool", "executeQuery", "outcome", "error").timer().count());
+    }
+
+    @Test
+    public void testSqlExecutionAndRejection() {
+        metrics.recordSqlExecution("buffered", 2_000_000, 42, true);
+        metrics.recordSafetyRejection(SqlSafetyValidator.validate("DROP TABLE employees"));
+
+        assertEquals(42, registry.get(Text2SqlMetrics.SQL_ROWS).summary().totalAmount());
+        assertEquals(1, registry.get(Text2SqlMetrics.SQL_REJECTED).tags("reason", "not_select").counter().count());
+    }
+}
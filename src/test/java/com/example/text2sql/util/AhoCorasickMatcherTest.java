@@ -0,0 +1,34 @@
+package com.example.text2sql.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AhoCorasickMatcherTest {
+
+    @Test
+    public void testFindAll() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.of(List.of("he", "she", "his", "hers"));
+
+        // 重叠的命中全部返回，按结束位置排序
+        List<AhoCorasickMatcher.Match> matches = matcher.findAll("ushers");
+        assertEquals(3, matches.size());
+        assertEquals("she", matches.get(0).getKeyword());
+        assertEquals(1, matches.get(0).getStart());
+        assertEquals("he", matches.get(1).getKeyword());
+        assertEquals("hers", matches.get(2).getKeyword());
+        assertEquals(6, matches.get(2).getEnd());
+    }
+
+    @Test
+    public void testFindKeywords() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.of(List.of("项目", "项目成员", "员工", "成员"));
+
+        assertEquals(Set.of("项目", "项目成员", "成员", "员工"), matcher.findKeywords("项目成员和员工"));
+        assertTrue(matcher.findKeywords("部门").isEmpty());
+        assertTrue(matcher.findKeywords(null).isEmpty());
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.text2sql.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LruTtlCacheTest {
+
+    @Test
+    public void testLruEviction() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(2, Duration.ofMinutes(1));
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        // 访问 a 之后，b 成为最久未使用的条目
+        assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testTtlExpiration() {
+        MutableClock clock = new MutableClock();
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, Duration.ofSeconds(30), clock);
+        cache.put("a", "1");
+
+        clock.advance(Duration.ofSeconds(29));
+        assertEquals("1", cache.get("a"));
+
+        clock.advance(Duration.ofSeconds(2));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testHitAndMissCounters() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, Duration.ofMinutes(1));
+        cache.put("a", "1");
+
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.text2sql.util;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelectStatementTest {
+
+    @Test
+    public void testTopLevelLimit() {
+        SelectStatement statement = SelectStatement.parse("SELECT * FROM employees WHERE status = 'ACTIVE' LIMIT 1000;");
+        assertEquals("SELECT * FROM employees WHERE status = 'ACTIVE'", statement.getBody());
+        assertEquals(Long.valueOf(1000), statement.getLimit());
+        assertEquals(0, statement.getOffset());
+        assertFalse(statement.isOrdered());
+
+        assertEquals(Long.valueOf(20), SelectStatement.parse("SELECT * FROM employees LIMIT 40, 20").getLimit());
+        assertEquals(40, SelectStatement.parse("SELECT * FROM employees LIMIT 20 OFFSET 40").getOffset());
+        assertEquals("SELECT * FROM employees\nLIMIT 100 OFFSET 200",
+                SelectStatement.parse("SELECT * FROM employees LIMIT 10").withLimit(100, 200));
+    }
+
+    @Test
+    public void testIgnoresNestedClauses() {
+        // 子查询和窗口函数中的 ORDER BY、LIMIT 不属于顶层子句
+        SelectStatement statement = SelectStatement.parse(
+                "SELECT name, RANK() OVER (ORDER BY salary DESC) AS r FROM employees "
+                        + "WHERE department_id IN (SELECT id FROM departments ORDER BY id LIMIT 3)");
+        assertNull(statement.getLimit());
+        assertFalse(statement.isOrdered());
+
+        // 字符串和标识符中的关键字
+        statement = SelectStatement.parse("SELECT `limit` FROM t WHERE note = 'order by x limit 5' ORDER BY id");
+        assertNull(statement.getLimit());
+        assertTrue(statement.isOrdered());
+    }
+
+    @Test
+    public void testSkipsLineComments() {
+        // LIMIT 之后的行注释不属于 LIMIT 子句
+        SelectStatement statement = SelectStatement.parse("SELECT * FROM employees LIMIT 10 -- top 10");
+        assertEquals(Long.valueOf(10), statement.getLimit());
+        assertEquals("SELECT * FROM employees", statement.getBody());
+        assertEquals(Long.valueOf(5), SelectStatement.parse("SELECT * FROM employees LIMIT 5; # first page").getLimit());
+        assertEquals(Long.valueOf(20),
+                SelectStatement.parse("SELECT * FROM employees LIMIT /* page */ 20 -- rows\n").getLimit());
+
+        // 行注释中的 LIMIT、ORDER BY 不是顶层子句，追加的 LIMIT 不能落在注释里
+        statement = SelectStatement.parse("SELECT * FROM employees -- order by id limit 5\n# LIMIT 3");
+        assertNull(statement.getLimit());
+        assertFalse(statement.isOrdered());
+        assertEquals("SELECT * FROM employees\nLIMIT 1000", statement.limitTo(1000));
+
+        // "--" 后面没有空白时是两个减号
+        assertEquals(Long.valueOf(1), SelectStatement.parse("SELECT 5--3 AS x LIMIT 1").getLimit());
+    }
+
+    @Test
+    public void testLimitTo() {
+        // 没有顶层 LIMIT 时追加，子查询中的 LIMIT 保持不变
+        assertEquals("SELECT * FROM employees WHERE department_id IN (SELECT id FROM departments LIMIT 3)\nLIMIT 1000",
+                SelectStatement.parse("SELECT * FROM employees WHERE department_id IN (SELECT id FROM departments LIMIT 3);")
+                        .limitTo(1000));
+        // 超过上限时收紧并保留偏移量
+        assertEquals("SELECT * FROM employees\nLIMIT 1000 OFFSET 20",
+                SelectStatement.parse("SELECT * FROM employees LIMIT 20, 5000").limitTo(1000));
+        // 未超过上限时原样返回
+        String sql = "SELECT * FROM employees LIMIT 10";
+        assertEquals(sql, SelectStatement.parse(sql).limitTo(1000));
+    }
+
+    @Test
+    public void testRejectsUnknownLimit() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SelectStatement.parse("SELECT * FROM employees LIMIT @n"));
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.text2sql.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareOneExecution() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>("test");
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "result";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // 计算进行中到达的相同请求等待同一个结果
+            Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                return "other";
+            }));
+            while (singleFlight.getCoalesced() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("result", follower.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+            assertEquals(1, singleFlight.getExecutions());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 计算结束后不再复用结果
+        assertEquals("again", singleFlight.execute("key", () -> "again"));
+        assertEquals(2, singleFlight.getExecutions());
+    }
+
+    @Test
+    public void testExceptionIsPropagated() {
+        SingleFlight<String> singleFlight = new SingleFlight<>("test");
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("失败");
+        }));
+        assertEquals("ok", singleFlight.execute("key", () -> "ok"));
+    }
+
+    @Test
+    public void testWaiterStopsWaitingAfterTimeout() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>("test", Duration.ofMillis(50), e -> false);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> leader = startLeader(executor, singleFlight, () -> {
+                await(release);
+                return "result";
+            });
+
+            // 执行计算的请求迟迟不结束时，等待的请求超时后自行计算
+            assertEquals("own", singleFlight.execute("key", () -> "own"));
+            release.countDown();
+            assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWaiterCanBeInterrupted() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>("test");
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            startLeader(executor, singleFlight, () -> {
+                await(release);
+                return "result";
+            });
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            AtomicBoolean interrupted = new AtomicBoolean();
+            Future<?> follower = executor.submit(() -> {
+                try {
+                    singleFlight.execute("key", () -> "other");
+                } catch (RuntimeException e) {
+                    failure.set(e);
+                    interrupted.set(Thread.currentThread().isInterrupted());
+                }
+            });
+            while (singleFlight.getCoalesced() == 0) {
+                Thread.sleep(1);
+            }
+
+            // 例如异步任务被取消，等待中的工作线程可以被中断释放
+            follower.cancel(true);
+            while (failure.get() == null) {
+                Thread.sleep(1);
+            }
+            assertInstanceOf(CancellationException.class, failure.get());
+            assertTrue(interrupted.get());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCallerSpecificFailureIsNotShared() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>("test", Duration.ofSeconds(5),
+                BudgetExceededException.class::isInstance);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = startLeader(executor, singleFlight, () -> {
+                await(release);
+                throw new BudgetExceededException();
+            });
+            Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> "follower"));
+            while (singleFlight.getCoalesced() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            // 执行计算的调用方预算用完，等待的请求重新计算而不是收到同样的拒绝
+            ExecutionException e = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(BudgetExceededException.class, e.getCause());
+            assertEquals("follower", follower.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancelledLeaderIsNotShared() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>("test");
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = startLeader(executor, singleFlight, () -> {
+                await(release);
+                // 执行计算的线程被中断，返回的结果可能不完整
+                Thread.currentThread().interrupt();
+                return "partial";
+            });
+            Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> "follower"));
+            while (singleFlight.getCoalesced() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertEquals("partial", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("follower", follower.get(5, TimeUnit.SECONDS));
+            assertEquals(2, singleFlight.getExecutions());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 启动执行计算的请求，等到它开始计算后返回
+     */
+    private static Future<String> startLeader(ExecutorService executor, SingleFlight<String> singleFlight,
+                                              Supplier<String> supplier) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            started.countDown();
+            return supplier.get();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return leader;
+    }
+
+    private static class BudgetExceededException extends RuntimeException {
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.text2sql.util;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlSafetyValidatorTest {
+
+    @Test
+    public void testNoFalsePositives() {
+        // 列名中包含关键字片段
+        assertTrue(SqlSafetyValidator.validate("SELECT update_time, created_by FROM employees").isSafe());
+        // 字符串字面量中的关键字和系统库名
+        assertTrue(SqlSafetyValidator.validate("SELECT * FROM projects WHERE name = 'tmp DROP union'").isSafe());
+        // 反引号标识符和块注释
+        assertTrue(SqlSafetyValidator.validate("SELECT `delete` /* update */ FROM employees").isSafe());
+        // REPLACE 作为字符串函数
+        assertTrue(SqlSafetyValidator.validate("SELECT REPLACE(name, ' ', '') FROM employees").isSafe());
+        // 末尾分号
+        assertTrue(SqlSafetyValidator.validate("SELECT * FROM employees;").isSafe());
+    }
+
+    @Test
+    public void testRejectsUnsafeSql() {
+        assertEquals("检测到危险操作: DELETE",
+                SqlSafetyValidator.validate("SELECT 1; DELETE FROM employees").getReason());
+        assertEquals("禁止访问系统表: mysql",
+                SqlSafetyValidator.validate("SELECT * FROM `mysql`.user").getReason());
+        assertEquals("只允许执行单条SQL语句",
+                SqlSafetyValidator.validate("SELECT 1; SELECT 2").getReason());
+        assertEquals("检测到SQL注入攻击模式",
+                SqlSafetyValidator.validate("SELECT * FROM employees WHERE name = '' OR 'a' = 'a'").getReason());
+        assertEquals("检测到SQL注入攻击模式",
+                SqlSafetyValidator.validate("SELECT /*! DROP */ 1").getReason());
+        assertFalse(SqlSafetyValidator.validate("SELECT * FROM employees WHERE name = 'abc").isSafe());
+    }
+
+    @Test
+    public void testCategory() {
+        // 分类标识用作监控指标标签，不随错误信息变化
+        assertEquals("safe", SqlSafetyValidator.validate("SELECT 1").getCategory());
+        assertEquals("not_select", SqlSafetyValidator.validate("DELETE FROM employees").getCategory());
+        assertEquals("dangerous_operation",
+                SqlSafetyValidator.validate("SELECT 1; DROP TABLE employees").getCategory());
+        assertEquals("system_table", SqlSafetyValidator.validate("SELECT * FROM sys.users").getCategory());
+    }
+}